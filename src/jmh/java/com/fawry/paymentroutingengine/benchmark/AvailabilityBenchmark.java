@@ -0,0 +1,65 @@
+package com.fawry.paymentroutingengine.benchmark;
+
+import com.fawry.paymentroutingengine.entity.GatewayAvailability;
+import com.fawry.paymentroutingengine.routing.AvailabilityBitmap;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Availability checks against compiled minute-of-week bitmaps, and the cost of
+ * compiling a schedule (paid once per snapshot rebuild, only for changed gateways).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AvailabilityBenchmark {
+
+    private final List<List<GatewayAvailability>> schedules = new ArrayList<>();
+    private AvailabilityBitmap[] bitmaps;
+    private LocalDateTime[] instants;
+    private int[] minutes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        bitmaps = new AvailabilityBitmap[64];
+        for (int i = 0; i < bitmaps.length; i++) {
+            List<GatewayAvailability> schedule = SyntheticFleet.schedule((long) i, random);
+            schedules.add(schedule);
+            bitmaps[i] = AvailabilityBitmap.compile(schedule);
+        }
+        instants = new LocalDateTime[1024];
+        minutes = new int[instants.length];
+        LocalDateTime monday = LocalDateTime.of(2025, 1, 20, 0, 0);
+        for (int i = 0; i < instants.length; i++) {
+            instants[i] = monday.plusMinutes(random.nextInt(AvailabilityBitmap.MINUTES_PER_WEEK));
+            minutes[i] = AvailabilityBitmap.minuteOfWeek(instants[i]);
+        }
+    }
+
+    @Benchmark
+    public boolean bitmapAtDateTime() {
+        int i = next++;
+        return bitmaps[i & 63].isAvailable(instants[i & 1023]);
+    }
+
+    @Benchmark
+    public boolean bitmapAtMinute() {
+        int i = next++;
+        return bitmaps[i & 63].isAvailable(minutes[i & 1023]);
+    }
+
+    @Benchmark
+    public AvailabilityBitmap compile() {
+        return AvailabilityBitmap.compile(schedules.get(next++ & 63));
+    }
+}
@@ -0,0 +1,54 @@
+package com.fawry.paymentroutingengine.benchmark;
+
+import com.fawry.paymentroutingengine.routing.RoutingGateway;
+import com.fawry.paymentroutingengine.util.MoneyUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Commission for one gateway and amount: fixed-point piastres versus the
+ * BigDecimal formula it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommissionBenchmark {
+
+    private RoutingGateway[] gateways;
+    private long[] amountsMinor;
+    private BigDecimal[] amounts;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<RoutingGateway> fleet = SyntheticFleet.gateways(64, 42);
+        gateways = fleet.toArray(new RoutingGateway[0]);
+        amountsMinor = SyntheticFleet.amounts(1024, 7);
+        amounts = new BigDecimal[amountsMinor.length];
+        for (int i = 0; i < amountsMinor.length; i++) {
+            amounts[i] = MoneyUtil.fromMinor(amountsMinor[i]);
+        }
+    }
+
+    @Benchmark
+    public long fixedPoint() {
+        int i = next++;
+        return gateways[i & 63].commissionMinor(amountsMinor[i & 1023]);
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimal() {
+        int i = next++;
+        RoutingGateway gateway = gateways[i & 63];
+        return gateway.getCommissionFixed()
+                .add(amounts[i & 1023].multiply(gateway.getCommissionRate()))
+                .setScale(2, RoundingMode.HALF_UP);
+    }
+}
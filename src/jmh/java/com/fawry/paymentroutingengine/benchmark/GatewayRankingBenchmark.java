@@ -0,0 +1,105 @@
+package com.fawry.paymentroutingengine.benchmark;
+
+import com.fawry.paymentroutingengine.constant.Urgency;
+import com.fawry.paymentroutingengine.routing.GatewayRanker;
+import com.fawry.paymentroutingengine.routing.RoutingGateway;
+import com.fawry.paymentroutingengine.routing.RoutingSnapshot;
+import com.fawry.paymentroutingengine.routing.TopKSelector;
+import lombok.Value;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filter, score and select over synthetic fleets, with quota served from an array
+ * instead of the ledger. {@code rank} is the linear pass, {@code rankIndexed} the
+ * cheapest-first lookup through the snapshot's commission index, and
+ * {@code fullSortBaseline} the original approach
+ * (collect every candidate, sort with a boxed comparator, take three) for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GatewayRankingBenchmark {
+
+    @Param({"3", "50", "500", "5000"})
+    public int fleetSize;
+
+    @Param({"INSTANT", "CAN_WAIT"})
+    public Urgency urgency;
+
+    private List<RoutingGateway> gateways;
+    private RoutingSnapshot snapshot;
+    private long[] remainingQuota;
+    private long[] amounts;
+    private GatewayRanker ranker;
+    private GatewayRanker.QuotaView quota;
+    private LocalDateTime now;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        gateways = SyntheticFleet.gateways(fleetSize, 42);
+        snapshot = new RoutingSnapshot(1L, gateways, LocalDateTime.now());
+        remainingQuota = new long[fleetSize];
+        for (int i = 0; i < fleetSize; i++) {
+            // Some gateways nearly exhausted, most with plenty left
+            remainingQuota[i] = gateways.get(i).getDailyLimitMinor() / (i % 7 == 0 ? 50 : 2);
+        }
+        amounts = SyntheticFleet.amounts(1024, 7);
+        ranker = new GatewayRanker(3);
+        quota = gateway -> remainingQuota[(int) (gateway.getId() - 1)];
+        // A Wednesday afternoon: daytime and 24/7 gateways open, overnight ones closed
+        now = LocalDateTime.of(2025, 1, 22, 14, 30);
+    }
+
+    private long nextAmount() {
+        return amounts[next++ & (amounts.length - 1)];
+    }
+
+    @Benchmark
+    public TopKSelector rank() {
+        return ranker.rank(gateways, nextAmount(), urgency, now, quota);
+    }
+
+    @Benchmark
+    public TopKSelector rankIndexed() {
+        return ranker.rank(snapshot, nextAmount(), urgency, now, quota);
+    }
+
+    @Benchmark
+    public List<Scored> fullSortBaseline() {
+        long amount = nextAmount();
+        List<Scored> scored = new ArrayList<>();
+        for (RoutingGateway gateway : gateways) {
+            if (!GatewayRanker.fitsAmount(gateway, amount) || !gateway.isAvailableAt(now)) {
+                continue;
+            }
+            long remaining = quota.remainingMinor(gateway);
+            if (amount > remaining) {
+                continue;
+            }
+            if (urgency == Urgency.INSTANT && !gateway.isInstant()) {
+                continue;
+            }
+            scored.add(new Scored(gateway, gateway.commissionMinor(amount), remaining));
+        }
+        scored.sort(Comparator.comparing(Scored::getCommission)
+                .thenComparing(Scored::getRemaining, Comparator.reverseOrder()));
+        return scored.subList(0, Math.min(3, scored.size()));
+    }
+
+    @Value
+    public static class Scored {
+        RoutingGateway gateway;
+        Long commission;
+        Long remaining;
+    }
+}
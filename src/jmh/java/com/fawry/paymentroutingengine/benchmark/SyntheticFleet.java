@@ -0,0 +1,80 @@
+package com.fawry.paymentroutingengine.benchmark;
+
+import com.fawry.paymentroutingengine.constant.DayType;
+import com.fawry.paymentroutingengine.entity.Gateway;
+import com.fawry.paymentroutingengine.entity.GatewayAvailability;
+import com.fawry.paymentroutingengine.routing.AvailabilityBitmap;
+import com.fawry.paymentroutingengine.routing.RoutingGateway;
+
+import java.math.BigDecimal;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic gateway fleets for the benchmarks (no database).
+ *
+ * Roughly 40% of gateways are instant; 60% are open 24/7, the rest have a
+ * weekday daytime window or an overnight window. Limits and commission terms
+ * are spread over realistic ranges.
+ */
+final class SyntheticFleet {
+
+    private SyntheticFleet() {
+    }
+
+    static List<RoutingGateway> gateways(int size, long seed) {
+        Random random = new Random(seed);
+        List<RoutingGateway> gateways = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Gateway gateway = new Gateway();
+            gateway.setId((long) i + 1);
+            gateway.setCode("GW_" + i);
+            gateway.setName("Gateway " + i);
+            gateway.setMinTransaction(BigDecimal.valueOf(random.nextInt(10_000), 2));
+            gateway.setMaxTransaction(BigDecimal.valueOf(5_000 + random.nextInt(95_000)));
+            gateway.setCommissionFixed(BigDecimal.valueOf(random.nextInt(500), 2));
+            gateway.setCommissionAmount(BigDecimal.valueOf(50 + random.nextInt(250), 4));
+            gateway.setDailyLimit(BigDecimal.valueOf(100_000 + random.nextInt(900_000)));
+            gateway.setProcessingTime(random.nextInt(10) < 4 ? BigDecimal.ZERO : BigDecimal.valueOf(60 + random.nextInt(3600)));
+            gateways.add(RoutingGateway.from(gateway, AvailabilityBitmap.compile(schedule(gateway.getId(), random))));
+        }
+        return gateways;
+    }
+
+    static List<GatewayAvailability> schedule(Long gatewayId, Random random) {
+        int kind = random.nextInt(10);
+        List<GatewayAvailability> rows = new ArrayList<>();
+        if (kind < 6) {
+            rows.add(row(gatewayId, DayType.ALL, null, null, true));
+        } else if (kind < 9) {
+            for (DayType day : new DayType[]{DayType.MON, DayType.TUE, DayType.WED, DayType.THU, DayType.FRI}) {
+                rows.add(row(gatewayId, day, LocalTime.of(8, 0), LocalTime.of(22, 0), false));
+            }
+        } else {
+            rows.add(row(gatewayId, DayType.ALL, LocalTime.of(20, 0), LocalTime.of(6, 0), false));
+        }
+        return rows;
+    }
+
+    static long[] amounts(int count, long seed) {
+        Random random = new Random(seed);
+        long[] amounts = new long[count];
+        for (int i = 0; i < count; i++) {
+            // 1 EGP .. 50,000 EGP in piastres
+            amounts[i] = 100 + random.nextInt(5_000_000);
+        }
+        return amounts;
+    }
+
+    private static GatewayAvailability row(Long gatewayId, DayType day, LocalTime start, LocalTime end, boolean allDay) {
+        GatewayAvailability availability = new GatewayAvailability();
+        availability.setGatewayId(gatewayId);
+        availability.setDayWeek(day);
+        availability.setStartTime(start);
+        availability.setEndTime(end);
+        availability.setIs24_7(allDay);
+        return availability;
+    }
+}
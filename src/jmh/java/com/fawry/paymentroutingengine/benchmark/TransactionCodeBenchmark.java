@@ -0,0 +1,45 @@
+package com.fawry.paymentroutingengine.benchmark;
+
+import com.fawry.paymentroutingengine.util.TransactionCodeGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of generating a transaction code, single-threaded and with 8 threads
+ * contending on the generator's CAS. {@code randomUuid} is the previous
+ * {@code UUID.randomUUID()} (SecureRandom) for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionCodeBenchmark {
+
+    private final TransactionCodeGenerator generator = new TransactionCodeGenerator(1);
+
+    @Benchmark
+    public UUID timeOrdered() {
+        return generator.next();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public UUID timeOrderedContended() {
+        return generator.next();
+    }
+
+    @Benchmark
+    public UUID randomUuid() {
+        return UUID.randomUUID();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public UUID randomUuidContended() {
+        return UUID.randomUUID();
+    }
+}
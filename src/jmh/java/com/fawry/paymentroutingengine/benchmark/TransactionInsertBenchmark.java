@@ -0,0 +1,98 @@
+package com.fawry.paymentroutingengine.benchmark;
+
+import com.fawry.paymentroutingengine.util.TransactionCodeGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert throughput (rows per second) into a table that already holds
+ * {@code preloadRows} rows with a unique index on the code, for the previous
+ * {@code "TXN-" + random UUID} varchar codes, random uuid codes and time-ordered
+ * uuid codes. Rows are inserted in JDBC batches of 100, one commit per batch.
+ *
+ * Runs against in-process H2 by default; point {@code url} at PostgreSQL to
+ * include buffer cache and WAL effects, e.g.
+ * {@code -Djmh.args="TransactionInsert -p url=jdbc:postgresql://localhost:5432/payment_routing_db?user=postgres&password=postgres"}.
+ * The benchmark table is dropped afterwards.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionInsertBenchmark {
+
+    private static final int BATCH = 100;
+    private static final String TABLE = "transaction_code_benchmark";
+
+    public enum Codes { RANDOM_TEXT, RANDOM_UUID, TIME_ORDERED_UUID }
+
+    @Param({"RANDOM_TEXT", "RANDOM_UUID", "TIME_ORDERED_UUID"})
+    public Codes codes;
+
+    @Param({"1000000"})
+    public int preloadRows;
+
+    @Param({"jdbc:h2:mem:transaction_codes;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE"})
+    public String url;
+
+    private final TransactionCodeGenerator generator = new TransactionCodeGenerator(1);
+    private final BigDecimal amount = new BigDecimal("150.00");
+    private Connection connection;
+    private PreparedStatement insert;
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection(url);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + TABLE);
+            statement.execute("CREATE TABLE " + TABLE + " (id BIGINT PRIMARY KEY, code "
+                    + (codes == Codes.RANDOM_TEXT ? "VARCHAR(100)" : "UUID")
+                    + " NOT NULL UNIQUE, amount NUMERIC(15, 2) NOT NULL)");
+        }
+        connection.setAutoCommit(false);
+        insert = connection.prepareStatement("INSERT INTO " + TABLE + " (id, code, amount) VALUES (?, ?, ?)");
+        while (nextId < preloadRows) {
+            insertBatch();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        insert.close();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE " + TABLE);
+        }
+        connection.commit();
+        connection.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void insertBatch() throws SQLException {
+        for (int i = 0; i < BATCH; i++) {
+            insert.setLong(1, nextId++);
+            if (codes == Codes.RANDOM_TEXT) {
+                insert.setString(2, TransactionCodeGenerator.PREFIX + UUID.randomUUID());
+            } else if (codes == Codes.RANDOM_UUID) {
+                insert.setObject(2, UUID.randomUUID());
+            } else {
+                insert.setObject(2, generator.next());
+            }
+            insert.setBigDecimal(3, amount);
+            insert.addBatch();
+        }
+        insert.executeBatch();
+        connection.commit();
+    }
+}
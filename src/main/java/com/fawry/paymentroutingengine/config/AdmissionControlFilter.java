@@ -0,0 +1,239 @@
+package com.fawry.paymentroutingengine.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fawry.paymentroutingengine.exception.PayloadTooLargeException;
+import com.fawry.paymentroutingengine.exception.RateLimitExceededException;
+import com.fawry.paymentroutingengine.service.AdmissionControl;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Admission Control Filter
+ * Applies the global concurrency limit and the per-biller rate limits to the
+ * payment and transaction APIs before the request reaches a controller.
+ *
+ * The biller code is taken from the path (/api/billers/{code}/...) or from the
+ * JSON body of payment requests; a batch takes one permit per item from each
+ * biller it contains, at most that biller's burst. The body is buffered so the controller can still read it;
+ * only once the request holds a global slot, and only up to {@code routing.admission.max-body-bytes}
+ * (413 beyond that, checked against Content-Length before reading).
+ * Rejections are rendered by {@link com.fawry.paymentroutingengine.exception.GlobalExceptionHandler}.
+ */
+@Component
+@Slf4j
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private static final Pattern BILLER_PATH = Pattern.compile("^/api/billers/([^/]+)(/.*)?$");
+
+    private final AdmissionControl admissionControl;
+    private final ObjectMapper objectMapper;
+    private final HandlerExceptionResolver exceptionResolver;
+
+    public AdmissionControlFilter(AdmissionControl admissionControl, ObjectMapper objectMapper,
+                                  @Qualifier("handlerExceptionResolver") HandlerExceptionResolver exceptionResolver) {
+        this.admissionControl = admissionControl;
+        this.objectMapper = objectMapper;
+        this.exceptionResolver = exceptionResolver;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !admissionControl.isEnabled()
+                || !(path.startsWith("/api/payment/") || path.startsWith("/api/billers/"));
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException {
+
+        try {
+            admissionControl.enter();
+        } catch (RateLimitExceededException ex) {
+            exceptionResolver.resolveException(request, response, null, ex);
+            return;
+        }
+
+        boolean releasedLater = false;
+        try {
+            HttpServletRequest admitted = request;
+            Map<String, Integer> permits;
+            String path = request.getRequestURI().substring(request.getContextPath().length());
+            Matcher matcher = BILLER_PATH.matcher(path);
+            if (matcher.matches()) {
+                permits = Map.of(matcher.group(1), 1);
+            } else {
+                CachedBodyRequest cached = new CachedBodyRequest(request, admissionControl.getMaxBodyBytes());
+                admitted = cached;
+                permits = billersInBody(cached.body);
+            }
+
+            admissionControl.acquire(permits);
+            filterChain.doFilter(admitted, response);
+
+            // Asynchronous handlers (queued on the urgency dispatcher) hold their slot until the response is done
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleaseOnComplete());
+                releasedLater = true;
+            }
+        } catch (RateLimitExceededException | PayloadTooLargeException ex) {
+            exceptionResolver.resolveException(request, response, null, ex);
+        } finally {
+            if (!releasedLater) {
+                admissionControl.exit();
+            }
+        }
+    }
+
+    /**
+     * Permits per biller for a payment request body: {"billerCode": ...} or a
+     * batch {"requests": [{"billerCode": ...}, ...]}. Bodies that do not parse
+     * are left to the controller's validation.
+     */
+    private Map<String, Integer> billersInBody(byte[] body) {
+        Map<String, Integer> permits = new LinkedHashMap<>();
+        if (body.length == 0) {
+            return permits;
+        }
+        try {
+            JsonNode root = objectMapper.readTree(body);
+            if (root == null) {
+                return permits;
+            }
+            addBiller(root, permits);
+            JsonNode items = root.get("requests");
+            if (items != null && items.isArray()) {
+                for (JsonNode item : items) {
+                    addBiller(item, permits);
+                }
+            }
+        } catch (IOException ex) {
+            log.debug("Admission control could not read the request body: {}", ex.getMessage());
+        }
+        return permits;
+    }
+
+    private static void addBiller(JsonNode node, Map<String, Integer> permits) {
+        JsonNode billerCode = node.get("billerCode");
+        if (billerCode != null && billerCode.isTextual() && !billerCode.asText().isBlank()) {
+            permits.merge(billerCode.asText(), 1, Integer::sum);
+        }
+    }
+
+    private final class ReleaseOnComplete implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            admissionControl.exit();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    /**
+     * Request whose body has been read up front and can be read again.
+     */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, int maxBytes) throws IOException {
+            super(request);
+            if (request.getContentLengthLong() > maxBytes) {
+                throw tooLarge(maxBytes);
+            }
+            // Without a Content-Length (chunked) the limit is enforced while reading
+            byte[] read = request.getInputStream().readNBytes(maxBytes + 1);
+            if (read.length > maxBytes) {
+                throw tooLarge(maxBytes);
+            }
+            this.body = read;
+        }
+
+        private static PayloadTooLargeException tooLarge(int maxBytes) {
+            return new PayloadTooLargeException("Request body exceeds " + maxBytes + " bytes");
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    // The whole body is already in memory: it is available now and then done
+                    try {
+                        if (input.available() > 0) {
+                            listener.onDataAvailable();
+                        }
+                        listener.onAllDataRead();
+                    } catch (IOException ex) {
+                        listener.onError(ex);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return input.read(buffer, offset, length);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.fawry.paymentroutingengine.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Admission control settings ({@code routing.admission.*}).
+ * Per-biller limits are keyed by biller code and replace the default limit.
+ */
+@Component
+@ConfigurationProperties(prefix = "routing.admission")
+@Data
+public class AdmissionProperties {
+
+    private boolean enabled = true;
+
+    private int maxConcurrentRequests = 200;
+
+    private Limit defaultLimit = new Limit(50, 100);
+
+    private Map<String, Limit> billers = new HashMap<>();
+
+    private long maxTrackedBillers = 100_000;
+
+    private long idleExpirySeconds = 600;
+
+    private int maxBodyBytes = 1_048_576;
+
+    public Limit limitFor(String billerCode) {
+        return billers.getOrDefault(billerCode, defaultLimit);
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Limit {
+        private double permitsPerSecond;
+        private int burst;
+    }
+}
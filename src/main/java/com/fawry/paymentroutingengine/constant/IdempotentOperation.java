@@ -0,0 +1,9 @@
+package com.fawry.paymentroutingengine.constant;
+
+/**
+ * Endpoints that accept an Idempotency-Key; a key is scoped to the operation and biller.
+ */
+public enum IdempotentOperation {
+    CREATE_TRANSACTION,
+    RECOMMEND
+}
@@ -0,0 +1,52 @@
+package com.fawry.paymentroutingengine.controller;
+
+import com.fawry.paymentroutingengine.dto.response.AdmissionStatusResponse;
+import com.fawry.paymentroutingengine.dto.response.ApiResponse;
+import com.fawry.paymentroutingengine.dto.response.BillerRateLimitResponse;
+import com.fawry.paymentroutingengine.service.AdmissionControl;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Rate Limit Controller
+ * Exposes admission control state per biller
+ */
+@RestController
+@RequestMapping("/api/admin/billers")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Biller Rate Limits", description = "Admin endpoints for inspecting biller rate limits")
+@SecurityRequirement(name = "bearerAuth")
+public class BillerRateLimitController {
+
+    private final AdmissionControl admissionControl;
+
+    @GetMapping("/rate-limits")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Get rate limits", description = "Global concurrency limit and the rate limit state of recently active billers")
+    public ResponseEntity<ApiResponse<AdmissionStatusResponse>> getRateLimits() {
+        return ResponseEntity.ok(
+                ApiResponse.success(admissionControl.status(), "Rate limits retrieved successfully")
+        );
+    }
+
+    @GetMapping("/{code}/rate-limit")
+    @PreAuthorize("hasAnyRole('ADMIN', 'BILLER')")
+    @Operation(summary = "Get biller rate limit", description = "Rate limit state of one biller")
+    public ResponseEntity<ApiResponse<BillerRateLimitResponse>> getRateLimit(@PathVariable String code) {
+        log.info("Get rate limit request received for biller: {}", code);
+
+        return ResponseEntity.ok(
+                ApiResponse.success(admissionControl.status(code), "Rate limit retrieved successfully")
+        );
+    }
+}
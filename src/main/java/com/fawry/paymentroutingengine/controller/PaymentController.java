@@ -1,12 +1,22 @@
 package com.fawry.paymentroutingengine.controller;
 
+import com.fawry.paymentroutingengine.dto.request.BatchRecommendationRequest;
 import com.fawry.paymentroutingengine.dto.request.PaymentRecommendationRequest;
 import com.fawry.paymentroutingengine.dto.request.PaymentSplitRequest;
+import com.fawry.paymentroutingengine.dto.request.QuoteCommitRequest;
 import com.fawry.paymentroutingengine.dto.response.ApiResponse;
+import com.fawry.paymentroutingengine.dto.response.BatchRecommendationResponse;
 import com.fawry.paymentroutingengine.dto.response.GatewayRecommendationResponse;
+import com.fawry.paymentroutingengine.dto.response.QuoteResponse;
+import com.fawry.paymentroutingengine.dto.response.TransactionResponse;
 import com.fawry.paymentroutingengine.service.TransactionService;
 import com.fawry.paymentroutingengine.dto.response.PaymentSplitResponse;
+import com.fawry.paymentroutingengine.service.IdempotencyService;
+import com.fawry.paymentroutingengine.service.PaymentSplitService;
 import com.fawry.paymentroutingengine.service.RoutingAlgorithmService;
+import com.fawry.paymentroutingengine.service.UrgencyDispatcher;
+import com.fawry.paymentroutingengine.constant.IdempotentOperation;
+import com.fawry.paymentroutingengine.constant.Urgency;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -17,6 +27,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Payment Routing Controller
  * Handles gateway recommendation and payment splitting
@@ -30,21 +42,91 @@ import org.springframework.web.bind.annotation.*;
 public class PaymentController {
 
     private final RoutingAlgorithmService routingAlgorithmService;
+    private final PaymentSplitService paymentSplitService;
+    private final UrgencyDispatcher urgencyDispatcher;
+    private final IdempotencyService idempotencyService;
 
     @PostMapping("/recommend")
     @PreAuthorize("hasAnyRole('ADMIN', 'BILLER', 'USER')")
     @Operation(summary = "Recommend gateway",
-            description = "Get optimal gateway recommendation based on amount, urgency, and availability")
-    public ResponseEntity<ApiResponse<GatewayRecommendationResponse>> recommendGateway(
+            description = "Get optimal gateway recommendation based on amount, urgency, and availability; "
+                    + "a retry with the same Idempotency-Key returns the original recommendation")
+    public CompletableFuture<ResponseEntity<ApiResponse<GatewayRecommendationResponse>>> recommendGateway(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @Valid @RequestBody PaymentRecommendationRequest request) {
         log.info("Gateway recommendation request for biller: {}, amount: {}, urgency: {}",
                 request.getBillerCode(), request.getAmount(), request.getUrgency());
 
-        GatewayRecommendationResponse response = routingAlgorithmService.recommendGateway(request);
+        return idempotencyService.execute(IdempotentOperation.RECOMMEND, request.getBillerCode(), idempotencyKey,
+                        request, GatewayRecommendationResponse.class,
+                        work -> urgencyDispatcher.submit(request.getUrgency(), work),
+                        code -> routingAlgorithmService.recommendGateway(request, code),
+                        routingAlgorithmService::toRecommendation)
+                .thenApply(response -> ResponseEntity.ok(
+                        ApiResponse.success(response, "Gateway recommendation generated successfully")
+                ));
+    }
+
+    @PostMapping("/recommend/batch")
+    @PreAuthorize("hasAnyRole('ADMIN', 'BILLER', 'USER')")
+    @Operation(summary = "Recommend gateways in batch",
+            description = "Route many payments in one call against one routing snapshot; quota is consumed in request order and failures are reported per item")
+    public CompletableFuture<ResponseEntity<ApiResponse<BatchRecommendationResponse>>> recommendGateways(
+            @Valid @RequestBody BatchRecommendationRequest request) {
+        log.info("Batch gateway recommendation request with {} items", request.getRequests().size());
+
+        // Bulk work: always on the CAN_WAIT lane so a large batch cannot crowd out INSTANT payments
+        return urgencyDispatcher.submit(Urgency.CAN_WAIT, () -> routingAlgorithmService.recommendGateways(request))
+                .thenApply(response -> ResponseEntity.ok(
+                        ApiResponse.success(response, "Batch recommendation processed: "
+                                + response.getSucceeded() + " succeeded, " + response.getFailed() + " failed")
+                ));
+    }
+
+    @PostMapping("/split")
+    @PreAuthorize("hasAnyRole('ADMIN', 'BILLER', 'USER')")
+    @Operation(summary = "Split payment",
+            description = "Split an amount no single gateway can carry into the cheapest combination of gateways")
+    public CompletableFuture<ResponseEntity<ApiResponse<PaymentSplitResponse>>> splitPayment(
+            @Valid @RequestBody PaymentSplitRequest request) {
+        log.info("Payment split request for biller: {}, amount: {}, urgency: {}",
+                request.getBillerCode(), request.getAmount(), request.getUrgency());
+
+        return urgencyDispatcher.submit(request.getUrgency(), () -> paymentSplitService.splitPayment(request))
+                .thenApply(response -> ResponseEntity.ok(
+                        ApiResponse.success(response, "Payment split into " + response.getTotalSplits() + " transactions")
+                ));
+    }
+
+    @PostMapping("/quote")
+    @PreAuthorize("hasAnyRole('ADMIN', 'BILLER', 'USER')")
+    @Operation(summary = "Quote gateway",
+            description = "Preview the recommended gateway without creating a transaction or using quota; returns a short-lived token for /commit")
+    public CompletableFuture<ResponseEntity<ApiResponse<QuoteResponse>>> quoteGateway(
+            @Valid @RequestBody PaymentRecommendationRequest request) {
+        log.info("Gateway quote request for biller: {}, amount: {}, urgency: {}",
+                request.getBillerCode(), request.getAmount(), request.getUrgency());
+
+        return urgencyDispatcher.submit(request.getUrgency(), () -> routingAlgorithmService.quoteGateway(request))
+                .thenApply(response -> ResponseEntity.ok(
+                        ApiResponse.success(response, "Gateway quote generated successfully")
+                ));
+    }
+
+    @PostMapping("/commit")
+    @PreAuthorize("hasAnyRole('ADMIN', 'BILLER', 'USER')")
+    @Operation(summary = "Commit quote",
+            description = "Reserve quota and create the transaction for a previously issued quote token of the same biller; "
+                    + "runs with the urgency the quote was issued for. A commit that fails leaves the token usable until it expires")
+    public CompletableFuture<ResponseEntity<ApiResponse<TransactionResponse>>> commitQuote(
+            @Valid @RequestBody QuoteCommitRequest request) {
+        log.info("Quote commit request for biller: {}", request.getBillerCode());
 
-        return ResponseEntity.ok(
-                ApiResponse.success(response, "Gateway recommendation generated successfully")
-        );
+        Urgency urgency = routingAlgorithmService.quoteUrgency(request.getQuoteToken());
+        return urgencyDispatcher.submit(urgency, () -> routingAlgorithmService.commitQuote(request.getBillerCode(), request.getQuoteToken()))
+                .thenApply(response -> ResponseEntity.ok(
+                        ApiResponse.success(response, "Quote committed successfully")
+                ));
     }
 
-}
\ No newline at end of file
+}
@@ -1,10 +1,14 @@
 package com.fawry.paymentroutingengine.controller;
 
+import com.fawry.paymentroutingengine.constant.IdempotentOperation;
 import com.fawry.paymentroutingengine.dto.request.TransactionCreateRequest;
 import com.fawry.paymentroutingengine.dto.response.ApiResponse;
+import com.fawry.paymentroutingengine.dto.response.TransactionPageResponse;
 import com.fawry.paymentroutingengine.dto.response.TransactionResponse;
 import com.fawry.paymentroutingengine.dto.response.TransactionSummaryResponse;
+import com.fawry.paymentroutingengine.service.IdempotencyService;
 import com.fawry.paymentroutingengine.service.TransactionService;
+import com.fawry.paymentroutingengine.service.UrgencyDispatcher;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -19,6 +23,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Transaction Controller
@@ -32,36 +37,58 @@ import java.util.List;
 @SecurityRequirement(name = "bearerAuth")
 public class TransactionController {
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final TransactionService transactionService;
+    private final UrgencyDispatcher urgencyDispatcher;
+    private final IdempotencyService idempotencyService;
 
 
     @PostMapping
     @PreAuthorize("hasAnyRole('ADMIN', 'BILLER')")
-    @Operation(summary = "Create transaction", description = "Create a new payment transaction")
-    public ResponseEntity<ApiResponse<TransactionResponse>> createTransaction(
+    @Operation(summary = "Create transaction",
+            description = "Create a new payment transaction; a retry with the same Idempotency-Key returns the original transaction")
+    public CompletableFuture<ResponseEntity<ApiResponse<TransactionResponse>>> createTransaction(
             @PathVariable String billerCode,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @Valid @RequestBody TransactionCreateRequest request) {
         log.info("Create transaction request for biller: {}, amount: {}", billerCode, request.getAmount());
 
-        TransactionResponse response = transactionService.createTransaction(billerCode, request);
-
-        return ResponseEntity.status(HttpStatus.CREATED)
-                .body(ApiResponse.success(response, "Transaction created successfully"));
+        return idempotencyService.execute(IdempotentOperation.CREATE_TRANSACTION, billerCode, idempotencyKey,
+                        request, TransactionResponse.class,
+                        work -> urgencyDispatcher.submit(request.getUrgency(), work),
+                        code -> transactionService.createTransaction(billerCode, request, code),
+                        transactionService::toResponse)
+                .thenApply(response -> ResponseEntity.status(HttpStatus.CREATED)
+                        .body(ApiResponse.success(response, "Transaction created successfully")));
     }
 
 
     @GetMapping
     @PreAuthorize("hasAnyRole('ADMIN', 'BILLER')")
-    @Operation(summary = "Get transactions", description = "Get transaction history for a biller, optionally filtered by date")
+    @Operation(summary = "Get transactions",
+            description = "Get transaction history for a biller on one day (date, today when no dates are given) or from "
+                    + "startDate to endDate inclusive, at most routing.transactions.max-range-days (default 31) days. "
+                    + "Returns at most limit rows (default 100, max 1000), oldest first; when more remain, the "
+                    + "X-Next-Cursor header holds the cursor for the next page")
     public ResponseEntity<ApiResponse<List<TransactionResponse>>> getTransactions(
             @PathVariable String billerCode,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
-        log.info("Get transactions request for biller: {}, date: {}", billerCode, date);
-
-        List<TransactionResponse> response = transactionService.getTransactionsByBiller(billerCode, date);
-
-        return ResponseEntity.ok(
-                ApiResponse.success(response, "Retrieved " + response.size() + " transactions")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor) {
+        log.info("Get transactions request for biller: {}, date: {}, period: {} to {}", billerCode, date, startDate, endDate);
+
+        TransactionPageResponse page = transactionService.getTransactionsByBiller(
+                billerCode, date, startDate, endDate, limit, cursor);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(
+                ApiResponse.success(page.getTransactions(), "Retrieved " + page.getTransactions().size() + " transactions")
         );
     }
 
@@ -69,7 +96,8 @@ public class TransactionController {
     @GetMapping("/summary")
     @PreAuthorize("hasAnyRole('ADMIN', 'BILLER')")
     @Operation(summary = "Get transaction summary",
-            description = "Get aggregated transaction summary by gateway and status")
+            description = "Get aggregated transaction summary by gateway and status, for today by default and "
+                    + "at most routing.transactions.max-range-days (default 31) days")
     public ResponseEntity<ApiResponse<TransactionSummaryResponse>> getTransactionSummary(
             @PathVariable String billerCode,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
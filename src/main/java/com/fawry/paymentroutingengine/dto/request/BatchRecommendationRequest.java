@@ -0,0 +1,33 @@
+package com.fawry.paymentroutingengine.dto.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Request DTO for batch gateway recommendation
+ *
+ * Items are routed in order; each one consumes quota before the next is routed.
+ *
+ * Example JSON:
+ * {
+ *   "requests": [
+ *     { "billerCode": "BILL_12345", "amount": 1000.00, "urgency": "INSTANT" },
+ *     { "billerCode": "BILL_12345", "amount": 250.50, "urgency": "CAN_WAIT" }
+ *   ]
+ * }
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchRecommendationRequest {
+
+    @NotEmpty(message = "requests are required")
+    @Size(max = 5000, message = "at most 5000 requests per batch")
+    private List<@Valid PaymentRecommendationRequest> requests;
+}
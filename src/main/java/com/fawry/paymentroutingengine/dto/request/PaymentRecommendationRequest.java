@@ -30,6 +30,7 @@ public class PaymentRecommendationRequest {
     @NotNull(message = "amount is required")
     @DecimalMin(value = "0.1" , message = "min amount is .01")
     @Positive(message = "amount required be positive")
+    @Digits(integer = 13, fraction = 2, message = "amount must have at most 2 decimal places")
     private BigDecimal amount;
 
     @NotNull(message = "urgency is required ")
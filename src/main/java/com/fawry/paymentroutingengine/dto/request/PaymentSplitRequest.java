@@ -1,4 +1,36 @@
 package com.fawry.paymentroutingengine.dto.request;
 
+import com.fawry.paymentroutingengine.constant.Urgency;
+import jakarta.validation.constraints.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Request DTO for splitting a payment across gateways
+ *
+ * Example JSON:
+ * {
+ *   "billerCode": "BILL_12345",
+ *   "amount": 250000.00,
+ *   "urgency": "CAN_WAIT"
+ * }
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
 public class PaymentSplitRequest {
+
+    @NotBlank(message = "biller code is required")
+    private String billerCode;
+
+    @NotNull(message = "amount is required")
+    @Positive(message = "amount required be positive")
+    @Digits(integer = 13, fraction = 2, message = "amount must have at most 2 decimal places")
+    private BigDecimal amount;
+
+    @NotNull(message = "urgency is required ")
+    private Urgency urgency;
 }
@@ -0,0 +1,28 @@
+package com.fawry.paymentroutingengine.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Request DTO for committing a previously issued quote
+ *
+ * Example JSON:
+ * {
+ *   "billerCode": "BILL_12345",
+ *   "quoteToken": "5b0f7c1e-3f57-4c47-9a4c-0a0f5a4f8e21"
+ * }
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class QuoteCommitRequest {
+
+    // Must be the biller the quote was issued for; also what admission control charges
+    @NotBlank(message = "biller code is required")
+    private String billerCode;
+
+    @NotBlank(message = "quote token is required")
+    private String quoteToken;
+}
@@ -32,6 +32,7 @@ public class TransactionCreateRequest {
 
     @NotNull(message = "Amount is required")
     @Positive(message = "Amount must be greater than 0")
+    @Digits(integer = 13, fraction = 2, message = "amount must have at most 2 decimal places")
     private BigDecimal amount;
 
     @NotNull(message = "commission is required")
@@ -0,0 +1,29 @@
+package com.fawry.paymentroutingengine.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Admission control state: the global concurrency limit and the rate limit
+ * of every biller seen recently
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AdmissionStatusResponse {
+
+    private Boolean enabled;
+
+    private Integer maxConcurrentRequests;
+
+    private Integer inFlightRequests;
+
+    private Long rejectedForConcurrency;
+
+    private List<BillerRateLimitResponse> billers;
+}
@@ -0,0 +1,40 @@
+package com.fawry.paymentroutingengine.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Response DTO for batch gateway recommendation
+ * One result per request item, in request order.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchRecommendationResponse {
+
+    private Integer total;
+    private Integer succeeded;
+    private Integer failed;
+    private Long snapshotVersion;
+    private List<ItemResult> results;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class ItemResult {
+        private Integer index;
+        private String billerCode;
+        private Boolean success;
+        private GatewayRecommendationResponse recommendation;
+        private String error;
+        private String message;
+    }
+}
@@ -0,0 +1,42 @@
+package com.fawry.paymentroutingengine.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Rate limit state of one biller
+ *
+ * Example JSON:
+ * {
+ *   "billerCode": "BILL_12345",
+ *   "customLimit": false,
+ *   "permitsPerSecond": 50.0,
+ *   "burst": 100,
+ *   "availableTokens": 87.5,
+ *   "admitted": 1520,
+ *   "rejected": 3
+ * }
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BillerRateLimitResponse {
+
+    private String billerCode;
+
+    // True if the biller has its own limit instead of the default
+    private Boolean customLimit;
+
+    private Double permitsPerSecond;
+
+    private Integer burst;
+
+    private Double availableTokens;
+
+    private Long admitted;
+
+    private Long rejected;
+}
@@ -1,4 +1,57 @@
 package com.fawry.paymentroutingengine.dto.response;
 
+import com.fawry.paymentroutingengine.constant.Urgency;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Response DTO for a split payment
+ *
+ * Example JSON:
+ * {
+ *   "billerCode": "BILL_12345",
+ *   "totalAmount": 250000.00,
+ *   "totalCommission": 2506.00,
+ *   "totalSplits": 2,
+ *   "parentTransactionId": 1041,
+ *   "optimal": true,
+ *   "splits": [
+ *     { "sequence": 1, "transactionCode": "TXN-...", "gatewayCode": "GW_FAWRYPAY", "amount": 200000.00, "commission": 2003.00 },
+ *     { "sequence": 2, "transactionCode": "TXN-...", "gatewayCode": "GW_CREDITCAR", "amount": 50000.00, "commission": 503.00 }
+ *   ]
+ * }
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
 public class PaymentSplitResponse {
+
+    private String billerCode;
+    private BigDecimal totalAmount;
+    private BigDecimal totalCommission;
+    private Integer totalSplits;
+    // Id of the first child, which the other children point at
+    private Long parentTransactionId;
+    private Boolean optimal;
+    private List<Split> splits;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Split {
+        private Integer sequence;
+        private String transactionCode;
+        private String gatewayCode;
+        private String gatewayName;
+        private BigDecimal amount;
+        private BigDecimal commission;
+        private Urgency urgency;
+    }
 }
@@ -0,0 +1,23 @@
+package com.fawry.paymentroutingengine.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Response DTO for a gateway quote
+ * The recommendation is computed without side effects; the token commits it.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QuoteResponse {
+
+    private String quoteToken;
+    private Instant expiresAt;
+    private GatewayRecommendationResponse recommendation;
+}
@@ -0,0 +1,22 @@
+package com.fawry.paymentroutingengine.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of a transaction listing
+ * nextCursor is null on the last page; otherwise it is passed back as cursor for the next one.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionPageResponse {
+
+    private List<TransactionResponse> transactions;
+    private String nextCursor;
+}
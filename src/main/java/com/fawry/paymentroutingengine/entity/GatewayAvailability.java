@@ -12,8 +12,8 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 
 @Entity
-@Table(name = "gateway_availability", uniqueConstraints = @UniqueConstraint(
-        columnNames = {"gateway_id", "day_week"}
+@Table(name = "gateway_availability", indexes = @Index(
+        name = "idx_gateway_availability_gateway", columnList = "gateway_id"
 ))
 
 @Data
@@ -22,7 +22,8 @@ import java.time.LocalTime;
 public class GatewayAvailability {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "gateway_availability_seq")
+    @SequenceGenerator(name = "gateway_availability_seq", sequenceName = "gateway_availability_seq", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
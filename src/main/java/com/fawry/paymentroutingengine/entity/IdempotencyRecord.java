@@ -0,0 +1,60 @@
+package com.fawry.paymentroutingengine.entity;
+
+import com.fawry.paymentroutingengine.constant.IdempotentOperation;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A request made with an Idempotency-Key. The row is claimed before the request
+ * runs (the unique constraint lets one claim win across instances) and holds the
+ * serialized response once it completed; {@code completedAt} is null while the
+ * first request is still running. The claim also names the code of the transaction
+ * the request creates, so a request that committed its transaction but not its
+ * response can still be answered from the transaction row.
+ */
+@Entity
+@Table(name = "idempotency_keys",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"operation", "biller_code", "idempotency_key"}),
+        indexes = @Index(name = "idx_idempotency_keys_created_at", columnList = "created_at"))
+@Data
+@NoArgsConstructor
+public class IdempotencyRecord {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "operation", nullable = false, length = 30)
+    private IdempotentOperation operation;
+
+    @Column(name = "biller_code", nullable = false, length = 50)
+    private String billerCode;
+
+    @Column(name = "idempotency_key", nullable = false)
+    private String idempotencyKey;
+
+    // SHA-256 of the request body, to refuse a key reused for a different request
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+
+    // Null only on claims made before transaction codes were recorded
+    @Column(name = "transaction_code")
+    private UUID transactionCode;
+
+    @Column(name = "response", columnDefinition = "text")
+    private String response;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+}
@@ -9,21 +9,30 @@ import com.fawry.paymentroutingengine.constant.Status;
 import com.fawry.paymentroutingengine.constant.Urgency;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 @Entity
 @Data
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+        @Index(name = "idx_transactions_biller_created", columnList = "biller_id, created_at"),
+        // Unique indexes of a partitioned table must include the partition key (created_at);
+        // unpartitioned tables also get uk_transactions_code on code alone from db/transaction-code-unique.sql
+        @Index(name = "uk_transactions_code_created", columnList = "code, created_at", unique = true)
+})
 @NoArgsConstructor
 @AllArgsConstructor
 public class Transaction {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled sequence so inserts can be JDBC-batched; native inserts use nextval('transactions_seq')
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transactions_seq")
+    @SequenceGenerator(name = "transactions_seq", sequenceName = "transactions_seq", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
-    @Column(name = "code", unique = true, nullable = false, length = 100)
-    private String code;
+    // UUIDv7 stored as uuid; rendered as TXN-... by TransactionCodeGenerator.render
+    @Column(name = "code", nullable = false)
+    private UUID code;
 
     @Column(name = "biller_id", nullable = false)
     private Integer billerId;
@@ -50,21 +59,13 @@ public class Transaction {
     private String processingTime;
 
     @CreationTimestamp
-    @Column(name = "created_at", updatable = false)
+    @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
     @Column(name = "completed_at")
     private LocalDateTime completedAt;
 
-
-
-}
-
-
-
-  /*
-
-    Bouns Task
+    // Split payments: every later child points at the first child of its split, whose own parent is null
     @Column(name = "parent_transaction_id")
     private Long parentTransactionId;
 
@@ -76,8 +77,5 @@ public class Transaction {
 
     @Column(name = "total_splits")
     private Integer totalSplits;
-    */
 
-// setter, getter to string NO @Date
-// equles , hash_code
-// Data make all in to_string
\ No newline at end of file
+}
@@ -0,0 +1,10 @@
+package com.fawry.paymentroutingengine.exception;
+
+/**
+ * The Idempotency-Key was used for a different request, or its first request is still running.
+ */
+public class IdempotencyConflictException extends RuntimeException {
+    public IdempotencyConflictException(String message) {
+        super(message);
+    }
+}
@@ -4,6 +4,7 @@ import com.fawry.paymentroutingengine.entity.Biller;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,5 +13,7 @@ public interface BillerRepository extends JpaRepository<Biller, Integer> {
 
     Optional<Biller> findByCode(String code);
 
+    List<Biller> findByCodeIn(Collection<String> codes);
+
     boolean existsByCode(String code);
 }
\ No newline at end of file
@@ -1,11 +1,14 @@
 package com.fawry.paymentroutingengine.repository;
 
 import com.fawry.paymentroutingengine.entity.DailyQuota;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -18,4 +21,52 @@ public interface DailyQuotaRepository extends JpaRepository<DailyQuota, Integer>
 
 
     Optional<DailyQuota>  findByBillerIdAndGatewayIdAndQuotaDate(Long billerId, Long gateWayId, LocalDate date );
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT q FROM DailyQuota q WHERE q.billerId = :billerId AND q.gatewayId = :gatewayId AND q.quotaDate = :quotaDate")
+    Optional<DailyQuota> findForUpdate(@Param("billerId") Long billerId,
+                                       @Param("gatewayId") Long gatewayId,
+                                       @Param("quotaDate") LocalDate quotaDate);
+
+    /**
+     * Atomically reserve {@code amount} of a biller's daily quota on a gateway in a
+     * single statement (PostgreSQL). The row is created on first use; an existing
+     * row is only updated while the new total stays within {@code dailyLimit}.
+     *
+     * @return 1 if the quota was reserved, 0 if it would exceed the daily limit
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO daily_gateway_quotas " +
+            "(biller_id, gateway_id, quota_date, total_amount, transaction_count, daily_limit, created_at, updated_at) " +
+            "SELECT :billerId, :gatewayId, :quotaDate, :amount, 1, :dailyLimit, now(), now() " +
+            "WHERE :amount <= :dailyLimit " +
+            "ON CONFLICT (biller_id, gateway_id, quota_date) DO UPDATE SET " +
+            "total_amount = COALESCE(daily_gateway_quotas.total_amount, 0) + EXCLUDED.total_amount, " +
+            "transaction_count = COALESCE(daily_gateway_quotas.transaction_count, 0) + 1, " +
+            "daily_limit = EXCLUDED.daily_limit, " +
+            "updated_at = now() " +
+            "WHERE COALESCE(daily_gateway_quotas.total_amount, 0) + EXCLUDED.total_amount <= EXCLUDED.daily_limit",
+            nativeQuery = true)
+    int reserveQuota(@Param("billerId") Long billerId,
+                     @Param("gatewayId") Long gatewayId,
+                     @Param("quotaDate") LocalDate quotaDate,
+                     @Param("amount") BigDecimal amount,
+                     @Param("dailyLimit") BigDecimal dailyLimit);
+
+    /**
+     * Give back a reservation made with {@link #reserveQuota} whose transaction was never persisted.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE daily_gateway_quotas SET " +
+            "total_amount = total_amount - :amount, " +
+            "transaction_count = transaction_count - 1, " +
+            "updated_at = now() " +
+            "WHERE biller_id = :billerId AND gateway_id = :gatewayId AND quota_date = :quotaDate",
+            nativeQuery = true)
+    int releaseQuota(@Param("billerId") Long billerId,
+                     @Param("gatewayId") Long gatewayId,
+                     @Param("quotaDate") LocalDate quotaDate,
+                     @Param("amount") BigDecimal amount);
 }
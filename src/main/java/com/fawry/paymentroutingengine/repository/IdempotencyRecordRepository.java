@@ -0,0 +1,41 @@
+package com.fawry.paymentroutingengine.repository;
+
+import com.fawry.paymentroutingengine.constant.IdempotentOperation;
+import com.fawry.paymentroutingengine.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, Long> {
+
+    Optional<IdempotencyRecord> findByOperationAndBillerCodeAndIdempotencyKey(IdempotentOperation operation,
+                                                                              String billerCode,
+                                                                              String idempotencyKey);
+
+    /**
+     * Drop keys past their retention. Unfinished claims are kept until then too:
+     * their transaction may have committed, and only a retry that checked the
+     * transaction table may release them.
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.createdAt < :retainedSince")
+    int deleteExpired(@Param("retainedSince") LocalDateTime retainedSince);
+
+    /**
+     * Release a claim that never completed, unless it completed in the meantime.
+     *
+     * @return 1 if the claim was released
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.id = :id AND r.completedAt IS NULL")
+    int deleteUnfinished(@Param("id") Long id);
+}
@@ -1,6 +1,9 @@
 package com.fawry.paymentroutingengine.repository;
 
+import com.fawry.paymentroutingengine.constant.Status;
 import com.fawry.paymentroutingengine.entity.Transaction;
+import com.fawry.paymentroutingengine.util.TransactionCodeGenerator;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -9,14 +12,83 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
 
-    List<Transaction> findByBillerId(Long billerId);
-    List<Transaction> findByBillerIdAndCreatedAtBetween(Long billerId, LocalDateTime start, LocalDateTime end);
+    /**
+     * How far created_at may be from the time embedded in a generated code: the code is
+     * drawn before the row is queued and written, and both use the JVM's local clock,
+     * so this covers write delays and a daylight saving change in between.
+     */
+    Duration CODE_CREATED_WINDOW = Duration.ofHours(2);
+
+    Optional<Transaction> findByCode(UUID code);
+
+    @Query("SELECT t FROM Transaction t WHERE t.code = :code AND t.createdAt BETWEEN :from AND :to")
+    Optional<Transaction> findByCodeCreatedBetween(@Param("code") UUID code,
+                                                   @Param("from") LocalDateTime from,
+                                                   @Param("to") LocalDateTime to);
+
+    /**
+     * The transaction with a code from {@link TransactionCodeGenerator}, looked up only in the
+     * created_at window around the code's timestamp so a partitioned table reads one or two
+     * partitions instead of probing every one. Codes without a timestamp search the whole table.
+     */
+    default Optional<Transaction> findByGeneratedCode(UUID code) {
+        return TransactionCodeGenerator.timestamp(code)
+                .map(drawn -> LocalDateTime.ofInstant(drawn, ZoneId.systemDefault()))
+                .map(drawnAt -> findByCodeCreatedBetween(code,
+                        drawnAt.minus(CODE_CREATED_WINDOW), drawnAt.plus(CODE_CREATED_WINDOW)))
+                .orElseGet(() -> findByCode(code));
+    }
+
+    /**
+     * Up to {@code limit} transactions created in {@code [from, to)} after the row
+     * {@code (afterCreatedAt, afterId)}, in (created_at, id) order. Half-open on created_at so a
+     * partitioned table is only scanned in the partitions covering the period; the next page
+     * starts after the last row of this one.
+     */
+    @Query("SELECT t FROM Transaction t WHERE t.billerId = :billerId " +
+            "AND t.createdAt >= :from AND t.createdAt < :to " +
+            "AND (t.createdAt > :afterCreatedAt OR (t.createdAt = :afterCreatedAt AND t.id > :afterId)) " +
+            "ORDER BY t.createdAt, t.id")
+    List<Transaction> findPageByBillerIdCreatedIn(@Param("billerId") Integer billerId,
+                                                  @Param("from") LocalDateTime from,
+                                                  @Param("to") LocalDateTime to,
+                                                  @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                                  @Param("afterId") Long afterId,
+                                                  Limit limit);
+
+    /**
+     * Count and sums per (gateway, status) of the transactions created in {@code [from, to)},
+     * aggregated by the database over the partitions covering the period.
+     */
+    @Query("SELECT t.gatewayId AS gatewayId, t.status AS status, COUNT(t) AS transactionCount, " +
+            "SUM(t.amount) AS totalAmount, SUM(t.commission) AS totalCommission " +
+            "FROM Transaction t WHERE t.billerId = :billerId " +
+            "AND t.createdAt >= :from AND t.createdAt < :to " +
+            "GROUP BY t.gatewayId, t.status")
+    List<GatewayStatusTotals> sumByGatewayAndStatus(@Param("billerId") Integer billerId,
+                                                    @Param("from") LocalDateTime from,
+                                                    @Param("to") LocalDateTime to);
+
+    interface GatewayStatusTotals {
+        Integer getGatewayId();
+
+        Status getStatus();
+
+        long getTransactionCount();
+
+        BigDecimal getTotalAmount();
+
+        BigDecimal getTotalCommission();
+    }
 }
@@ -0,0 +1,135 @@
+package com.fawry.paymentroutingengine.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/**
+ * Interval index over gateway amount ranges ({@link RoutingGateway#fitsAmount}):
+ * which gateways accept a given amount.
+ *
+ * A segment tree over the distinct range boundaries; each gateway is stored in
+ * the O(log n) nodes its range covers exactly, so the nodes on the path from the
+ * root to the leaf holding an amount contain exactly the gateways that fit it,
+ * each once. Gateways are referred to by their position in the source list.
+ *
+ * Immutable once built.
+ */
+public final class AmountRangeIndex {
+
+    private static final int[] NONE = new int[0];
+
+    private final List<RoutingGateway> gateways;
+    // Leaf i covers amounts [boundaries[i], boundaries[i + 1])
+    private final long[] boundaries;
+    private final int leaves;
+    private final int[][] members;
+    private final int size;
+
+    public AmountRangeIndex(List<RoutingGateway> gateways, Predicate<RoutingGateway> include) {
+        this.gateways = gateways;
+
+        List<Integer> included = new ArrayList<>();
+        TreeSet<Long> cuts = new TreeSet<>();
+        for (int position = 0; position < gateways.size(); position++) {
+            RoutingGateway gateway = gateways.get(position);
+            if (!include.test(gateway) || gateway.getLowestAmountMinor() > gateway.getHighestAmountMinor()) {
+                continue;
+            }
+            included.add(position);
+            cuts.add(gateway.getLowestAmountMinor());
+            cuts.add(upperBound(gateway));
+        }
+        this.size = included.size();
+        this.boundaries = cuts.stream().mapToLong(Long::longValue).toArray();
+        this.leaves = Math.max(boundaries.length - 1, 0);
+
+        List<List<Integer>> nodes = new ArrayList<>(2 * leaves);
+        for (int node = 0; node < 2 * leaves; node++) {
+            nodes.add(new ArrayList<>());
+        }
+        for (int position : included) {
+            RoutingGateway gateway = gateways.get(position);
+            int left = Arrays.binarySearch(boundaries, gateway.getLowestAmountMinor()) + leaves;
+            int right = Arrays.binarySearch(boundaries, upperBound(gateway)) + leaves;
+            for (; left < right; left >>= 1, right >>= 1) {
+                if ((left & 1) == 1) {
+                    nodes.get(left++).add(position);
+                }
+                if ((right & 1) == 1) {
+                    nodes.get(--right).add(position);
+                }
+            }
+        }
+        this.members = new int[2 * leaves][];
+        for (int node = 0; node < 2 * leaves; node++) {
+            members[node] = nodes.get(node).isEmpty() ? NONE : nodes.get(node).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * @return the gateways that accept the amount, in source list order
+     */
+    public List<RoutingGateway> candidates(long amountMinor) {
+        int leaf = leafOf(amountMinor);
+        if (leaf < 0) {
+            return List.of();
+        }
+
+        int count = 0;
+        for (int node = leaf; node >= 1; node >>= 1) {
+            count += members[node].length;
+        }
+        int[] positions = new int[count];
+        int filled = 0;
+        for (int node = leaf; node >= 1; node >>= 1) {
+            System.arraycopy(members[node], 0, positions, filled, members[node].length);
+            filled += members[node].length;
+        }
+        Arrays.sort(positions);
+
+        List<RoutingGateway> candidates = new ArrayList<>(count);
+        for (int position : positions) {
+            candidates.add(gateways.get(position));
+        }
+        return candidates;
+    }
+
+    /**
+     * Number of indexed gateways.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the tree node of the leaf holding the amount (walk up with {@code node >>= 1}),
+     *         or -1 if no indexed gateway accepts it
+     */
+    int leafOf(long amountMinor) {
+        if (leaves == 0 || amountMinor < boundaries[0] || amountMinor >= boundaries[leaves]) {
+            return -1;
+        }
+        int found = Arrays.binarySearch(boundaries, amountMinor);
+        return (found >= 0 ? found : -found - 2) + leaves;
+    }
+
+    int nodeCount() {
+        return 2 * leaves;
+    }
+
+    /**
+     * Source list positions stored at a tree node.
+     */
+    int[] members(int node) {
+        return members[node];
+    }
+
+    // Exclusive end; an unlimited range simply has no end boundary inside the long range
+    private static long upperBound(RoutingGateway gateway) {
+        long highest = gateway.getHighestAmountMinor();
+        return highest == Long.MAX_VALUE ? Long.MAX_VALUE : highest + 1;
+    }
+}
@@ -0,0 +1,144 @@
+package com.fawry.paymentroutingengine.routing;
+
+import com.fawry.paymentroutingengine.constant.DayType;
+import com.fawry.paymentroutingengine.entity.GatewayAvailability;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A gateway's weekly schedule compiled to one bit per minute of the week
+ * (10,080 bits, Monday 00:00 = bit 0). Checking availability is a single bit
+ * test with no allocation.
+ *
+ * Compilation rules:
+ * - is24_7 marks the whole day (or the whole week for {@link DayType#ALL})
+ * - a window is [startTime, endTime) at minute resolution
+ * - a window whose end is not after its start crosses midnight and continues
+ *   on the following day (SUN wraps to MON)
+ * - any number of windows may be given for the same day
+ */
+public final class AvailabilityBitmap {
+
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    public static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+
+    private static final AvailabilityBitmap NEVER = new AvailabilityBitmap(new long[words()]);
+
+    private final long[] bits;
+
+    private AvailabilityBitmap(long[] bits) {
+        this.bits = bits;
+    }
+
+    public static AvailabilityBitmap never() {
+        return NEVER;
+    }
+
+    public static AvailabilityBitmap compile(List<GatewayAvailability> schedules) {
+        if (schedules == null || schedules.isEmpty()) {
+            return NEVER;
+        }
+
+        long[] bits = new long[words()];
+        for (GatewayAvailability schedule : schedules) {
+            for (int day : daysOf(schedule.getDayWeek())) {
+                int dayStart = day * MINUTES_PER_DAY;
+
+                if (Boolean.TRUE.equals(schedule.getIs24_7())) {
+                    setRange(bits, dayStart, dayStart + MINUTES_PER_DAY);
+                    continue;
+                }
+
+                if (schedule.getStartTime() == null || schedule.getEndTime() == null) {
+                    continue;
+                }
+
+                int start = minuteOfDay(schedule.getStartTime());
+                int end = minuteOfDay(schedule.getEndTime());
+
+                if (start < end) {
+                    setRange(bits, dayStart + start, dayStart + end);
+                } else {
+                    // Crosses midnight: rest of this day, then the start of the next one
+                    setRange(bits, dayStart + start, dayStart + MINUTES_PER_DAY);
+                    int nextDayStart = ((day + 1) % 7) * MINUTES_PER_DAY;
+                    setRange(bits, nextDayStart, nextDayStart + end);
+                }
+            }
+        }
+        return new AvailabilityBitmap(bits);
+    }
+
+    public boolean isAvailable(LocalDateTime at) {
+        return isAvailable(minuteOfWeek(at));
+    }
+
+    public boolean isAvailable(int minuteOfWeek) {
+        return (bits[minuteOfWeek >>> 6] & (1L << minuteOfWeek)) != 0;
+    }
+
+    /**
+     * Minutes of the week at which at least one of the schedules opens or closes,
+     * ascending. Between two consecutive change minutes every gateway's
+     * availability is constant.
+     */
+    public static int[] changeMinutes(Collection<AvailabilityBitmap> schedules) {
+        long[] changes = new long[words()];
+        for (AvailabilityBitmap schedule : schedules) {
+            long[] bits = schedule.bits;
+            for (int word = 0; word < bits.length; word++) {
+                long previous = word > 0 ? (bits[word] << 1) | (bits[word - 1] >>> 63) : (bits[0] << 1) | (bits[0] & 1L);
+                changes[word] |= bits[word] ^ previous;
+            }
+            // Minute 0 follows the last minute of the week
+            if (schedule.isAvailable(0) != schedule.isAvailable(MINUTES_PER_WEEK - 1)) {
+                changes[0] |= 1L;
+            }
+        }
+
+        int count = 0;
+        for (int minute = 0; minute < MINUTES_PER_WEEK; minute++) {
+            if ((changes[minute >>> 6] & (1L << minute)) != 0) {
+                count++;
+            }
+        }
+        int[] minutes = new int[count];
+        for (int minute = 0, i = 0; minute < MINUTES_PER_WEEK; minute++) {
+            if ((changes[minute >>> 6] & (1L << minute)) != 0) {
+                minutes[i++] = minute;
+            }
+        }
+        return minutes;
+    }
+
+    public static int minuteOfWeek(LocalDateTime at) {
+        return (at.getDayOfWeek().getValue() - 1) * MINUTES_PER_DAY
+                + at.getHour() * 60
+                + at.getMinute();
+    }
+
+    private static int minuteOfDay(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    private static int[] daysOf(DayType dayType) {
+        if (dayType == null || dayType == DayType.ALL) {
+            return new int[]{0, 1, 2, 3, 4, 5, 6};
+        }
+        // DayType declares MON..SUN in ISO order
+        return new int[]{dayType.ordinal()};
+    }
+
+    private static void setRange(long[] bits, int fromInclusive, int toExclusive) {
+        for (int minute = fromInclusive; minute < toExclusive; minute++) {
+            bits[minute >>> 6] |= 1L << minute;
+        }
+    }
+
+    private static int words() {
+        return (MINUTES_PER_WEEK + 63) >>> 6;
+    }
+}
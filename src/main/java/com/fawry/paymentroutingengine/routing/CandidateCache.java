@@ -0,0 +1,21 @@
+package com.fawry.paymentroutingengine.routing;
+
+import com.fawry.paymentroutingengine.constant.Urgency;
+
+import java.util.function.Supplier;
+
+/**
+ * Cache of pre-quota candidate lists in front of the scoring pass of
+ * {@link GatewayRanker}. {@code urgency} is INSTANT for the instant-only list and
+ * CAN_WAIT for the list over all gateways.
+ */
+public interface CandidateCache {
+
+    CandidateList get(RoutingSnapshot snapshot, long amountMinor, Urgency urgency, int minuteOfWeek,
+                      Supplier<CandidateList> loader);
+
+    /**
+     * Most candidates kept per list.
+     */
+    int candidateLimit();
+}
@@ -0,0 +1,59 @@
+package com.fawry.paymentroutingengine.routing;
+
+/**
+ * The gateways that fit one amount and are open, cheapest first, before any
+ * quota check. It depends only on the amount, the gateway configuration and
+ * the availability epoch, not on the biller, so it can be cached and shared.
+ *
+ * Holds at most a fixed number of candidates; {@link #isComplete()} tells
+ * whether that is every candidate or only the cheapest ones.
+ */
+public final class CandidateList {
+
+    private final RoutingGateway[] gateways;
+    private final long[] commissions;
+    private final int[] positions;
+    private int size;
+    private boolean complete = true;
+
+    CandidateList(int limit) {
+        this.gateways = new RoutingGateway[limit];
+        this.commissions = new long[limit];
+        this.positions = new int[limit];
+    }
+
+    /**
+     * @return false if the list is full; it is then marked incomplete
+     */
+    boolean add(RoutingGateway gateway, long commissionMinor, int position) {
+        if (size == gateways.length) {
+            complete = false;
+            return false;
+        }
+        gateways[size] = gateway;
+        commissions[size] = commissionMinor;
+        positions[size] = position;
+        size++;
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public RoutingGateway getGateway(int index) {
+        return gateways[index];
+    }
+
+    public long getCommissionMinor(int index) {
+        return commissions[index];
+    }
+
+    public int getPosition(int index) {
+        return positions[index];
+    }
+}
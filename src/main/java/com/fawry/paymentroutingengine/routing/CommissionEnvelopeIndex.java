@@ -0,0 +1,343 @@
+package com.fawry.paymentroutingengine.routing;
+
+import com.fawry.paymentroutingengine.util.CommissionUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Cheapest-first lookup of the gateways whose amount range contains a payment.
+ *
+ * A gateway's commission is the line {@code fixed + rate * amount}, valid on its
+ * amount range, so the cheapest gateway for an amount is a lower-envelope query.
+ * The gateways fitting an amount are found with an {@link AmountRangeIndex}: the
+ * O(log n) segment tree nodes on the path to the amount's leaf.
+ *
+ * Each node keeps its lines as nested lower envelopes (layer 1 is the envelope of
+ * all lines, layer 2 the envelope of the rest, ...). A line in a deeper layer is
+ * never below the envelope of the layer above, and along one envelope the value
+ * at a fixed amount falls to the minimum and then rises again, so a
+ * {@link Cursor} can hand out gateways in commission order lazily: it starts from
+ * the minimum of each node's first layer and only expands past an entry once that
+ * entry has been taken. Callers check availability and quota on the candidates as
+ * they come and stop after the best K, instead of scoring the whole fleet.
+ *
+ * Gateways whose commission terms cannot be held in fixed point get no envelopes;
+ * they sit in a range index of their own, are scored on each lookup they fit and
+ * are merged into the same order. Commissions
+ * that round to the same piastre may come out of snapshot order, so the cursor
+ * exposes each gateway's position for tie-breaking.
+ *
+ * Immutable once built; cursors are per lookup and not thread-safe.
+ */
+public final class CommissionEnvelopeIndex {
+
+    private static final long RATE_ONE = 10_000_000_000L;
+    private static final int[][] NO_LAYERS = new int[0][];
+
+    private final List<RoutingGateway> gateways;
+    // Fixed-point terms by snapshot position
+    private final long[] fixed;
+    private final long[] rates;
+
+    private final AmountRangeIndex ranges;
+    private final int[][][] nodes;
+    private final AmountRangeIndex unindexed;
+
+    private CommissionEnvelopeIndex(List<RoutingGateway> gateways, Predicate<RoutingGateway> include) {
+        this.gateways = gateways;
+        this.fixed = new long[gateways.size()];
+        this.rates = new long[gateways.size()];
+        for (int position = 0; position < gateways.size(); position++) {
+            fixed[position] = gateways.get(position).getCommissionFixedMinor();
+            rates[position] = gateways.get(position).getCommissionRateUnits();
+        }
+
+        this.ranges = new AmountRangeIndex(gateways, include.and(CommissionEnvelopeIndex::representable));
+        this.unindexed = new AmountRangeIndex(gateways, include.and(gateway -> !representable(gateway)));
+        this.nodes = new int[ranges.nodeCount()][][];
+        for (int node = 1; node < nodes.length; node++) {
+            int[] members = ranges.members(node);
+            nodes[node] = members.length == 0 ? NO_LAYERS : layers(members);
+        }
+    }
+
+    public static CommissionEnvelopeIndex build(List<RoutingGateway> gateways) {
+        return new CommissionEnvelopeIndex(gateways, gateway -> true);
+    }
+
+    public static CommissionEnvelopeIndex build(List<RoutingGateway> gateways, Predicate<RoutingGateway> include) {
+        return new CommissionEnvelopeIndex(gateways, include);
+    }
+
+    /**
+     * @return the fitting gateways for the amount, cheapest first
+     */
+    public Cursor cheapestFirst(long amountMinor) {
+        return new Cursor(amountMinor);
+    }
+
+    public int size() {
+        return ranges.size() + unindexed.size();
+    }
+
+    private static boolean representable(RoutingGateway gateway) {
+        return gateway.getCommissionFixedMinor() >= 0 && gateway.getCommissionRateUnits() >= 0;
+    }
+
+    /**
+     * Peel the lines into nested lower envelopes, each ordered by slope descending
+     * (left to right along the amount axis).
+     */
+    private int[][] layers(int[] members) {
+        int[] order = bySlope(members, members.length);
+        int left = order.length;
+
+        List<int[]> layers = new ArrayList<>();
+        while (left > 0) {
+            int[] hull = new int[left];
+            int hullSize = 0;
+            int[] rest = new int[left];
+            int restSize = 0;
+            for (int i = 0; i < left; i++) {
+                int line = order[i];
+                // Parallel lines: the first one has the lowest intercept
+                if (hullSize > 0 && rates[hull[hullSize - 1]] == rates[line]) {
+                    rest[restSize++] = line;
+                    continue;
+                }
+                while (hullSize >= 2 && redundant(hull[hullSize - 2], hull[hullSize - 1], line)) {
+                    rest[restSize++] = hull[--hullSize];
+                }
+                hull[hullSize++] = line;
+            }
+            layers.add(Arrays.copyOf(hull, hullSize));
+            order = bySlope(rest, restSize);
+            left = restSize;
+        }
+        return layers.toArray(new int[0][]);
+    }
+
+    /**
+     * Slope descending, then intercept ascending.
+     */
+    private int[] bySlope(int[] lines, int size) {
+        Integer[] boxed = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            boxed[i] = lines[i];
+        }
+        Arrays.sort(boxed, (a, b) -> rates[a] != rates[b]
+                ? Long.compare(rates[b], rates[a])
+                : Long.compare(fixed[a], fixed[b]));
+        int[] sorted = new int[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = boxed[i];
+        }
+        return sorted;
+    }
+
+    /**
+     * Slopes of a, b, c strictly decreasing: b is not on the envelope if a and c
+     * meet no later than a and b do.
+     */
+    private boolean redundant(int a, int b, int c) {
+        // x(a,c) <= x(a,b)  <=>  (fc - fa) * (ra - rb) <= (fb - fa) * (ra - rc)
+        return compareProducts(fixed[c] - fixed[a], rates[a] - rates[b],
+                fixed[b] - fixed[a], rates[a] - rates[c]) <= 0;
+    }
+
+    /**
+     * Exact comparison of line values at an amount, in 1e-10 piastre units.
+     */
+    private int compareAt(int a, int b, long amountMinor) {
+        // fa * 1e10 + ra * x  vs  fb * 1e10 + rb * x
+        return compareProducts(fixed[a] - fixed[b], RATE_ONE, rates[b] - rates[a], amountMinor);
+    }
+
+    /**
+     * Sign of {@code a * b - c * d} without overflow.
+     */
+    private static int compareProducts(long a, long b, long c, long d) {
+        long leftHigh = Math.multiplyHigh(a, b);
+        long rightHigh = Math.multiplyHigh(c, d);
+        if (leftHigh != rightHigh) {
+            return Long.compare(leftHigh, rightHigh);
+        }
+        return Long.compareUnsigned(a * b, c * d);
+    }
+
+    /**
+     * Hands out the gateways that fit one amount in ascending commission order.
+     */
+    public final class Cursor {
+
+        // Min-heap on (commission, snapshot position) in parallel arrays. An entry is
+        // an envelope line (node, layer, index, step) or an unindexed gateway (node 0)
+        private static final int STEP_BOTH = 0;
+        private static final int STEP_LEFT = -1;
+        private static final int STEP_RIGHT = 1;
+
+        private final long amountMinor;
+        private long[] keys = new long[16];
+        private int[] positions = new int[16];
+        private int[] entryNodes = new int[16];
+        private int[] entryLayers = new int[16];
+        private int[] entryIndexes = new int[16];
+        private int[] entrySteps = new int[16];
+        private int heapSize;
+
+        private long commissionMinor;
+        private int position;
+
+        private Cursor(long amountMinor) {
+            this.amountMinor = amountMinor;
+
+            for (int node = ranges.leafOf(amountMinor); node >= 1; node >>= 1) {
+                if (nodes[node].length > 0) {
+                    pushLayerMinimum(node, 0);
+                }
+            }
+            for (int node = unindexed.leafOf(amountMinor); node >= 1; node >>= 1) {
+                for (int member : unindexed.members(node)) {
+                    push(gateways.get(member).commissionMinor(amountMinor), member, 0, 0, 0, STEP_BOTH);
+                }
+            }
+        }
+
+        public boolean hasNext() {
+            return heapSize > 0;
+        }
+
+        /**
+         * Commission of the gateway {@link #next()} would return; only valid while {@link #hasNext()}.
+         */
+        public long peekCommissionMinor() {
+            return keys[0];
+        }
+
+        public RoutingGateway next() {
+            commissionMinor = keys[0];
+            position = positions[0];
+            int node = entryNodes[0];
+            int layer = entryLayers[0];
+            int index = entryIndexes[0];
+            int step = entrySteps[0];
+            pop();
+
+            if (node > 0) {
+                int[] envelope = nodes[node][layer];
+                if (step != STEP_RIGHT && index > 0) {
+                    pushEnvelopeEntry(node, layer, index - 1, STEP_LEFT);
+                }
+                if (step != STEP_LEFT && index < envelope.length - 1) {
+                    pushEnvelopeEntry(node, layer, index + 1, STEP_RIGHT);
+                }
+                if (step == STEP_BOTH && layer + 1 < nodes[node].length) {
+                    pushLayerMinimum(node, layer + 1);
+                }
+            }
+            return gateways.get(position);
+        }
+
+        /**
+         * Commission of the gateway last returned by {@link #next()}.
+         */
+        public long commissionMinor() {
+            return commissionMinor;
+        }
+
+        /**
+         * Snapshot position of the gateway last returned by {@link #next()}.
+         */
+        public int position() {
+            return position;
+        }
+
+        private void pushLayerMinimum(int node, int layer) {
+            int[] envelope = nodes[node][layer];
+            // Values along the envelope fall, then rise: find the first index not beaten by its successor
+            int low = 0;
+            int high = envelope.length - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compareAt(envelope[mid + 1], envelope[mid], amountMinor) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            pushEnvelopeEntry(node, layer, low, STEP_BOTH);
+        }
+
+        private void pushEnvelopeEntry(int node, int layer, int index, int step) {
+            int line = nodes[node][layer][index];
+            push(CommissionUtil.commissionMinor(fixed[line], rates[line], amountMinor), line, node, layer, index, step);
+        }
+
+        private void push(long key, int position, int node, int layer, int index, int step) {
+            if (heapSize == keys.length) {
+                grow();
+            }
+            int slot = heapSize++;
+            while (slot > 0) {
+                int parent = (slot - 1) >>> 1;
+                if (!before(key, position, parent)) {
+                    break;
+                }
+                move(parent, slot);
+                slot = parent;
+            }
+            set(slot, key, position, node, layer, index, step);
+        }
+
+        private void pop() {
+            int last = --heapSize;
+            int slot = 0;
+            while (true) {
+                int child = 2 * slot + 1;
+                if (child >= last) {
+                    break;
+                }
+                if (child + 1 < last && before(keys[child + 1], positions[child + 1], child)) {
+                    child++;
+                }
+                if (!before(keys[child], positions[child], last)) {
+                    break;
+                }
+                move(child, slot);
+                slot = child;
+            }
+            move(last, slot);
+        }
+
+        private boolean before(long key, int position, int slot) {
+            return key != keys[slot] ? key < keys[slot] : position < positions[slot];
+        }
+
+        private void move(int from, int to) {
+            set(to, keys[from], positions[from], entryNodes[from], entryLayers[from],
+                    entryIndexes[from], entrySteps[from]);
+        }
+
+        private void set(int slot, long key, int position, int node, int layer, int index, int step) {
+            keys[slot] = key;
+            positions[slot] = position;
+            entryNodes[slot] = node;
+            entryLayers[slot] = layer;
+            entryIndexes[slot] = index;
+            entrySteps[slot] = step;
+        }
+
+        private void grow() {
+            int capacity = keys.length * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+            entryNodes = Arrays.copyOf(entryNodes, capacity);
+            entryLayers = Arrays.copyOf(entryLayers, capacity);
+            entryIndexes = Arrays.copyOf(entryIndexes, capacity);
+            entrySteps = Arrays.copyOf(entrySteps, capacity);
+        }
+    }
+}
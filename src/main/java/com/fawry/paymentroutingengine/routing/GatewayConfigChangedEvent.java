@@ -0,0 +1,13 @@
+package com.fawry.paymentroutingengine.routing;
+
+import lombok.Value;
+
+/**
+ * Published by {@code GatewayService} whenever a gateway or its availability is
+ * written. Listeners react after the surrounding transaction commits.
+ */
+@Value
+public class GatewayConfigChangedEvent {
+
+    String gatewayCode;
+}
@@ -0,0 +1,236 @@
+package com.fawry.paymentroutingengine.routing;
+
+import com.fawry.paymentroutingengine.constant.Urgency;
+import com.fawry.paymentroutingengine.util.MoneyUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * The filter / score / select pass of a recommendation, free of Spring and the
+ * database so it can be benchmarked and reused on its own.
+ *
+ * Hard filters (amount fit, availability, quota) and scoring run in one pass
+ * over the gateways; only the best K are kept, separately for instant gateways
+ * so INSTANT can fall back to all gateways. All amounts are piastres.
+ *
+ * Against a snapshot, candidates come cheapest first from its
+ * {@link CommissionEnvelopeIndex}; availability and quota are only checked for
+ * those, and the pass stops once the best K are settled. Both paths return the
+ * same gateways in the same order.
+ *
+ * With a {@link CandidateCache}, the cheapest open gateways for an amount are
+ * looked up once per availability epoch and snapshot version; a hit only runs
+ * the quota check over the cached list.
+ */
+@Slf4j
+public final class GatewayRanker {
+
+    /**
+     * Remaining daily quota of the current biller on a gateway, in piastres.
+     */
+    @FunctionalInterface
+    public interface QuotaView {
+        long remainingMinor(RoutingGateway gateway);
+    }
+
+    private final int topK;
+    private final CandidateCache candidateCache;
+
+    public GatewayRanker(int topK) {
+        this(topK, null);
+    }
+
+    public GatewayRanker(int topK, CandidateCache candidateCache) {
+        this.topK = topK;
+        this.candidateCache = candidateCache;
+    }
+
+    /**
+     * @return the best gateways for the payment, empty if none passes the hard filters
+     */
+    public TopKSelector rank(RoutingSnapshot snapshot, long amountMinor, Urgency urgency,
+                             LocalDateTime now, QuotaView quota) {
+        int minuteOfWeek = AvailabilityBitmap.minuteOfWeek(now);
+
+        if (urgency != Urgency.INSTANT) {
+            TopKSelector allGateways = select(snapshot, Urgency.CAN_WAIT, amountMinor, minuteOfWeek, quota);
+            log.debug("Urgency=CAN_WAIT: Examined {} cheapest fitting gateways", allGateways.offered());
+            return allGateways;
+        }
+
+        TopKSelector instantGateways = select(snapshot, Urgency.INSTANT, amountMinor, minuteOfWeek, quota);
+        if (!instantGateways.isEmpty()) {
+            log.debug("Urgency=INSTANT: Examined {} cheapest fitting instant gateways", instantGateways.offered());
+            return instantGateways;
+        }
+        TopKSelector allGateways = select(snapshot, Urgency.CAN_WAIT, amountMinor, minuteOfWeek, quota);
+        if (!allGateways.isEmpty()) {
+            log.warn("No instant gateways available, using all available gateways");
+        }
+        return allGateways;
+    }
+
+    /**
+     * Linear pass over a plain gateway list; see {@link #rank(RoutingSnapshot, long, Urgency, LocalDateTime, QuotaView)}.
+     */
+    public TopKSelector rank(List<RoutingGateway> gateways, long amountMinor, Urgency urgency,
+                             LocalDateTime now, QuotaView quota) {
+        int minuteOfWeek = AvailabilityBitmap.minuteOfWeek(now);
+
+        TopKSelector allGateways = new TopKSelector(topK);
+        TopKSelector instantGateways = new TopKSelector(topK);
+        for (int i = 0, size = gateways.size(); i < size; i++) {
+            RoutingGateway gateway = gateways.get(i);
+            if (!fitsAmount(gateway, amountMinor) || !isAvailable(gateway, minuteOfWeek)) {
+                continue;
+            }
+            long remainingQuota = quota.remainingMinor(gateway);
+            if (amountMinor > remainingQuota) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Gateway {} rejected: insufficient quota. Required: {}, Remaining: {}",
+                            gateway.getCode(), MoneyUtil.fromMinor(amountMinor), MoneyUtil.fromMinor(remainingQuota));
+                }
+                continue;
+            }
+            long commission = gateway.commissionMinor(amountMinor);
+            allGateways.offer(gateway, commission, remainingQuota);
+            if (gateway.isInstant()) {
+                instantGateways.offer(gateway, commission, remainingQuota);
+            }
+        }
+
+        log.debug("After hard filters: {} gateways remaining", allGateways.offered());
+
+        if (urgency != Urgency.INSTANT) {
+            log.debug("Urgency=CAN_WAIT: Using all {} available gateways", allGateways.offered());
+            return allGateways;
+        }
+        if (instantGateways.isEmpty()) {
+            if (!allGateways.isEmpty()) {
+                log.warn("No instant gateways available, using all available gateways");
+            }
+            return allGateways;
+        }
+        log.debug("Urgency=INSTANT: Filtered to {} instant gateways", instantGateways.offered());
+        return instantGateways;
+    }
+
+    private TopKSelector select(RoutingSnapshot snapshot, Urgency urgency, long amountMinor, int minuteOfWeek,
+                                QuotaView quota) {
+        CommissionEnvelopeIndex index = urgency == Urgency.INSTANT
+                ? snapshot.getInstantCommissionIndex()
+                : snapshot.getCommissionIndex();
+        if (candidateCache != null) {
+            CandidateList candidates = candidateCache.get(snapshot, amountMinor, urgency, minuteOfWeek,
+                    () -> candidates(index, amountMinor, minuteOfWeek, Math.max(candidateCache.candidateLimit(), topK)));
+            TopKSelector selected = select(candidates, amountMinor, quota);
+            if (selected != null) {
+                return selected;
+            }
+            log.debug("Cached candidates exhausted by quota, ranking amount {} from the index",
+                    MoneyUtil.fromMinor(amountMinor));
+        }
+        return select(index, amountMinor, minuteOfWeek, quota);
+    }
+
+    /**
+     * The cheapest open gateways for the amount, up to {@code limit}, without quota checks.
+     */
+    public CandidateList candidates(CommissionEnvelopeIndex index, long amountMinor, int minuteOfWeek, int limit) {
+        CandidateList candidates = new CandidateList(limit);
+        CommissionEnvelopeIndex.Cursor cursor = index.cheapestFirst(amountMinor);
+        while (cursor.hasNext()) {
+            RoutingGateway gateway = cursor.next();
+            if (isAvailable(gateway, minuteOfWeek) && !candidates.add(gateway, cursor.commissionMinor(), cursor.position())) {
+                break;
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Quota pass over a candidate list.
+     *
+     * @return the best K, or null if quota rejected so many candidates that gateways
+     *         beyond an incomplete list could still rank
+     */
+    private TopKSelector select(CandidateList candidates, long amountMinor, QuotaView quota) {
+        TopKSelector selected = new TopKSelector(topK);
+        for (int i = 0, size = candidates.size(); i < size; i++) {
+            long commission = candidates.getCommissionMinor(i);
+            if (selected.size() == topK && commission > selected.getCommissionMinor(topK - 1)) {
+                return selected;
+            }
+            RoutingGateway gateway = candidates.getGateway(i);
+            long remainingQuota = quota.remainingMinor(gateway);
+            if (amountMinor > remainingQuota) {
+                continue;
+            }
+            selected.offer(gateway, commission, remainingQuota, candidates.getPosition(i));
+        }
+        if (candidates.isComplete()) {
+            return selected;
+        }
+        // Gateways past the list cost at least as much as the last listed one
+        int size = candidates.size();
+        if (selected.size() == topK && candidates.getCommissionMinor(size - 1) > selected.getCommissionMinor(topK - 1)) {
+            return selected;
+        }
+        return null;
+    }
+
+    private TopKSelector select(CommissionEnvelopeIndex index, long amountMinor, int minuteOfWeek, QuotaView quota) {
+        TopKSelector selected = new TopKSelector(topK);
+        CommissionEnvelopeIndex.Cursor candidates = index.cheapestFirst(amountMinor);
+        while (candidates.hasNext()) {
+            // Equal commission can still win on remaining quota, so only a dearer one ends the pass
+            if (selected.size() == topK && candidates.peekCommissionMinor() > selected.getCommissionMinor(topK - 1)) {
+                break;
+            }
+            RoutingGateway gateway = candidates.next();
+            if (!isAvailable(gateway, minuteOfWeek)) {
+                continue;
+            }
+            long remainingQuota = quota.remainingMinor(gateway);
+            if (amountMinor > remainingQuota) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Gateway {} rejected: insufficient quota. Required: {}, Remaining: {}",
+                            gateway.getCode(), MoneyUtil.fromMinor(amountMinor), MoneyUtil.fromMinor(remainingQuota));
+                }
+                continue;
+            }
+            selected.offer(gateway, candidates.commissionMinor(), remainingQuota, candidates.position());
+        }
+        return selected;
+    }
+
+    /**
+     * Inclusive amount limits, max 0 meaning unlimited ({@link RoutingGateway#fitsAmount}).
+     */
+    public static boolean fitsAmount(RoutingGateway gateway, long amountMinor) {
+        if (gateway.fitsAmount(amountMinor)) {
+            return true;
+        }
+
+        if (log.isDebugEnabled()) {
+            if (amountMinor < gateway.getLowestAmountMinor()) {
+                log.debug("Gateway {} rejected: amount {} < min {}",
+                        gateway.getCode(), MoneyUtil.fromMinor(amountMinor), gateway.getMinTransaction());
+            } else {
+                log.debug("Gateway {} rejected: amount {} > max {}",
+                        gateway.getCode(), MoneyUtil.fromMinor(amountMinor), gateway.getMaxTransaction());
+            }
+        }
+        return false;
+    }
+
+    public static boolean isAvailable(RoutingGateway gateway, int minuteOfWeek) {
+        if (!gateway.getAvailability().isAvailable(minuteOfWeek)) {
+            log.debug("Gateway {} rejected: outside availability window", gateway.getCode());
+            return false;
+        }
+        return true;
+    }
+}
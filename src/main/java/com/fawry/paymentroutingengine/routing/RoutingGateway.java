@@ -0,0 +1,93 @@
+package com.fawry.paymentroutingengine.routing;
+
+import com.fawry.paymentroutingengine.constant.Urgency;
+import com.fawry.paymentroutingengine.entity.Gateway;
+import com.fawry.paymentroutingengine.util.CommissionUtil;
+import com.fawry.paymentroutingengine.util.MoneyUtil;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Immutable, detached copy of a gateway as seen by the routing hot path.
+ * Built once per snapshot so recommendations never touch JPA entities.
+ */
+@Value
+public class RoutingGateway {
+
+    Long id;
+    String code;
+    String name;
+    BigDecimal minTransaction;
+    BigDecimal maxTransaction;
+    BigDecimal commissionFixed;
+    BigDecimal commissionRate;
+    BigDecimal dailyLimit;
+    BigDecimal processingTime;
+    Urgency urgency;
+    AvailabilityBitmap availability;
+
+    // Precomputed fixed-point terms for the scoring hot path (piastres / 1e-10 rate units)
+    long minTransactionMinor;
+    long maxTransactionMinor;
+    long dailyLimitMinor;
+    long commissionFixedMinor;
+    long commissionRateUnits;
+
+    public static RoutingGateway from(Gateway gateway, AvailabilityBitmap availability) {
+        return new RoutingGateway(
+                gateway.getId(),
+                gateway.getCode(),
+                gateway.getName(),
+                gateway.getMinTransaction(),
+                gateway.getMaxTransaction(),
+                gateway.getCommissionFixed(),
+                gateway.getCommissionAmount(),
+                gateway.getDailyLimit(),
+                gateway.getProcessingTime(),
+                gateway.getUrgencyFromProcessingTime(),
+                availability,
+                MoneyUtil.toMinor(gateway.getMinTransaction()),
+                MoneyUtil.toMinor(gateway.getMaxTransaction()),
+                MoneyUtil.toMinor(gateway.getDailyLimit()),
+                CommissionUtil.toFixedMinor(gateway.getCommissionFixed()),
+                CommissionUtil.toRateUnits(gateway.getCommissionAmount())
+        );
+    }
+
+    /**
+     * Commission in piastres for an amount in piastres, rounded HALF_UP.
+     */
+    public long commissionMinor(long amountMinor) {
+        if (commissionFixedMinor < 0 || commissionRateUnits < 0) {
+            // Terms not representable in fixed point; stay exact with BigDecimal
+            return MoneyUtil.toMinor(CommissionUtil.commission(
+                    commissionFixed, commissionRate, MoneyUtil.fromMinor(amountMinor)));
+        }
+        return CommissionUtil.commissionMinor(commissionFixedMinor, commissionRateUnits, amountMinor);
+    }
+
+    /**
+     * Amount limits are inclusive; a max transaction of 0 means no upper limit.
+     */
+    public boolean fitsAmount(long amountMinor) {
+        return amountMinor >= getLowestAmountMinor() && amountMinor <= getHighestAmountMinor();
+    }
+
+    public long getLowestAmountMinor() {
+        return minTransactionMinor;
+    }
+
+    public long getHighestAmountMinor() {
+        return maxTransactionMinor > 0 ? maxTransactionMinor : Long.MAX_VALUE;
+    }
+
+    public boolean isAvailableAt(LocalDateTime at) {
+        return availability.isAvailable(at);
+    }
+
+    public boolean isInstant() {
+        return processingTime.compareTo(BigDecimal.ZERO) == 0;
+    }
+}
@@ -0,0 +1,78 @@
+package com.fawry.paymentroutingengine.routing;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Versioned, immutable view of every active gateway with its commission terms,
+ * limits and availability. A new instance is built and swapped in whenever the
+ * gateway configuration changes; readers never see a half-updated fleet.
+ * Commission indexes for cheapest-first lookup are built with the snapshot.
+ */
+@Getter
+public final class RoutingSnapshot {
+
+    private static final RoutingSnapshot EMPTY = new RoutingSnapshot(0L, List.of(), LocalDateTime.MIN);
+
+    private final long version;
+    private final List<RoutingGateway> gateways;
+    private final LocalDateTime builtAt;
+    private final Map<Long, RoutingGateway> gatewaysById;
+    private final Map<String, RoutingGateway> gatewaysByCode;
+    private final CommissionEnvelopeIndex commissionIndex;
+    private final CommissionEnvelopeIndex instantCommissionIndex;
+    @Getter(AccessLevel.NONE)
+    private final int[] availabilityChanges;
+
+    public RoutingSnapshot(long version, List<RoutingGateway> gateways, LocalDateTime builtAt) {
+        this.version = version;
+        this.gateways = List.copyOf(gateways);
+        this.builtAt = builtAt;
+
+        Map<Long, RoutingGateway> byId = new HashMap<>();
+        Map<String, RoutingGateway> byCode = new HashMap<>();
+        for (RoutingGateway gateway : this.gateways) {
+            byId.put(gateway.getId(), gateway);
+            byCode.put(gateway.getCode(), gateway);
+        }
+        this.gatewaysById = Collections.unmodifiableMap(byId);
+        this.gatewaysByCode = Collections.unmodifiableMap(byCode);
+        this.commissionIndex = CommissionEnvelopeIndex.build(this.gateways);
+        this.instantCommissionIndex = CommissionEnvelopeIndex.build(this.gateways, RoutingGateway::isInstant);
+        this.availabilityChanges = AvailabilityBitmap.changeMinutes(
+                this.gateways.stream().map(RoutingGateway::getAvailability).toList());
+    }
+
+    public static RoutingSnapshot empty() {
+        return EMPTY;
+    }
+
+    public RoutingGateway findById(Long gatewayId) {
+        return gatewaysById.get(gatewayId);
+    }
+
+    public RoutingGateway findByCode(String gatewayCode) {
+        return gatewaysByCode.get(gatewayCode);
+    }
+
+    /**
+     * Number of the stretch of the week, between two schedule boundaries, that the
+     * minute falls in. The set of open gateways is the same for every minute of
+     * one epoch.
+     */
+    public int availabilityEpoch(int minuteOfWeek) {
+        int found = Arrays.binarySearch(availabilityChanges, minuteOfWeek);
+        return found >= 0 ? found + 1 : -found - 1;
+    }
+
+    public int size() {
+        return gateways.size();
+    }
+}
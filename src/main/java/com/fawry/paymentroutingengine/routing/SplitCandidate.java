@@ -0,0 +1,12 @@
+package com.fawry.paymentroutingengine.routing;
+
+import lombok.Value;
+
+/**
+ * A gateway the split optimizer may use, with the biller's remaining daily quota on it.
+ */
+@Value
+public class SplitCandidate {
+    RoutingGateway gateway;
+    long remainingQuotaMinor;
+}
@@ -0,0 +1,286 @@
+package com.fawry.paymentroutingengine.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Finds the cheapest way to split an amount across gateways.
+ *
+ * Each part must respect its gateway's min/max transaction limits
+ * (inclusive, max 0 = unlimited, as TransactionService validates them), the
+ * parts on one gateway must fit the biller's remaining daily quota on it, and
+ * a gateway may carry several parts when its max is the limiting factor.
+ * Every part pays the gateway's fixed fee plus its rate on the part amount.
+ *
+ * The search is a depth-first branch and bound over the number of parts per
+ * gateway, over the {@code maxCandidates} usable gateways with the lowest rates.
+ * For a fixed vector of part counts the cheapest amounts follow from a greedy
+ * fill by rate on top of each gateway's minimums; with the undecided gateways
+ * relaxed to "any amount up to quota" the same fill is a lower bound used for
+ * pruning. When the decided gateways cannot carry the amount, the bound also
+ * counts the fewest undecided parts that can carry the rest within the parts
+ * left, and the cheapest fixed fees of that many parts; a branch where no such
+ * parts exist is cut. The same capacity check on all gateways rejects amounts
+ * that no {@code maxParts} parts can carry before searching.
+ *
+ * The search stops after {@code maxNodes} nodes or {@code maxMillis} and returns
+ * the best plan found so far.
+ *
+ * The search objective is evaluated in double precision; the commissions in
+ * the returned plan are exact.
+ */
+public final class SplitOptimizer {
+
+    private static final double EPSILON = 1e-6;
+
+    // Nodes between two clock reads
+    private static final long CLOCK_CHECK_MASK = 1023;
+
+    private final int maxParts;
+    private final int maxCandidates;
+    private final long maxNodes;
+    private final long maxNanos;
+
+    public SplitOptimizer(int maxParts, int maxCandidates, long maxNodes, long maxMillis) {
+        if (maxParts < 1) {
+            throw new IllegalArgumentException("maxParts must be at least 1, got " + maxParts);
+        }
+        if (maxCandidates < 1) {
+            throw new IllegalArgumentException("maxCandidates must be at least 1, got " + maxCandidates);
+        }
+        this.maxParts = maxParts;
+        this.maxCandidates = maxCandidates;
+        this.maxNodes = maxNodes;
+        this.maxNanos = maxMillis * 1_000_000;
+    }
+
+    public SplitPlan optimize(long amountMinor, List<SplitCandidate> candidates) {
+        if (amountMinor <= 0) {
+            return new SplitPlan(List.of(), true, 0);
+        }
+        List<SplitCandidate> usable = usable(amountMinor, candidates);
+        boolean capped = usable.size() > maxCandidates;
+        Search search = new Search(amountMinor, capped ? usable.subList(0, maxCandidates) : usable, capped);
+        search.run();
+        return search.plan();
+    }
+
+    private List<SplitCandidate> usable(long amountMinor, List<SplitCandidate> candidates) {
+        List<SplitCandidate> usable = new ArrayList<>(candidates.size());
+        for (SplitCandidate candidate : candidates) {
+            RoutingGateway gateway = candidate.getGateway();
+            long minPart = Math.max(gateway.getLowestAmountMinor(), 1);
+            long cap = Math.min(candidate.getRemainingQuotaMinor(), amountMinor);
+            if (minPart > cap || gateway.getHighestAmountMinor() < minPart) {
+                continue;
+            }
+            usable.add(candidate);
+        }
+        usable.sort(Comparator
+                .comparingDouble((SplitCandidate c) -> rate(c.getGateway()))
+                .thenComparingDouble(c -> fixed(c.getGateway())));
+        return usable;
+    }
+
+    private static double rate(RoutingGateway gateway) {
+        return gateway.getCommissionRate().doubleValue();
+    }
+
+    private static double fixed(RoutingGateway gateway) {
+        return gateway.getCommissionFixedMinor() >= 0
+                ? gateway.getCommissionFixedMinor()
+                : gateway.getCommissionFixed().movePointRight(2).doubleValue();
+    }
+
+    private final class Search {
+
+        private final long amount;
+        private final int size;
+        private final RoutingGateway[] gateways;
+        private final long[] minPart;
+        private final long[] maxPart;
+        private final long[] cap;
+        private final int[] maxCount;
+        private final double[] fixed;
+        private final double[] rate;
+        // Per first undecided gateway s and part count k: the most the k largest parts of
+        // gateways s.. can carry, and the least the k cheapest of them pay in fixed fees
+        private final long[][] carry;
+        private final double[][] fees;
+        // Gateways beyond maxCandidates were left out, so neither a plan nor its absence is proven
+        private final boolean capped;
+
+        private final int[] counts;
+        private int[] bestCounts;
+        private double bestCost = Double.POSITIVE_INFINITY;
+        private long nodes;
+        private long deadline;
+        private boolean exhausted;
+
+        Search(long amount, List<SplitCandidate> candidates, boolean capped) {
+            this.amount = amount;
+            this.capped = capped;
+            this.size = candidates.size();
+            this.gateways = new RoutingGateway[size];
+            this.minPart = new long[size];
+            this.maxPart = new long[size];
+            this.cap = new long[size];
+            this.maxCount = new int[size];
+            this.fixed = new double[size];
+            this.rate = new double[size];
+            this.counts = new int[size];
+
+            for (int i = 0; i < size; i++) {
+                SplitCandidate candidate = candidates.get(i);
+                RoutingGateway gateway = candidate.getGateway();
+                gateways[i] = gateway;
+                minPart[i] = Math.max(gateway.getLowestAmountMinor(), 1);
+                cap[i] = Math.min(candidate.getRemainingQuotaMinor(), amount);
+                maxPart[i] = Math.min(gateway.getHighestAmountMinor(), cap[i]);
+                // More parts than needed to carry the cap only add fees and minimums
+                long useful = Math.min((cap[i] + maxPart[i] - 1) / maxPart[i], cap[i] / minPart[i]);
+                maxCount[i] = (int) Math.min(useful, maxParts);
+                fixed[i] = fixed(gateway);
+                rate[i] = rate(gateway);
+            }
+
+            this.carry = new long[size + 1][maxParts + 1];
+            this.fees = new double[size + 1][maxParts + 1];
+            List<Long> partCaps = new ArrayList<>();
+            List<Double> partFees = new ArrayList<>();
+            for (int s = size - 1; s >= 0; s--) {
+                for (int part = 0; part < maxCount[s]; part++) {
+                    partCaps.add(Math.min(maxPart[s], cap[s] - part * maxPart[s]));
+                    partFees.add(fixed[s]);
+                }
+                partCaps.sort(Comparator.reverseOrder());
+                partFees.sort(Comparator.naturalOrder());
+                for (int k = 1; k <= maxParts; k++) {
+                    boolean more = k <= partCaps.size();
+                    carry[s][k] = carry[s][k - 1] + (more ? partCaps.get(k - 1) : 0);
+                    fees[s][k] = fees[s][k - 1] + (more ? partFees.get(k - 1) : 0);
+                }
+            }
+        }
+
+        void run() {
+            // Not even the largest maxParts parts can carry the amount: no plan exists
+            if (carry[0][maxParts] < amount) {
+                return;
+            }
+            deadline = System.nanoTime() + maxNanos;
+            search(0, 0, 0.0, 0);
+        }
+
+        private void search(int index, int parts, double fixedCost, long lowerSum) {
+            if (nodes >= maxNodes || (nodes & CLOCK_CHECK_MASK) == 0 && System.nanoTime() - deadline > 0) {
+                exhausted = true;
+                return;
+            }
+            nodes++;
+
+            double bound = bound(index, parts, fixedCost, null);
+            if (bound >= bestCost - EPSILON) {
+                return;
+            }
+
+            if (index == size) {
+                bestCost = bound;
+                bestCounts = counts.clone();
+                return;
+            }
+
+            int limit = Math.min(maxCount[index], maxParts - parts);
+            for (int count = limit; count >= 0 && !exhausted; count--) {
+                long lower = lowerSum + count * minPart[index];
+                if (lower > amount) {
+                    continue;
+                }
+                counts[index] = count;
+                search(index + 1, parts + count, fixedCost + count * fixed[index], lower);
+            }
+            counts[index] = 0;
+        }
+
+        /**
+         * Cheapest cost with the counts of gateways before {@code decided} fixed and
+         * the rest relaxed; exact when every gateway is decided. Fills {@code allocation}
+         * with the amount per gateway when given.
+         */
+        private double bound(int decided, int parts, double fixedCost, long[] allocation) {
+            double cost = fixedCost;
+            long lowerSum = 0;
+            for (int i = 0; i < decided; i++) {
+                long lower = counts[i] * minPart[i];
+                lowerSum += lower;
+                cost += rate[i] * lower;
+            }
+            if (lowerSum > amount) {
+                return Double.POSITIVE_INFINITY;
+            }
+
+            // The decided gateways carry at most their caps; the rest needs that many more parts
+            long shortfall = amount;
+            for (int i = 0; i < decided; i++) {
+                shortfall -= Math.min(counts[i] * maxPart[i], cap[i]);
+            }
+            if (shortfall > 0) {
+                int more = 1;
+                while (more <= maxParts - parts && carry[decided][more] < shortfall) {
+                    more++;
+                }
+                if (more > maxParts - parts) {
+                    return Double.POSITIVE_INFINITY;
+                }
+                cost += fees[decided][more];
+            }
+
+            boolean partsLeft = parts < maxParts;
+            long need = amount - lowerSum;
+            for (int i = 0; i < size; i++) {
+                long lower;
+                long upper;
+                if (i < decided) {
+                    lower = counts[i] * minPart[i];
+                    upper = Math.min(counts[i] * maxPart[i], cap[i]);
+                } else {
+                    lower = 0;
+                    upper = partsLeft ? cap[i] : 0;
+                }
+                long take = Math.min(upper - lower, need);
+                need -= take;
+                cost += rate[i] * take;
+                if (allocation != null) {
+                    allocation[i] = lower + take;
+                }
+            }
+
+            return need > 0 ? Double.POSITIVE_INFINITY : cost;
+        }
+
+        SplitPlan plan() {
+            if (bestCounts == null) {
+                return new SplitPlan(List.of(), !exhausted && !capped, nodes);
+            }
+
+            System.arraycopy(bestCounts, 0, counts, 0, size);
+            long[] allocation = new long[size];
+            bound(size, Arrays.stream(bestCounts).sum(), 0.0, allocation);
+
+            List<SplitPart> parts = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                // Every part gets the minimum, then the remainder fills parts up to the max in order
+                long extra = allocation[i] - bestCounts[i] * minPart[i];
+                for (int part = 0; part < bestCounts[i]; part++) {
+                    long topUp = Math.min(extra, maxPart[i] - minPart[i]);
+                    extra -= topUp;
+                    long partAmount = minPart[i] + topUp;
+                    parts.add(new SplitPart(gateways[i], partAmount, gateways[i].commissionMinor(partAmount)));
+                }
+            }
+            return new SplitPlan(List.copyOf(parts), !exhausted && !capped, nodes);
+        }
+    }
+}
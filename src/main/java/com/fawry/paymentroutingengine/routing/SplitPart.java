@@ -0,0 +1,13 @@
+package com.fawry.paymentroutingengine.routing;
+
+import lombok.Value;
+
+/**
+ * One child payment of a split plan, amounts in piastres.
+ */
+@Value
+public class SplitPart {
+    RoutingGateway gateway;
+    long amountMinor;
+    long commissionMinor;
+}
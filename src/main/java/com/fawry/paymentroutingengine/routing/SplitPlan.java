@@ -0,0 +1,31 @@
+package com.fawry.paymentroutingengine.routing;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Result of {@link SplitOptimizer#optimize}.
+ *
+ * {@code optimal} is false when the node or time budget ran out before the
+ * search could prove the plan is the cheapest, or when gateways beyond the
+ * candidate cap were left out; the plan is still valid.
+ */
+@Value
+public class SplitPlan {
+    List<SplitPart> parts;
+    boolean optimal;
+    long nodesExplored;
+
+    public boolean isFeasible() {
+        return !parts.isEmpty();
+    }
+
+    public long totalCommissionMinor() {
+        long total = 0;
+        for (SplitPart part : parts) {
+            total += part.getCommissionMinor();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,117 @@
+package com.fawry.paymentroutingengine.routing;
+
+/**
+ * Keeps the K best gateways seen so far, ordered by commission ascending and
+ * then remaining quota descending; remaining ties go by sequence, which is the
+ * arrival order unless the caller supplies one.
+ *
+ * Candidates are held in parallel primitive arrays sized once for K and kept
+ * sorted by insertion, so offering a candidate that does not make the cut
+ * costs one comparison and nothing is allocated per candidate.
+ *
+ * Not thread-safe; use one selector per request.
+ */
+public final class TopKSelector {
+
+    private final RoutingGateway[] gateways;
+    private final long[] commissions;
+    private final long[] remainingQuotas;
+    private final long[] sequences;
+    private int size;
+    private int offered;
+
+    public TopKSelector(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be at least 1, got " + k);
+        }
+        this.gateways = new RoutingGateway[k];
+        this.commissions = new long[k];
+        this.remainingQuotas = new long[k];
+        this.sequences = new long[k];
+    }
+
+    /**
+     * @return true if the candidate is currently among the best K
+     */
+    public boolean offer(RoutingGateway gateway, long commissionMinor, long remainingQuotaMinor) {
+        return offer(gateway, commissionMinor, remainingQuotaMinor, offered);
+    }
+
+    /**
+     * Offer with an explicit tie-break (lower sequence ranks first), for callers
+     * that do not visit candidates in their natural order.
+     */
+    public boolean offer(RoutingGateway gateway, long commissionMinor, long remainingQuotaMinor, long sequence) {
+        offered++;
+
+        int capacity = gateways.length;
+        if (size == capacity && !ranksBefore(commissionMinor, remainingQuotaMinor, sequence, capacity - 1)) {
+            return false;
+        }
+
+        // Shift worse entries down one slot, dropping the last one when full
+        int position = size < capacity ? size : capacity - 1;
+        while (position > 0 && ranksBefore(commissionMinor, remainingQuotaMinor, sequence, position - 1)) {
+            gateways[position] = gateways[position - 1];
+            commissions[position] = commissions[position - 1];
+            remainingQuotas[position] = remainingQuotas[position - 1];
+            sequences[position] = sequences[position - 1];
+            position--;
+        }
+
+        gateways[position] = gateway;
+        commissions[position] = commissionMinor;
+        remainingQuotas[position] = remainingQuotaMinor;
+        sequences[position] = sequence;
+        if (size < capacity) {
+            size++;
+        }
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Number of candidates offered, including those that did not make the cut.
+     */
+    public int offered() {
+        return offered;
+    }
+
+    public RoutingGateway getGateway(int rank) {
+        checkRank(rank);
+        return gateways[rank];
+    }
+
+    public long getCommissionMinor(int rank) {
+        checkRank(rank);
+        return commissions[rank];
+    }
+
+    public long getRemainingQuotaMinor(int rank) {
+        checkRank(rank);
+        return remainingQuotas[rank];
+    }
+
+    private boolean ranksBefore(long commissionMinor, long remainingQuotaMinor, long sequence, int index) {
+        if (commissionMinor != commissions[index]) {
+            return commissionMinor < commissions[index];
+        }
+        if (remainingQuotaMinor != remainingQuotas[index]) {
+            return remainingQuotaMinor > remainingQuotas[index];
+        }
+        return sequence < sequences[index];
+    }
+
+    private void checkRank(int rank) {
+        if (rank < 0 || rank >= size) {
+            throw new IndexOutOfBoundsException("rank " + rank + " out of " + size);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.fawry.paymentroutingengine.service;
+
+import com.fawry.paymentroutingengine.config.AdmissionProperties;
+import com.fawry.paymentroutingengine.dto.response.AdmissionStatusResponse;
+import com.fawry.paymentroutingengine.dto.response.BillerRateLimitResponse;
+import com.fawry.paymentroutingengine.exception.RateLimitExceededException;
+import com.fawry.paymentroutingengine.util.TokenBucket;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control in front of the payment API: a global cap on requests in
+ * flight and a token bucket per biller. Both are checked before any database
+ * work, so one biller flooding the API is refused with 429 instead of holding
+ * request threads and pool connections that other billers need.
+ *
+ * Buckets are created on a biller's first request and dropped after they have
+ * been idle for a while; an idle bucket would be full again anyway.
+ */
+@Service
+@Slf4j
+public class AdmissionControl {
+
+    private final AdmissionProperties properties;
+    private final Semaphore inFlight;
+    private final Cache<String, TokenBucket> buckets;
+    private final LongAdder overloaded = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+
+    public AdmissionControl(AdmissionProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.inFlight = new Semaphore(properties.getMaxConcurrentRequests());
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxTrackedBillers())
+                .expireAfterAccess(Duration.ofSeconds(properties.getIdleExpirySeconds()))
+                .build();
+
+        Gauge.builder("routing.admission.in-flight", this, AdmissionControl::inFlightRequests)
+                .description("Requests currently admitted")
+                .register(meterRegistry);
+        FunctionCounter.builder("routing.admission.rejected", overloaded, LongAdder::sum)
+                .description("Requests refused by the global concurrency limit")
+                .tag("reason", "concurrency")
+                .register(meterRegistry);
+        FunctionCounter.builder("routing.admission.rejected", rateLimited, LongAdder::sum)
+                .description("Requests refused by a biller rate limit")
+                .tag("reason", "rate")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public int getMaxBodyBytes() {
+        return properties.getMaxBodyBytes();
+    }
+
+    /**
+     * Take a global slot; must be paired with {@link #exit()}.
+     *
+     * @throws RateLimitExceededException if the limit of requests in flight is reached
+     */
+    public void enter() {
+        if (!inFlight.tryAcquire()) {
+            overloaded.increment();
+            throw new RateLimitExceededException(
+                    "Too many requests in flight, please retry shortly", 1);
+        }
+    }
+
+    public void exit() {
+        inFlight.release();
+    }
+
+    /**
+     * Take tokens from the bucket of every biller in the request: one per item,
+     * capped at the biller's burst so a large batch costs at most a full bucket
+     * and can always be admitted once the bucket refills. Either all billers are
+     * charged or, when one is over its rate, none is.
+     *
+     * @throws RateLimitExceededException if a biller is over its rate
+     */
+    public void acquire(Map<String, Integer> permitsByBiller) {
+        Map<TokenBucket, Integer> taken = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : permitsByBiller.entrySet()) {
+            TokenBucket bucket = bucket(entry.getKey());
+            int permits = Math.min(entry.getValue(), bucket.getCapacity());
+            if (!bucket.tryAcquire(permits)) {
+                rateLimited.increment();
+                taken.forEach(TokenBucket::refund);
+                long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(
+                        bucket.nanosUntilAvailable(permits) + TimeUnit.SECONDS.toNanos(1) - 1));
+                log.debug("Biller {} over its rate limit of {}/s", entry.getKey(), bucket.getTokensPerSecond());
+                throw new RateLimitExceededException(
+                        "Rate limit exceeded for biller " + entry.getKey(), retryAfter);
+            }
+            taken.put(bucket, permits);
+        }
+    }
+
+    public AdmissionStatusResponse status() {
+        List<BillerRateLimitResponse> billers = buckets.asMap().entrySet().stream()
+                .map(entry -> toResponse(entry.getKey(), entry.getValue()))
+                .sorted(Comparator.comparing(BillerRateLimitResponse::getBillerCode))
+                .toList();
+        return AdmissionStatusResponse.builder()
+                .enabled(properties.isEnabled())
+                .maxConcurrentRequests(properties.getMaxConcurrentRequests())
+                .inFlightRequests(inFlightRequests())
+                .rejectedForConcurrency(overloaded.sum())
+                .billers(billers)
+                .build();
+    }
+
+    public BillerRateLimitResponse status(String billerCode) {
+        TokenBucket bucket = buckets.getIfPresent(billerCode);
+        // Not seen recently: its bucket would be full
+        return toResponse(billerCode, bucket != null ? bucket : newBucket(billerCode));
+    }
+
+    private TokenBucket bucket(String billerCode) {
+        return buckets.get(billerCode, this::newBucket);
+    }
+
+    private TokenBucket newBucket(String billerCode) {
+        AdmissionProperties.Limit limit = properties.limitFor(billerCode);
+        return new TokenBucket(limit.getPermitsPerSecond(), limit.getBurst());
+    }
+
+    private int inFlightRequests() {
+        return properties.getMaxConcurrentRequests() - inFlight.availablePermits();
+    }
+
+    private BillerRateLimitResponse toResponse(String billerCode, TokenBucket bucket) {
+        return BillerRateLimitResponse.builder()
+                .billerCode(billerCode)
+                .customLimit(properties.getBillers().containsKey(billerCode))
+                .permitsPerSecond(bucket.getTokensPerSecond())
+                .burst(bucket.getCapacity())
+                .availableTokens(bucket.availableTokens())
+                .admitted(bucket.admitted())
+                .rejected(bucket.rejected())
+                .build();
+    }
+}
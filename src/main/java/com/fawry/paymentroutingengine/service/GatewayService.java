@@ -9,13 +9,15 @@ import com.fawry.paymentroutingengine.exception.DuplicateResourceException;
 import com.fawry.paymentroutingengine.exception.ResourceNotFoundException;
 import com.fawry.paymentroutingengine.repository.GatewayAvailabilityRepository;
 import com.fawry.paymentroutingengine.repository.GateWayRepository;
+import com.fawry.paymentroutingengine.routing.GatewayConfigChangedEvent;
+import com.fawry.paymentroutingengine.util.CommissionUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -26,6 +28,7 @@ public class GatewayService {
 
     private final GateWayRepository gatewayRepository;
     private final GatewayAvailabilityRepository availabilityRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional
     public GatewayResponse createGateway(GatewayCreateRequest request) {
@@ -64,6 +67,8 @@ public class GatewayService {
             availabilityRepository.saveAll(availabilities);
         }
 
+        eventPublisher.publishEvent(new GatewayConfigChangedEvent(savedGateway.getCode()));
+
         log.debug("Gateway created successfully: {}", savedGateway.getCode());
         return mapToResponse(savedGateway);
     }
@@ -142,6 +147,7 @@ public class GatewayService {
         }
 
         Gateway updatedGateway = gatewayRepository.save(gateway);
+        eventPublisher.publishEvent(new GatewayConfigChangedEvent(updatedGateway.getCode()));
         log.debug("Gateway updated successfully: {}", updatedGateway.getCode());
 
         return mapToResponse(updatedGateway);
@@ -155,9 +161,7 @@ public class GatewayService {
     }
 
     public BigDecimal calculateCommissionForGateway(Gateway gateway, BigDecimal amount) {
-        BigDecimal fixedCommission = gateway.getCommissionFixed();
-        BigDecimal percentageCommission = amount.multiply(gateway.getCommissionAmount());
-        return fixedCommission.add(percentageCommission).setScale(2, RoundingMode.HALF_UP);
+        return CommissionUtil.commission(gateway.getCommissionFixed(), gateway.getCommissionAmount(), amount);
     }
 
     private GatewayResponse mapToResponse(Gateway gateway) {
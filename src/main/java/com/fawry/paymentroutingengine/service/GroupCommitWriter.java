@@ -0,0 +1,422 @@
+package com.fawry.paymentroutingengine.service;
+
+import com.fawry.paymentroutingengine.entity.Transaction;
+import com.fawry.paymentroutingengine.exception.InsufficientQuotaException;
+import com.fawry.paymentroutingengine.exception.ServiceOverloadedException;
+import com.fawry.paymentroutingengine.util.MoneyUtil;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group commit for transaction rows ({@code routing.persistence.mode=group}).
+ *
+ * Concurrent transaction creations are collected for up to
+ * {@code routing.persistence.group.max-wait-ms} after the first one arrives, or
+ * until {@code max-size} are queued, and written in one database transaction:
+ * one multi-row insert into {@code transactions} plus one aggregated quota
+ * upsert per (biller, gateway, day). Each caller's future completes only after
+ * that transaction has committed, so a returned transaction is durable, unlike
+ * the async pipeline.
+ *
+ * - with the ledger quota store the quota is reserved in memory on submit and
+ *   written by the group's upsert instead of the ledger flush; with the database
+ *   store the upsert is the reservation, and submit only adds the amount to the
+ *   local view so requests ranked after it see the reduced quota
+ * - when a (biller, gateway, day)'s combined amount does not fit, its writes are
+ *   upserted again one by one in arrival order and the longest prefix that fits
+ *   is accepted, as if they had been committed separately
+ * - a failed group is retried one item at a time, so one bad row only fails its
+ *   own caller
+ * - callers must not hold a database transaction while they wait, or they keep
+ *   connections the writer needs
+ *
+ * The quota upsert is PostgreSQL-only ({@code ON CONFLICT}).
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "routing.persistence.mode", havingValue = "group")
+public class GroupCommitWriter {
+
+    private static final String INSERT_TRANSACTIONS = "INSERT INTO transactions " +
+            "(id, code, biller_id, gateway_id, amount, commission, urgency, status, processing_time, " +
+            "created_at, completed_at, is_split) VALUES ";
+    private static final String TRANSACTION_ROW = "(nextval('transactions_seq'), ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Same statement as DailyQuotaRepository.reserveQuota, for several transactions at once
+    private static final String UPSERT_QUOTA = "INSERT INTO daily_gateway_quotas " +
+            "(biller_id, gateway_id, quota_date, total_amount, transaction_count, daily_limit, created_at, updated_at) " +
+            "SELECT ?, ?, ?, ?, ?, ?, now(), now() " +
+            "WHERE ? <= ? " +
+            "ON CONFLICT (biller_id, gateway_id, quota_date) DO UPDATE SET " +
+            "total_amount = COALESCE(daily_gateway_quotas.total_amount, 0) + EXCLUDED.total_amount, " +
+            "transaction_count = COALESCE(daily_gateway_quotas.transaction_count, 0) + EXCLUDED.transaction_count, " +
+            "daily_limit = EXCLUDED.daily_limit, " +
+            "updated_at = now() " +
+            "WHERE COALESCE(daily_gateway_quotas.total_amount, 0) + EXCLUDED.total_amount <= EXCLUDED.daily_limit";
+
+    private static final Comparator<QuotaKey> KEY_ORDER = Comparator.comparing(QuotaKey::getBillerId)
+            .thenComparing(QuotaKey::getGatewayId)
+            .thenComparing(QuotaKey::getQuotaDate);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final QuotaLedger quotaLedger;
+    private final TransactionTemplate writeTransaction;
+    private final boolean databaseQuota;
+
+    private final BlockingQueue<PendingWrite> queue;
+    private final int maxGroupSize;
+    private final long maxWaitNanos;
+    private final DistributionSummary groupSizes;
+    private final Timer commitTime;
+
+    private volatile boolean accepting = true;
+    private Thread worker;
+
+    public GroupCommitWriter(JdbcTemplate jdbcTemplate,
+                             QuotaLedger quotaLedger,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${routing.quota.store:ledger}") String quotaStore,
+                             @Value("${routing.persistence.queue-capacity:10000}") int queueCapacity,
+                             @Value("${routing.persistence.group.max-size:200}") int maxGroupSize,
+                             @Value("${routing.persistence.group.max-wait-ms:2}") long maxWaitMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.quotaLedger = quotaLedger;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.databaseQuota = "database".equalsIgnoreCase(quotaStore);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxGroupSize = maxGroupSize;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        this.groupSizes = DistributionSummary.builder("routing.persistence.group.size")
+                .description("Transactions written per group commit")
+                .register(meterRegistry);
+        this.commitTime = Timer.builder("routing.persistence.group.commit")
+                .description("Time to write and commit one group")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        worker = new Thread(this::run, "transaction-group-commit");
+        worker.setDaemon(true);
+        worker.start();
+        log.info("Transaction group commit started (max size {}, max wait {} ms)",
+                maxGroupSize, TimeUnit.NANOSECONDS.toMillis(maxWaitNanos));
+    }
+
+    /**
+     * Queue a transaction for the next group commit.
+     *
+     * @return completes with the persisted transaction once its group has committed
+     * @throws InsufficientQuotaException if the amount does not fit the remaining quota (ledger store)
+     * @throws ServiceOverloadedException if the queue is full or shutting down
+     */
+    public CompletableFuture<Transaction> submit(Transaction transaction, LocalDate quotaDate,
+                                                 long amountMinor, long dailyLimitMinor) {
+        if (!accepting) {
+            throw new ServiceOverloadedException("Transaction writes are shutting down, please retry");
+        }
+
+        Long billerId = transaction.getBillerId().longValue();
+        Long gatewayId = transaction.getGatewayId().longValue();
+        if (databaseQuota) {
+            // The database decides at commit; until then the local view counts it as used
+            quotaLedger.recordPersisted(billerId, gatewayId, quotaDate, amountMinor);
+        } else if (!quotaLedger.tryReserveUnflushed(billerId, gatewayId, quotaDate, amountMinor, dailyLimitMinor)) {
+            throw new InsufficientQuotaException("Insufficient daily quota. Remaining: "
+                    + MoneyUtil.fromMinor(quotaLedger.remaining(billerId, gatewayId, dailyLimitMinor)));
+        }
+
+        if (transaction.getCreatedAt() == null) {
+            transaction.setCreatedAt(LocalDateTime.now());
+        }
+        PendingWrite write = new PendingWrite(transaction, new QuotaKey(billerId, gatewayId, quotaDate),
+                amountMinor, dailyLimitMinor, new CompletableFuture<>());
+        if (!queue.offer(write)) {
+            unreserve(write);
+            throw new ServiceOverloadedException("Transaction write queue is full, please retry");
+        }
+        return write.getResult();
+    }
+
+    /**
+     * {@link #submit} and wait for the group commit.
+     */
+    public Transaction write(Transaction transaction, LocalDate quotaDate, long amountMinor, long dailyLimitMinor) {
+        return await(submit(transaction, quotaDate, amountMinor, dailyLimitMinor));
+    }
+
+    /**
+     * Wait for a submitted write, rethrowing its failure as thrown by the writer.
+     */
+    public static Transaction await(CompletableFuture<Transaction> result) {
+        try {
+            return result.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    public int pending() {
+        return queue.size();
+    }
+
+    @PreDestroy
+    public void stop() {
+        accepting = false;
+        log.info("Committing {} queued transaction writes before shutdown", queue.size());
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<PendingWrite> group = new ArrayList<>(maxGroupSize);
+        while (accepting || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                collect(group);
+                commit(group);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException ex) {
+                log.error("Unexpected error in transaction group commit", ex);
+                for (PendingWrite write : group) {
+                    fail(write, ex);
+                }
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    /**
+     * Fill the group until it is full or the window after its first write has passed.
+     */
+    private void collect(List<PendingWrite> group) throws InterruptedException {
+        long deadline = System.nanoTime() + maxWaitNanos;
+        while (group.size() < maxGroupSize) {
+            queue.drainTo(group, maxGroupSize - group.size());
+            long left = deadline - System.nanoTime();
+            if (group.size() >= maxGroupSize || left <= 0) {
+                return;
+            }
+            PendingWrite next = queue.poll(left, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            group.add(next);
+        }
+    }
+
+    private void commit(List<PendingWrite> group) {
+        Set<PendingWrite> rejected = new HashSet<>();
+        long start = System.nanoTime();
+        try {
+            writeTransaction.executeWithoutResult(status -> {
+                rejected.clear();
+                writeGroup(group, rejected);
+            });
+        } catch (RuntimeException ex) {
+            for (PendingWrite write : group) {
+                write.getTransaction().setId(null);
+            }
+            if (group.size() == 1) {
+                log.error("Failed to persist transaction {}: {}", group.get(0).getTransaction().getCode(), ex.getMessage());
+                fail(group.get(0), ex);
+                return;
+            }
+            log.warn("Group commit of {} transactions failed, writing them one by one: {}", group.size(), ex.getMessage());
+            for (PendingWrite write : group) {
+                commit(List.of(write));
+            }
+            return;
+        }
+        commitTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        groupSizes.record(group.size());
+
+        for (PendingWrite write : group) {
+            if (rejected.contains(write)) {
+                fail(write, new InsufficientQuotaException(
+                        "Insufficient daily quota: the amount exceeds the gateway's remaining quota"));
+                continue;
+            }
+            write.getResult().complete(write.getTransaction());
+        }
+    }
+
+    /**
+     * Quota upserts first, in a fixed key order (as the ledger flush) so concurrent
+     * writers lock rows in the same order, then one insert for the writes whose
+     * quota was accepted. A key whose combined amount is refused has not been
+     * changed, so its writes can be offered again one at a time.
+     */
+    private void writeGroup(List<PendingWrite> group, Set<PendingWrite> rejected) {
+        Map<QuotaKey, List<PendingWrite>> byKey = new TreeMap<>(KEY_ORDER);
+        for (PendingWrite write : group) {
+            byKey.computeIfAbsent(write.getKey(), key -> new ArrayList<>()).add(write);
+        }
+
+        List<Object[]> upserts = new ArrayList<>(byKey.size());
+        for (Map.Entry<QuotaKey, List<PendingWrite>> entry : byKey.entrySet()) {
+            long amountMinor = 0;
+            long dailyLimitMinor = 0;
+            for (PendingWrite write : entry.getValue()) {
+                amountMinor += write.getAmountMinor();
+                dailyLimitMinor = write.getDailyLimitMinor();
+            }
+            upserts.add(upsertParameters(entry.getKey(), amountMinor, entry.getValue().size(), dailyLimitMinor));
+        }
+        int[] updated = jdbcTemplate.batchUpdate(UPSERT_QUOTA, upserts);
+
+        List<PendingWrite> accepted = new ArrayList<>(group.size());
+        int index = 0;
+        for (List<PendingWrite> writes : byKey.values()) {
+            // 0 rows: the key's combined amount would pass its daily limit
+            if (updated[index++] != 0) {
+                accepted.addAll(writes);
+            } else if (writes.size() == 1) {
+                rejected.addAll(writes);
+            } else {
+                upsertInOrder(writes, accepted, rejected);
+            }
+        }
+        if (!accepted.isEmpty()) {
+            insert(accepted);
+        }
+    }
+
+    /**
+     * Upsert a key's writes one by one in arrival order; the first that does not
+     * fit and every write after it are rejected, so quota is consumed in the
+     * order the payments were submitted.
+     */
+    private void upsertInOrder(List<PendingWrite> writes, List<PendingWrite> accepted, Set<PendingWrite> rejected) {
+        for (int i = 0; i < writes.size(); i++) {
+            PendingWrite write = writes.get(i);
+            if (jdbcTemplate.update(UPSERT_QUOTA,
+                    upsertParameters(write.getKey(), write.getAmountMinor(), 1, write.getDailyLimitMinor())) == 0) {
+                rejected.addAll(writes.subList(i, writes.size()));
+                return;
+            }
+            accepted.add(write);
+        }
+    }
+
+    private static Object[] upsertParameters(QuotaKey key, long amountMinor, int count, long dailyLimitMinor) {
+        BigDecimal amount = MoneyUtil.fromMinor(amountMinor);
+        BigDecimal dailyLimit = MoneyUtil.fromMinor(dailyLimitMinor);
+        return new Object[]{key.getBillerId(), key.getGatewayId(), Date.valueOf(key.getQuotaDate()),
+                amount, count, dailyLimit, amount, dailyLimit};
+    }
+
+    private void insert(List<PendingWrite> writes) {
+        StringBuilder sql = new StringBuilder(INSERT_TRANSACTIONS.length() + writes.size() * (TRANSACTION_ROW.length() + 2))
+                .append(INSERT_TRANSACTIONS);
+        for (int i = 0; i < writes.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append(TRANSACTION_ROW);
+        }
+
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql.toString(), new String[]{"id"});
+            int parameter = 1;
+            for (PendingWrite write : writes) {
+                Transaction transaction = write.getTransaction();
+                statement.setObject(parameter++, transaction.getCode());
+                statement.setInt(parameter++, transaction.getBillerId());
+                statement.setInt(parameter++, transaction.getGatewayId());
+                statement.setBigDecimal(parameter++, transaction.getAmount());
+                statement.setBigDecimal(parameter++, transaction.getCommission());
+                statement.setString(parameter++, transaction.getUrgency().name());
+                statement.setString(parameter++, transaction.getStatus().name());
+                statement.setString(parameter++, transaction.getProcessingTime());
+                statement.setTimestamp(parameter++, Timestamp.valueOf(transaction.getCreatedAt()));
+                statement.setTimestamp(parameter++, transaction.getCompletedAt() != null
+                        ? Timestamp.valueOf(transaction.getCompletedAt()) : null);
+                statement.setBoolean(parameter++, Boolean.TRUE.equals(transaction.getIsSplit()));
+            }
+            return statement;
+        }, keys);
+
+        // Generated keys come back in row order
+        List<Map<String, Object>> ids = keys.getKeyList();
+        for (int i = 0; i < writes.size(); i++) {
+            Number id = (Number) ids.get(i).values().iterator().next();
+            writes.get(i).getTransaction().setId(id.longValue());
+        }
+    }
+
+    private void fail(PendingWrite write, RuntimeException ex) {
+        unreserve(write);
+        write.getResult().completeExceptionally(ex);
+    }
+
+    private void unreserve(PendingWrite write) {
+        QuotaKey key = write.getKey();
+        quotaLedger.recordPersisted(key.getBillerId(), key.getGatewayId(), key.getQuotaDate(), -write.getAmountMinor());
+    }
+
+    @lombok.Value
+    private static class QuotaKey {
+        Long billerId;
+        Long gatewayId;
+        LocalDate quotaDate;
+    }
+
+    // Identity equality on purpose: the same transaction is never queued twice
+    @Getter
+    @RequiredArgsConstructor
+    private static final class PendingWrite {
+        private final Transaction transaction;
+        private final QuotaKey key;
+        private final long amountMinor;
+        private final long dailyLimitMinor;
+        private final CompletableFuture<Transaction> result;
+    }
+}
@@ -0,0 +1,315 @@
+package com.fawry.paymentroutingengine.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fawry.paymentroutingengine.constant.IdempotentOperation;
+import com.fawry.paymentroutingengine.constant.Status;
+import com.fawry.paymentroutingengine.entity.IdempotencyRecord;
+import com.fawry.paymentroutingengine.entity.Transaction;
+import com.fawry.paymentroutingengine.exception.IdempotencyConflictException;
+import com.fawry.paymentroutingengine.exception.InvalidTransactionException;
+import com.fawry.paymentroutingengine.repository.IdempotencyRecordRepository;
+import com.fawry.paymentroutingengine.repository.TransactionRepository;
+import com.fawry.paymentroutingengine.util.TransactionCodeGenerator;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-Key handling for transaction creation and recommendation, so a
+ * client retrying after a timeout gets the original response instead of a
+ * second transaction and a second quota reservation.
+ *
+ * - recent keys live in a bounded in-memory cache holding one future per key:
+ *   the first request runs, concurrent duplicates wait for its response and
+ *   later ones get it straight from memory, all without reaching the dispatch
+ *   lanes or the database
+ * - behind the cache, each keyed request claims a row in {@code idempotency_keys}
+ *   before running; the unique constraint decides between instances, and the
+ *   stored response serves replays after a restart or cache eviction
+ * - the claim fixes the code of the transaction the request will create, so an
+ *   unfinished claim (its instance died, or storing the response failed) is
+ *   answered from the transaction row once that row exists
+ * - a claim is released only when its transaction was certainly not written: on
+ *   failure after checking the transaction table, or by a retry once the claim is
+ *   older than {@code abandoned-after-seconds} and still has no transaction row
+ * - a key reused with a different body, or while its first request is still
+ *   running on another instance, is refused with {@link IdempotencyConflictException}
+ *
+ * Keys, finished or not, are kept for {@code routing.idempotency.retention-hours}.
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyRecordRepository repository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionCodeGenerator transactionCodeGenerator;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Duration retention;
+    private final Duration abandonedAfter;
+    private final Cache<RecentKey, Recent> recent;
+    private final Counter replayedFromMemory;
+    private final Counter replayedFromDatabase;
+
+    public IdempotencyService(IdempotencyRecordRepository repository,
+                              TransactionRepository transactionRepository,
+                              TransactionCodeGenerator transactionCodeGenerator,
+                              ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry,
+                              @Value("${routing.idempotency.enabled:true}") boolean enabled,
+                              @Value("${routing.idempotency.max-entries:100000}") long maxEntries,
+                              @Value("${routing.idempotency.retention-hours:24}") long retentionHours,
+                              @Value("${routing.idempotency.abandoned-after-seconds:300}") long abandonedAfterSeconds) {
+        this.repository = repository;
+        this.transactionRepository = transactionRepository;
+        this.transactionCodeGenerator = transactionCodeGenerator;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.retention = Duration.ofHours(retentionHours);
+        this.abandonedAfter = Duration.ofSeconds(abandonedAfterSeconds);
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(retention)
+                .build();
+
+        this.replayedFromMemory = Counter.builder("routing.idempotency.replayed")
+                .description("Requests answered with the response of an earlier request with the same key")
+                .tag("source", "memory")
+                .register(meterRegistry);
+        this.replayedFromDatabase = Counter.builder("routing.idempotency.replayed")
+                .description("Requests answered with the response of an earlier request with the same key")
+                .tag("source", "database")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run {@code work} through {@code dispatch} unless a request with the same key
+     * already ran or is running; then share its response. Without a key the work
+     * is simply dispatched.
+     *
+     * @param work    creates the transaction with the code it is given
+     * @param recover builds the response from that transaction when the first
+     *                request did not store one
+     */
+    public <T> CompletableFuture<T> execute(IdempotentOperation operation, String billerCode, String idempotencyKey,
+                                            Object request, Class<T> responseType,
+                                            Function<Supplier<T>, CompletableFuture<T>> dispatch,
+                                            Function<UUID, T> work, Function<Transaction, T> recover) {
+        if (!enabled || idempotencyKey == null) {
+            return dispatch.apply(() -> work.apply(transactionCodeGenerator.next()));
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new InvalidTransactionException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+
+        RecentKey key = new RecentKey(operation, billerCode, idempotencyKey);
+        String requestHash = hash(request);
+        Recent mine = new Recent(requestHash);
+        Recent earlier = recent.asMap().putIfAbsent(key, mine);
+        if (earlier != null) {
+            checkSameRequest(earlier.getRequestHash(), requestHash, idempotencyKey);
+            replayedFromMemory.increment();
+            return earlier.getResponse().thenApply(responseType::cast);
+        }
+
+        CompletableFuture<T> result;
+        try {
+            result = dispatch.apply(() -> executeOnce(key, requestHash, responseType, work, recover));
+        } catch (RuntimeException ex) {
+            forget(key, mine, ex);
+            throw ex;
+        }
+        result.whenComplete((response, ex) -> {
+            if (ex != null) {
+                forget(key, mine, ex);
+            } else {
+                mine.getResponse().complete(response);
+            }
+        });
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${routing.idempotency.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        if (!enabled) {
+            return;
+        }
+        int purged = repository.deleteExpired(LocalDateTime.now().minus(retention));
+        if (purged > 0) {
+            log.debug("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    private <T> T executeOnce(RecentKey key, String requestHash, Class<T> responseType,
+                              Function<UUID, T> work, Function<Transaction, T> recover) {
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setOperation(key.getOperation());
+        record.setBillerCode(key.getBillerCode());
+        record.setIdempotencyKey(key.getIdempotencyKey());
+        record.setRequestHash(requestHash);
+        record.setTransactionCode(transactionCodeGenerator.next());
+        try {
+            record = repository.saveAndFlush(record);
+        } catch (DataIntegrityViolationException ex) {
+            // Claimed before: by an earlier request this cache no longer holds, or by another instance
+            return replay(key, requestHash, responseType, work, recover);
+        }
+
+        T response;
+        try {
+            response = work.apply(record.getTransactionCode());
+        } catch (RuntimeException | Error ex) {
+            releaseUnlessWritten(record);
+            throw ex;
+        }
+
+        complete(record, response);
+        return response;
+    }
+
+    private <T> T replay(RecentKey key, String requestHash, Class<T> responseType,
+                         Function<UUID, T> work, Function<Transaction, T> recover) {
+        IdempotencyRecord record = repository.findByOperationAndBillerCodeAndIdempotencyKey(
+                        key.getOperation(), key.getBillerCode(), key.getIdempotencyKey())
+                .orElseThrow(() -> inProgress(key));
+        checkSameRequest(record.getRequestHash(), requestHash, key.getIdempotencyKey());
+        if (record.getCompletedAt() != null) {
+            replayedFromDatabase.increment();
+            return read(record.getResponse(), responseType);
+        }
+
+        // Unfinished: still running, or its transaction committed without the response being stored
+        Optional<Transaction> transaction = writtenTransaction(record);
+        if (transaction.isPresent()) {
+            T response = recover.apply(transaction.get());
+            complete(record, response);
+            replayedFromDatabase.increment();
+            return response;
+        }
+        if (record.getCreatedAt().isAfter(LocalDateTime.now().minus(abandonedAfter))
+                || repository.deleteUnfinished(record.getId()) == 0) {
+            throw inProgress(key);
+        }
+        // Abandoned before its transaction was written: run the request again under a new claim
+        log.warn("Released abandoned claim for Idempotency-Key {}", key.getIdempotencyKey());
+        return executeOnce(key, requestHash, responseType, work, recover);
+    }
+
+    private void complete(IdempotencyRecord record, Object response) {
+        record.setResponse(write(response));
+        record.setCompletedAt(LocalDateTime.now());
+        try {
+            repository.save(record);
+        } catch (RuntimeException ex) {
+            // Retries are still answered: from memory here, from the transaction row elsewhere
+            log.error("Failed to store response for Idempotency-Key {}: {}", record.getIdempotencyKey(), ex.getMessage());
+        }
+    }
+
+    /**
+     * Release the claim of a failed request so a retry runs again, unless its
+     * transaction was written anyway (e.g. the commit succeeded but its
+     * acknowledgement was lost); then retries are answered from that row.
+     */
+    private void releaseUnlessWritten(IdempotencyRecord record) {
+        try {
+            if (writtenTransaction(record).isEmpty()) {
+                repository.deleteUnfinished(record.getId());
+            }
+        } catch (RuntimeException ex) {
+            log.error("Keeping claim for Idempotency-Key {}, its transaction could not be checked: {}",
+                    record.getIdempotencyKey(), ex.getMessage());
+        }
+    }
+
+    private Optional<Transaction> writtenTransaction(IdempotencyRecord record) {
+        // A FAILED row is kept by the async writer for a row it could not persist; its request failed
+        return record.getTransactionCode() != null
+                ? transactionRepository.findByGeneratedCode(record.getTransactionCode())
+                        .filter(transaction -> transaction.getStatus() != Status.FAILED)
+                : Optional.empty();
+    }
+
+    private void forget(RecentKey key, Recent entry, Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        recent.asMap().remove(key, entry);
+        entry.getResponse().completeExceptionally(cause);
+    }
+
+    private static void checkSameRequest(String expectedHash, String requestHash, String idempotencyKey) {
+        if (!expectedHash.equals(requestHash)) {
+            throw new IdempotencyConflictException(
+                    "Idempotency-Key " + idempotencyKey + " was already used for a different request");
+        }
+    }
+
+    private static IdempotencyConflictException inProgress(RecentKey key) {
+        return new IdempotencyConflictException(
+                "A request with Idempotency-Key " + key.getIdempotencyKey() + " is still being processed, please retry");
+    }
+
+    private String hash(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Cannot fingerprint request", ex);
+        }
+    }
+
+    private String write(Object response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Cannot store response", ex);
+        }
+    }
+
+    private <T> T read(String response, Class<T> responseType) {
+        try {
+            return objectMapper.readValue(response, responseType);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Cannot read stored response", ex);
+        }
+    }
+
+    @lombok.Value
+    private static class RecentKey {
+        IdempotentOperation operation;
+        String billerCode;
+        String idempotencyKey;
+    }
+
+    @Getter
+    private static class Recent {
+        private final String requestHash;
+        private final CompletableFuture<Object> response = new CompletableFuture<>();
+
+        Recent(String requestHash) {
+            this.requestHash = requestHash;
+        }
+    }
+}
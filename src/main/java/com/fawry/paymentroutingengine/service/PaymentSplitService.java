@@ -0,0 +1,140 @@
+package com.fawry.paymentroutingengine.service;
+
+import com.fawry.paymentroutingengine.constant.Urgency;
+import com.fawry.paymentroutingengine.dto.request.PaymentSplitRequest;
+import com.fawry.paymentroutingengine.dto.response.PaymentSplitResponse;
+import com.fawry.paymentroutingengine.entity.Biller;
+import com.fawry.paymentroutingengine.entity.Transaction;
+import com.fawry.paymentroutingengine.exception.BillerNotFoundException;
+import com.fawry.paymentroutingengine.exception.NoAvailableGatewayException;
+import com.fawry.paymentroutingengine.repository.BillerRepository;
+import com.fawry.paymentroutingengine.routing.RoutingGateway;
+import com.fawry.paymentroutingengine.routing.RoutingSnapshot;
+import com.fawry.paymentroutingengine.routing.SplitCandidate;
+import com.fawry.paymentroutingengine.routing.SplitOptimizer;
+import com.fawry.paymentroutingengine.routing.SplitPart;
+import com.fawry.paymentroutingengine.routing.SplitPlan;
+import com.fawry.paymentroutingengine.util.MoneyUtil;
+import com.fawry.paymentroutingengine.util.TransactionCodeGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a payment that no single gateway can carry (max transaction or remaining
+ * daily quota) into the cheapest combination of child payments.
+ */
+@Slf4j
+@Service
+public class PaymentSplitService {
+
+    @Autowired
+    private RoutingSnapshotService routingSnapshotService;
+
+    @Autowired
+    private BillerRepository billerRepository;
+
+    @Autowired
+    private QuotaService quotaService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Value("${routing.split.max-parts:10}")
+    private int maxParts;
+
+    @Value("${routing.split.max-candidates:32}")
+    private int maxCandidates;
+
+    @Value("${routing.split.max-nodes:200000}")
+    private long maxNodes;
+
+    @Value("${routing.split.max-millis:50}")
+    private long maxMillis;
+
+    public PaymentSplitResponse splitPayment(PaymentSplitRequest request) {
+        log.info("Starting payment split for biller: {}, amount: {}, urgency: {}",
+                request.getBillerCode(), request.getAmount(), request.getUrgency());
+
+        Biller biller = billerRepository.findByCode(request.getBillerCode())
+                .orElseThrow(() -> new BillerNotFoundException("Biller not found: " + request.getBillerCode()));
+
+        RoutingSnapshot snapshot = routingSnapshotService.current();
+        LocalDateTime now = LocalDateTime.now();
+        long amountMinor = MoneyUtil.toMinor(request.getAmount());
+
+        List<SplitCandidate> allGateways = new ArrayList<>();
+        List<SplitCandidate> instantGateways = new ArrayList<>();
+        for (RoutingGateway gateway : snapshot.getGateways()) {
+            if (!gateway.isAvailableAt(now)) {
+                continue;
+            }
+            long remainingQuota = quotaService.getRemainingQuotaMinor(biller.getId(), gateway.getId(), gateway.getDailyLimitMinor());
+            if (remainingQuota <= 0) {
+                continue;
+            }
+            SplitCandidate candidate = new SplitCandidate(gateway, remainingQuota);
+            allGateways.add(candidate);
+            if (gateway.isInstant()) {
+                instantGateways.add(candidate);
+            }
+        }
+
+        SplitOptimizer optimizer = new SplitOptimizer(maxParts, maxCandidates, maxNodes, maxMillis);
+        boolean instantOnly = request.getUrgency() == Urgency.INSTANT && !instantGateways.isEmpty();
+        SplitPlan plan = optimizer.optimize(amountMinor, instantOnly ? instantGateways : allGateways);
+        // A second search only when it has other gateways to try; an amount the instant gateways
+        // lack the capacity for is rejected by the optimizer's capacity check without searching
+        if (!plan.isFeasible() && instantOnly && instantGateways.size() < allGateways.size()) {
+            log.warn("Instant gateways cannot carry {}, using all available gateways", request.getAmount());
+            plan = optimizer.optimize(amountMinor, allGateways);
+        }
+
+        if (!plan.isFeasible()) {
+            throw new NoAvailableGatewayException("No combination of available gateways can carry amount: "
+                    + request.getAmount());
+        }
+
+        log.info("Split plan: {} parts, commission: {}, optimal: {}, nodes explored: {}",
+                plan.getParts().size(), MoneyUtil.fromMinor(plan.totalCommissionMinor()),
+                plan.isOptimal(), plan.getNodesExplored());
+
+        List<Transaction> transactions = transactionService.createSplitTransactions(
+                biller, plan.getParts(), request.getUrgency());
+
+        return buildResponse(biller, request, plan, transactions);
+    }
+
+    private PaymentSplitResponse buildResponse(Biller biller, PaymentSplitRequest request,
+                                               SplitPlan plan, List<Transaction> transactions) {
+        List<PaymentSplitResponse.Split> splits = new ArrayList<>(transactions.size());
+        for (int i = 0; i < transactions.size(); i++) {
+            Transaction transaction = transactions.get(i);
+            SplitPart part = plan.getParts().get(i);
+            splits.add(PaymentSplitResponse.Split.builder()
+                    .sequence(transaction.getSplitSequence())
+                    .transactionCode(TransactionCodeGenerator.render(transaction.getCode()))
+                    .gatewayCode(part.getGateway().getCode())
+                    .gatewayName(part.getGateway().getName())
+                    .amount(transaction.getAmount())
+                    .commission(transaction.getCommission())
+                    .urgency(part.getGateway().getUrgency())
+                    .build());
+        }
+
+        return PaymentSplitResponse.builder()
+                .billerCode(biller.getCode())
+                .totalAmount(request.getAmount())
+                .totalCommission(MoneyUtil.fromMinor(plan.totalCommissionMinor()))
+                .totalSplits(splits.size())
+                .parentTransactionId(transactions.get(0).getId())
+                .optimal(plan.isOptimal())
+                .splits(splits)
+                .build();
+    }
+}
@@ -0,0 +1,277 @@
+package com.fawry.paymentroutingengine.service;
+
+import com.fawry.paymentroutingengine.entity.DailyQuota;
+import com.fawry.paymentroutingengine.repository.DailyQuotaRepository;
+import com.fawry.paymentroutingengine.util.MoneyUtil;
+import jakarta.annotation.PreDestroy;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory daily quota ledger keyed by (billerId, gatewayId, quotaDate).
+ *
+ * Usage is kept in piastres in atomic counters; reservations are a
+ * compare-and-set against the daily limit, so quota checks never touch the
+ * database and concurrent reservations can never oversubscribe a gateway on
+ * this instance. A counter is loaded from {@code daily_gateway_quotas} the
+ * first time its key is touched, and accumulated deltas are written back in
+ * batches every {@code routing.quota.flush-interval-ms}.
+ *
+ * The ledger assumes it is the only writer of a quota row between flushes.
+ */
+@Service
+@Slf4j
+public class QuotaLedger {
+
+    private final DailyQuotaRepository quotaRepository;
+    private final TransactionTemplate flushTransaction;
+
+    private final Map<QuotaKey, Counter> counters = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public QuotaLedger(DailyQuotaRepository quotaRepository, PlatformTransactionManager transactionManager) {
+        this.quotaRepository = quotaRepository;
+        this.flushTransaction = new TransactionTemplate(transactionManager);
+        this.flushTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public long remaining(Long billerId, Long gatewayId, long dailyLimitMinor) {
+        return dailyLimitMinor - counter(billerId, gatewayId, LocalDate.now()).used.get();
+    }
+
+    /**
+     * Atomically reserve {@code amountMinor} of the quota for {@code quotaDate}.
+     *
+     * @return false if the reservation would exceed the daily limit
+     */
+    public boolean tryReserve(Long billerId, Long gatewayId, LocalDate quotaDate,
+                              long amountMinor, long dailyLimitMinor) {
+        Counter counter = counter(billerId, gatewayId, quotaDate);
+        if (!tryUse(counter, amountMinor, dailyLimitMinor)) {
+            return false;
+        }
+
+        counter.pendingAmount.addAndGet(amountMinor);
+        counter.pendingCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Like {@link #tryReserve}, for a reservation whose quota row the caller writes
+     * itself (the group commit writer), so it is not flushed. Undo it with
+     * {@link #recordPersisted} and a negative amount.
+     */
+    public boolean tryReserveUnflushed(Long billerId, Long gatewayId, LocalDate quotaDate,
+                                       long amountMinor, long dailyLimitMinor) {
+        return tryUse(counter(billerId, gatewayId, quotaDate), amountMinor, dailyLimitMinor);
+    }
+
+    /**
+     * Undo a reservation whose transaction did not commit.
+     */
+    public void release(Long billerId, Long gatewayId, LocalDate quotaDate, long amountMinor) {
+        Counter counter = counter(billerId, gatewayId, quotaDate);
+        counter.used.addAndGet(-amountMinor);
+        counter.pendingAmount.addAndGet(-amountMinor);
+        counter.pendingCount.decrementAndGet();
+    }
+
+    /**
+     * Load the counter of a key, if not cached yet, before the caller changes its
+     * row directly; loaded afterwards it would already include the change that
+     * {@link #recordPersisted} then adds again.
+     */
+    public void prepare(Long billerId, Long gatewayId, LocalDate quotaDate) {
+        counter(billerId, gatewayId, quotaDate);
+    }
+
+    /**
+     * Mirror a reservation that was already persisted elsewhere (the database
+     * quota store), so local reads stay current without scheduling a flush.
+     */
+    public void recordPersisted(Long billerId, Long gatewayId, LocalDate quotaDate, long amountMinor) {
+        counter(billerId, gatewayId, quotaDate).used.addAndGet(amountMinor);
+    }
+
+    /**
+     * Drop the cached counter so the next read reloads it from the database,
+     * e.g. after the database rejected a reservation this instance thought would fit.
+     */
+    public void invalidate(Long billerId, Long gatewayId, LocalDate quotaDate) {
+        QuotaKey key = new QuotaKey(billerId, gatewayId, quotaDate);
+        counters.computeIfPresent(key, (k, counter) ->
+                counter.pendingAmount.get() == 0 && counter.pendingCount.get() == 0 ? null : counter);
+    }
+
+    @Scheduled(fixedDelayString = "${routing.quota.flush-interval-ms:1000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<Map.Entry<QuotaKey, Counter>> dirty = new ArrayList<>();
+            for (Map.Entry<QuotaKey, Counter> entry : counters.entrySet()) {
+                if (entry.getValue().pendingAmount.get() != 0 || entry.getValue().pendingCount.get() != 0) {
+                    dirty.add(entry);
+                }
+            }
+
+            if (!dirty.isEmpty()) {
+                writeBatch(dirty);
+            }
+
+            evictPastDays();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        log.info("Flushing quota ledger before shutdown");
+        flush();
+    }
+
+    private void writeBatch(List<Map.Entry<QuotaKey, Counter>> dirty) {
+        List<Delta> deltas = new ArrayList<>(dirty.size());
+        for (Map.Entry<QuotaKey, Counter> entry : dirty) {
+            Counter counter = entry.getValue();
+            deltas.add(new Delta(entry.getKey(), counter,
+                    counter.pendingAmount.getAndSet(0), counter.pendingCount.getAndSet(0)));
+        }
+
+        // Same row order as the group commit writer, so the two cannot deadlock
+        deltas.sort(Comparator.comparing((Delta delta) -> delta.getKey().getBillerId())
+                .thenComparing(delta -> delta.getKey().getGatewayId())
+                .thenComparing(delta -> delta.getKey().getQuotaDate()));
+        try {
+            flushTransaction.executeWithoutResult(status -> {
+                List<DailyQuota> rows = new ArrayList<>(deltas.size());
+                for (Delta delta : deltas) {
+                    rows.add(applyDelta(delta));
+                }
+                quotaRepository.saveAll(rows);
+            });
+            log.debug("Flushed {} quota ledger entries", deltas.size());
+        } catch (RuntimeException ex) {
+            // Put the deltas back so the next flush retries them
+            for (Delta delta : deltas) {
+                delta.getCounter().pendingAmount.addAndGet(delta.getAmountMinor());
+                delta.getCounter().pendingCount.addAndGet(delta.getCount());
+            }
+            log.error("Failed to flush {} quota ledger entries, will retry: {}", deltas.size(), ex.getMessage());
+        }
+    }
+
+    private DailyQuota applyDelta(Delta delta) {
+        QuotaKey key = delta.getKey();
+        // Locked: the group commit writer adds to the same rows with atomic upserts
+        DailyQuota quota = quotaRepository
+                .findForUpdate(key.getBillerId(), key.getGatewayId(), key.getQuotaDate())
+                .orElseGet(() -> {
+                    DailyQuota created = new DailyQuota();
+                    created.setBillerId(key.getBillerId());
+                    created.setGatewayId(key.getGatewayId());
+                    created.setQuotaDate(key.getQuotaDate());
+                    return created;
+                });
+
+        BigDecimal total = quota.getTotalAmount() != null ? quota.getTotalAmount() : BigDecimal.ZERO;
+        int count = quota.getTransactionCount() != null ? quota.getTransactionCount() : 0;
+        quota.setTotalAmount(total.add(MoneyUtil.fromMinor(delta.getAmountMinor())));
+        quota.setTransactionCount(count + delta.getCount());
+        quota.setDailyLimit(MoneyUtil.fromMinor(delta.getCounter().dailyLimitMinor));
+        return quota;
+    }
+
+    private static boolean tryUse(Counter counter, long amountMinor, long dailyLimitMinor) {
+        long used;
+        do {
+            used = counter.used.get();
+            if (used + amountMinor > dailyLimitMinor) {
+                return false;
+            }
+        } while (!counter.used.compareAndSet(used, used + amountMinor));
+
+        counter.dailyLimitMinor = dailyLimitMinor;
+        return true;
+    }
+
+    /**
+     * Drop counters of days before yesterday. Yesterday's stay for a day: a request that
+     * picked its quota date before midnight may still reserve or release on it, and a
+     * change made on a counter after it left the map would never be flushed. Runs under
+     * the flush lock and re-checks the pending change inside the map's own removal.
+     */
+    private void evictPastDays() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        for (QuotaKey key : counters.keySet()) {
+            if (key.getQuotaDate().isBefore(yesterday)) {
+                counters.computeIfPresent(key, (k, counter) ->
+                        counter.pendingAmount.get() == 0 && counter.pendingCount.get() == 0 ? null : counter);
+            }
+        }
+    }
+
+    private Counter counter(Long billerId, Long gatewayId, LocalDate quotaDate) {
+        QuotaKey key = new QuotaKey(billerId, gatewayId, quotaDate);
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            return counter;
+        }
+        // Loaded outside the map: computeIfAbsent would hold the bin lock across the query,
+        // blocking other keys and pinning the carrier of a virtual thread. Racing loads
+        // of one key read the same row and only the first is kept.
+        Counter loaded = load(key);
+        Counter raced = counters.putIfAbsent(key, loaded);
+        return raced != null ? raced : loaded;
+    }
+
+    private Counter load(QuotaKey key) {
+        Counter counter = new Counter();
+        quotaRepository.findByBillerIdAndGatewayIdAndQuotaDate(key.getBillerId(), key.getGatewayId(), key.getQuotaDate())
+                .ifPresent(quota -> {
+                    if (quota.getTotalAmount() != null) {
+                        counter.used.set(MoneyUtil.toMinor(quota.getTotalAmount()));
+                    }
+                    counter.dailyLimitMinor = MoneyUtil.toMinor(quota.getDailyLimit());
+                });
+        return counter;
+    }
+
+    @Value
+    private static class QuotaKey {
+        Long billerId;
+        Long gatewayId;
+        LocalDate quotaDate;
+    }
+
+    private static class Counter {
+        private final AtomicLong used = new AtomicLong();
+        private final AtomicLong pendingAmount = new AtomicLong();
+        private final AtomicInteger pendingCount = new AtomicInteger();
+        private volatile long dailyLimitMinor;
+    }
+
+    @Value
+    private static class Delta {
+        QuotaKey key;
+        Counter counter;
+        long amountMinor;
+        int count;
+    }
+}
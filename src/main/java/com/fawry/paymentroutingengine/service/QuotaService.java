@@ -1,20 +1,14 @@
 package com.fawry.paymentroutingengine.service;
 
-import com.fawry.paymentroutingengine.entity.Biller;
-import com.fawry.paymentroutingengine.entity.DailyQuota;
-import com.fawry.paymentroutingengine.entity.Gateway;
-import com.fawry.paymentroutingengine.repository.BillerRepository;
 import com.fawry.paymentroutingengine.repository.DailyQuotaRepository;
-import com.fawry.paymentroutingengine.repository.GateWayRepository;
-import com.fawry.paymentroutingengine.repository.GatewayAvailabilityRepository;
-import jakarta.transaction.Transactional;
+import com.fawry.paymentroutingengine.util.MoneyUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDate;
-import java.util.List;
-import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
@@ -23,54 +17,111 @@ import org.springframework.stereotype.Service;
 public class QuotaService {
 
     @Autowired
-    private GateWayRepository gatewayRepository;
-
-    @Autowired
-    private BillerRepository billerRepository;
+    private QuotaLedger quotaLedger;
 
     @Autowired
     private DailyQuotaRepository quotaRepository;
 
-        public BigDecimal getRemainingQuota(Long billerId, Long gatewayId) {
-            LocalDate today =  LocalDate.now();
+    /**
+     * ledger   - reserve in memory, write usage back in batches (single instance)
+     * database - reserve with one atomic upsert per transaction (safe across instances)
+     */
+    @Value("${routing.quota.store:ledger}")
+    private String quotaStore;
+
+        /**
+         * Remaining quota when the caller already knows the gateway's daily limit
+         * (e.g. from the routing snapshot), so no gateway lookup is needed.
+         */
+        public BigDecimal getRemainingQuota(Long billerId, Long gatewayId, BigDecimal dailyLimit) {
+            long remaining = quotaLedger.remaining(billerId, gatewayId, MoneyUtil.toMinor(dailyLimit));
+            return MoneyUtil.fromMinor(remaining);
+        }
+
+        public long getRemainingQuotaMinor(Long billerId, Long gatewayId, long dailyLimitMinor) {
+            return quotaLedger.remaining(billerId, gatewayId, dailyLimitMinor);
+        }
+
+    /**
+     * Reserve today's quota for a transaction. When called inside a transaction
+     * the reservation is released again if that transaction rolls back.
+     *
+     * @return false if the amount does not fit in the remaining daily quota
+     */
+    public boolean reserve(Long billerId, Long gatewayId, BigDecimal amount, BigDecimal dailyLimit) {
+        return reserve(billerId, gatewayId, LocalDate.now(), MoneyUtil.toMinor(amount), MoneyUtil.toMinor(dailyLimit));
+    }
+
+    /**
+     * Reserve quota for {@code quotaDate} with amounts in piastres.
+     */
+    public boolean reserve(Long billerId, Long gatewayId, LocalDate quotaDate, long amountMinor, long dailyLimitMinor) {
+        if ("database".equalsIgnoreCase(quotaStore)) {
+            return reserveInDatabase(billerId, gatewayId, quotaDate, amountMinor, dailyLimitMinor);
+        }
 
-            return quotaRepository.findByBillerIdAndGatewayIdAndQuotaDate(billerId, gatewayId, today)
-                    .map(quota -> quota.getDailyLimit().subtract(quota.getTotalAmount()))
-                    .orElseGet(() -> {
-                        // No quota record yet today - return full daily limit
-                        Gateway gateway = gatewayRepository.findById(gatewayId).orElseThrow();
-                        return gateway.getDailyLimit();
-                    });
+        if (!quotaLedger.tryReserve(billerId, gatewayId, quotaDate, amountMinor, dailyLimitMinor)) {
+            log.debug("Quota reservation rejected for biller {} on gateway {}: amount {}",
+                    billerId, gatewayId, MoneyUtil.fromMinor(amountMinor));
+            return false;
         }
 
-    @Transactional
-    public void updateQutoa( Long billerId, Long gatewayId, BigDecimal amount) {
-        LocalDate today =  LocalDate.now();
-
-
-        DailyQuota quota = quotaRepository
-                .findByBillerIdAndGatewayIdAndQuotaDate(billerId, gatewayId, today)
-                .orElse(null);
-
-        if (quota == null) {
-            // Create new quota record for today
-            Gateway gateway = gatewayRepository.findById(gatewayId).orElseThrow();
-            quota = new DailyQuota();
-            quota.setBillerId(billerId);
-            quota.setGatewayId(gatewayId);
-            quota.setQuotaDate(today);
-            quota.setTotalAmount(amount);
-            quota.setTransactionCount(1);
-            quota.setDailyLimit(gateway.getDailyLimit());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        quotaLedger.release(billerId, gatewayId, quotaDate, amountMinor);
+                    }
+                }
+            });
+        }
+
+        log.info("Reserved quota for biller {} on gateway {}: {}", billerId, gatewayId, MoneyUtil.fromMinor(amountMinor));
+        return true;
+    }
+
+    /**
+     * Give back a reservation made outside a transaction (e.g. by the async write
+     * pipeline) whose transaction row could not be persisted.
+     */
+    public void release(Long billerId, Long gatewayId, LocalDate quotaDate, long amountMinor) {
+        if ("database".equalsIgnoreCase(quotaStore)) {
+            quotaLedger.prepare(billerId, gatewayId, quotaDate);
+            quotaRepository.releaseQuota(billerId, gatewayId, quotaDate, MoneyUtil.fromMinor(amountMinor));
+            quotaLedger.recordPersisted(billerId, gatewayId, quotaDate, -amountMinor);
         } else {
-            // Update existing quota
-            quota.setTotalAmount(quota.getTotalAmount().add(amount));
-            quota.setTransactionCount(quota.getTransactionCount() + 1);
+            quotaLedger.release(billerId, gatewayId, quotaDate, amountMinor);
         }
+        log.info("Released quota for biller {} on gateway {}: {}", billerId, gatewayId, MoneyUtil.fromMinor(amountMinor));
+    }
 
-        quotaRepository.save(quota);
+    private boolean reserveInDatabase(Long billerId, Long gatewayId, LocalDate today, long amountMinor, long dailyLimitMinor) {
+        BigDecimal amount = MoneyUtil.fromMinor(amountMinor);
+
+        quotaLedger.prepare(billerId, gatewayId, today);
+        int reserved = quotaRepository.reserveQuota(billerId, gatewayId, today, amount, MoneyUtil.fromMinor(dailyLimitMinor));
+        if (reserved == 0) {
+            // Another instance may have used the quota; reload our view on the next read
+            quotaLedger.invalidate(billerId, gatewayId, today);
+            log.debug("Quota reservation rejected by database for biller {} on gateway {}: amount {}",
+                    billerId, gatewayId, amount);
+            return false;
+        }
+
+        quotaLedger.recordPersisted(billerId, gatewayId, today, amountMinor);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        quotaLedger.recordPersisted(billerId, gatewayId, today, -amountMinor);
+                    }
+                }
+            });
+        }
 
-        log.info("Updated quota for biller {} on gateway {}: used {}/{}",
-                billerId, gatewayId, quota.getTotalAmount(), quota.getDailyLimit());
+        log.info("Reserved quota in database for biller {} on gateway {}: {}", billerId, gatewayId, amount);
+        return true;
     }
 }
@@ -0,0 +1,106 @@
+package com.fawry.paymentroutingengine.service;
+
+import com.fawry.paymentroutingengine.constant.Urgency;
+import com.fawry.paymentroutingengine.entity.Biller;
+import com.fawry.paymentroutingengine.exception.ServiceOverloadedException;
+import com.fawry.paymentroutingengine.routing.RoutingGateway;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Short-lived, single-use quotes handed out by the quote endpoint.
+ *
+ * Quotes live only in memory: issuing one never touches the database, and a
+ * token can be committed once on the instance that issued it. A commit takes
+ * the quote out so a concurrent commit of the same token finds nothing, and
+ * restores it if the commit fails. Expired quotes are purged periodically;
+ * when the store is full new quotes are refused rather than evicting live ones.
+ */
+@Component
+@Slf4j
+public class QuoteStore {
+
+    private final Map<String, Quote> quotes = new ConcurrentHashMap<>();
+
+    @Value("${routing.quote.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    @Value("${routing.quote.max-entries:100000}")
+    private int maxEntries;
+
+    public Quote issue(Biller biller, RoutingGateway gateway, long amountMinor, long commissionMinor, Urgency urgency) {
+        if (quotes.size() >= maxEntries) {
+            purgeExpired();
+            if (quotes.size() >= maxEntries) {
+                throw new ServiceOverloadedException("Too many open quotes, please retry");
+            }
+        }
+
+        Quote quote = new Quote(UUID.randomUUID().toString(), biller, gateway, amountMinor, commissionMinor,
+                urgency, Instant.now().plusSeconds(ttlSeconds));
+        quotes.put(quote.getToken(), quote);
+        return quote;
+    }
+
+    /**
+     * Remove and return a live quote; empty if the token is unknown, already used or expired.
+     */
+    public Optional<Quote> take(String token) {
+        Quote quote = quotes.remove(token);
+        if (quote == null || quote.getExpiresAt().isBefore(Instant.now())) {
+            return Optional.empty();
+        }
+        return Optional.of(quote);
+    }
+
+    /**
+     * Put back a quote taken by a commit that failed, so the token can be used again
+     * until it expires.
+     */
+    public void restore(Quote quote) {
+        if (!quote.getExpiresAt().isBefore(Instant.now())) {
+            quotes.putIfAbsent(quote.getToken(), quote);
+        }
+    }
+
+    /**
+     * A live quote without taking it; empty if the token is unknown, already used or expired.
+     */
+    public Optional<Quote> peek(String token) {
+        Quote quote = quotes.get(token);
+        if (quote == null || quote.getExpiresAt().isBefore(Instant.now())) {
+            return Optional.empty();
+        }
+        return Optional.of(quote);
+    }
+
+    @Scheduled(fixedDelayString = "${routing.quote.purge-interval-ms:30000}")
+    public void purgeExpired() {
+        Instant now = Instant.now();
+        int before = quotes.size();
+        quotes.values().removeIf(quote -> quote.getExpiresAt().isBefore(now));
+        int purged = before - quotes.size();
+        if (purged > 0) {
+            log.debug("Purged {} expired quotes", purged);
+        }
+    }
+
+    @lombok.Value
+    public static class Quote {
+        String token;
+        Biller biller;
+        RoutingGateway gateway;
+        long amountMinor;
+        long commissionMinor;
+        Urgency urgency;
+        Instant expiresAt;
+    }
+}
@@ -0,0 +1,96 @@
+package com.fawry.paymentroutingengine.service;
+
+import com.fawry.paymentroutingengine.constant.Urgency;
+import com.fawry.paymentroutingengine.routing.CandidateCache;
+import com.fawry.paymentroutingengine.routing.CandidateList;
+import com.fawry.paymentroutingengine.routing.RoutingSnapshot;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of the cheapest open gateways per payment shape, in front of
+ * the scoring pass of the recommendation hot path.
+ *
+ * Keyed on (amount, urgency, availability epoch, snapshot version):
+ * - the amount is exact; commissions and amount limits differ per piastre, and
+ *   repeated shapes (standard bill amounts) repeat exactly
+ * - a config change publishes a new snapshot version; the first lookup against
+ *   it drops every entry of the previous one
+ * - the availability epoch changes whenever any gateway's window opens or closes
+ * - the biller is not part of the key: entries hold no quota, which is checked
+ *   per request on every hit, so a quota crossing the amount is never cached
+ *   and billers share entries
+ *
+ * Quota reservation still happens when the transaction is recorded.
+ */
+@Component
+@Slf4j
+public class RecommendationCache implements CandidateCache {
+
+    private final Cache<Key, CandidateList> cache;
+    private final boolean enabled;
+    private final int candidateLimit;
+    private volatile long snapshotVersion = -1;
+
+    public RecommendationCache(@Value("${routing.cache.enabled:true}") boolean enabled,
+                               @Value("${routing.cache.max-entries:10000}") long maxEntries,
+                               @Value("${routing.cache.candidates:16}") int candidateLimit,
+                               MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.candidateLimit = candidateLimit;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "routing.candidates");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public CandidateList get(RoutingSnapshot snapshot, long amountMinor, Urgency urgency, int minuteOfWeek,
+                             Supplier<CandidateList> loader) {
+        long version = snapshot.getVersion();
+        if (version != snapshotVersion) {
+            onSnapshotChanged(version);
+        }
+        Key key = new Key(amountMinor, urgency, snapshot.availabilityEpoch(minuteOfWeek), version);
+        return cache.get(key, k -> loader.get());
+    }
+
+    @Override
+    public int candidateLimit() {
+        return candidateLimit;
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private synchronized void onSnapshotChanged(long version) {
+        if (version > snapshotVersion) {
+            log.debug("Routing snapshot v{} published, dropping {} cached recommendations",
+                    version, cache.estimatedSize());
+            snapshotVersion = version;
+            cache.invalidateAll();
+        }
+    }
+
+    @lombok.Value
+    private static class Key {
+        long amountMinor;
+        Urgency urgency;
+        int availabilityEpoch;
+        long snapshotVersion;
+    }
+}
@@ -1,32 +1,48 @@
 package com.fawry.paymentroutingengine.service;
 
 import com.fawry.paymentroutingengine.entity.Biller;
-import com.fawry.paymentroutingengine.entity.Gateway;
-import com.fawry.paymentroutingengine.entity.GatewayAvailability;
+import com.fawry.paymentroutingengine.entity.Transaction;
+import com.fawry.paymentroutingengine.routing.AvailabilityBitmap;
+import com.fawry.paymentroutingengine.routing.GatewayRanker;
+import com.fawry.paymentroutingengine.routing.RoutingGateway;
+import com.fawry.paymentroutingengine.routing.RoutingSnapshot;
+import com.fawry.paymentroutingengine.routing.TopKSelector;
+import com.fawry.paymentroutingengine.util.MoneyUtil;
+import com.fawry.paymentroutingengine.util.SingleFlight;
+import com.fawry.paymentroutingengine.util.TransactionCodeGenerator;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import com.fawry.paymentroutingengine.constant.Urgency;
-import com.fawry.paymentroutingengine.constant.DayType;
 import com.fawry.paymentroutingengine.repository.BillerRepository;
-import com.fawry.paymentroutingengine.repository.GatewayAvailabilityRepository;
-import com.fawry.paymentroutingengine.repository.GateWayRepository;
+import com.fawry.paymentroutingengine.dto.request.BatchRecommendationRequest;
 import com.fawry.paymentroutingengine.dto.request.PaymentRecommendationRequest;
+import com.fawry.paymentroutingengine.dto.response.BatchRecommendationResponse;
+import com.fawry.paymentroutingengine.dto.response.QuoteResponse;
+import com.fawry.paymentroutingengine.dto.response.TransactionResponse;
 import com.fawry.paymentroutingengine.dto.response.GatewayRecommendationResponse;
 import com.fawry.paymentroutingengine.exception.BillerNotFoundException;
+import com.fawry.paymentroutingengine.exception.InsufficientQuotaException;
+import com.fawry.paymentroutingengine.exception.InvalidTransactionException;
 import com.fawry.paymentroutingengine.exception.NoAvailableGatewayException;
-import com.fawry.paymentroutingengine.service.TransactionService;
-import com.fawry.paymentroutingengine.dto.request.TransactionCreateRequest;
-import com.fawry.paymentroutingengine.service.TransactionService;
-import lombok.AllArgsConstructor;
-import lombok.Data;
+import com.fawry.paymentroutingengine.exception.ResourceNotFoundException;
+import com.fawry.paymentroutingengine.exception.ServiceOverloadedException;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 
 @Slf4j
@@ -34,10 +50,7 @@ import java.util.stream.Collectors;
 public class RoutingAlgorithmService {
 
     @Autowired
-    private GateWayRepository gatewayRepository;
-
-    @Autowired
-    private GatewayAvailabilityRepository availabilityRepository;
+    private RoutingSnapshotService routingSnapshotService;
 
     @Autowired
     private BillerRepository billerRepository;
@@ -48,179 +61,387 @@ public class RoutingAlgorithmService {
     @Autowired
     private TransactionService transactionService;
 
-        public GatewayRecommendationResponse recommendGateway(PaymentRecommendationRequest request) {
+    @Autowired
+    private TransactionCodeGenerator transactionCodeGenerator;
+
+    @Autowired
+    private QuoteStore quoteStore;
+
+    @Autowired
+    private RecommendationCache recommendationCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Present only with routing.persistence.mode=async
+    @Autowired(required = false)
+    private TransactionWritePipeline transactionWritePipeline;
+
+    // Present only with routing.persistence.mode=group
+    @Autowired(required = false)
+    private GroupCommitWriter groupCommitWriter;
+
+    // Best gateway plus K - 1 alternatives
+    @Value("${routing.recommendation.top-k:3}")
+    private int topK;
+
+    private GatewayRanker gatewayRanker;
+
+    // Concurrent identical recommendations share one biller lookup and ranking
+    private final SingleFlight<RankingKey, Ranking> rankingFlights = new SingleFlight<>();
+
+    @PostConstruct
+    void init() {
+        gatewayRanker = new GatewayRanker(topK, recommendationCache.isEnabled() ? recommendationCache : null);
+
+        FunctionCounter.builder("routing.recommendation.rankings", rankingFlights, SingleFlight::leaders)
+                .tag("role", "leader")
+                .description("Rankings computed by the request itself")
+                .register(meterRegistry);
+        FunctionCounter.builder("routing.recommendation.rankings", rankingFlights, SingleFlight::followers)
+                .tag("role", "follower")
+                .description("Rankings shared from a concurrent identical request")
+                .register(meterRegistry);
+        Gauge.builder("routing.recommendation.coalescing.ratio", rankingFlights, RoutingAlgorithmService::coalescingRatio)
+                .description("Share of rankings served by coalescing since startup")
+                .register(meterRegistry);
+    }
+
+        /**
+         * @param code code of the transaction the recommendation creates, chosen up front
+         *             so an idempotent retry can find the row
+         */
+        public GatewayRecommendationResponse recommendGateway(PaymentRecommendationRequest request, UUID code) {
 
             log.info("Starting gateway recommendation for biller: {}, amount: {}, urgency: {}",
                     request.getBillerCode() , request.getAmount(), request.getUrgency());
 
-            Biller biller =  billerRepository.findByCode(request.getBillerCode())
-                    .orElseThrow(() -> new BillerNotFoundException("Biller not found: " + request.getBillerCode()));
+            long amountMinor = MoneyUtil.toMinor(request.getAmount());
+            SingleFlight.Outcome<Ranking> outcome = rankShared(request, amountMinor);
+            Ranking ranking = outcome.getValue();
+            try {
+                persist(ranking, amountMinor, request.getUrgency(), code);
+            } catch (InsufficientQuotaException ex) {
+                if (!outcome.isShared()) {
+                    throw ex;
+                }
+                // The shared ranking predates the leader's reservation; rank again on our own
+                log.debug("Shared ranking for biller {} is out of quota, ranking again", request.getBillerCode());
+                ranking = rankAlone(request, amountMinor);
+                persist(ranking, amountMinor, request.getUrgency(), code);
+            }
 
-            List<Gateway> gateways = gatewayRepository.findByIsActiveTrue();
-            log.debug("Found {} active gateways", gateways.size());
+            return buildResponse(ranking.getGateways());
+        }
 
-            gateways = gateways.stream()
-                    .filter(g -> fitAmount(g , request.getAmount()))
-                    .filter(this::isAvailableNow)
-                    .filter(g -> hasQuotaRemaining(biller.getId(), g, request.getAmount()))
-                    .collect(Collectors.toList());
+        /**
+         * Route a batch against one snapshot and one clock reading. Billers are resolved
+         * in a single query, items are routed in order (so each one sees the quota consumed
+         * by the items before it) and a failing item does not affect the others.
+         */
+        public BatchRecommendationResponse recommendGateways(BatchRecommendationRequest batch) {
+            List<PaymentRecommendationRequest> requests = batch.getRequests();
+            log.info("Starting batch gateway recommendation for {} requests", requests.size());
 
+            Set<String> billerCodes = new HashSet<>();
+            for (PaymentRecommendationRequest request : requests) {
+                billerCodes.add(request.getBillerCode());
+            }
+            Map<String, Biller> billers = new HashMap<>();
+            for (Biller biller : billerRepository.findByCodeIn(billerCodes)) {
+                billers.put(biller.getCode(), biller);
+            }
 
-            log.debug("After hard filters: {} gateways remaining", gateways.size());
+            RoutingSnapshot snapshot = routingSnapshotService.current();
+            LocalDateTime now = LocalDateTime.now();
 
-            if (gateways.isEmpty()){
-                    throw new NoAvailableGatewayException("No available gateway found for amount: " + request.getAmount());
+            GatewayRecommendationResponse[] recommendations = new GatewayRecommendationResponse[requests.size()];
+            List<CompletableFuture<Transaction>> writes = new ArrayList<>(requests.size());
+            RuntimeException[] failures = new RuntimeException[requests.size()];
+            for (int index = 0; index < requests.size(); index++) {
+                PaymentRecommendationRequest request = requests.get(index);
+                CompletableFuture<Transaction> write = null;
+                try {
+                    Biller biller = billers.get(request.getBillerCode());
+                    if (biller == null) {
+                        throw new BillerNotFoundException("Biller not found: " + request.getBillerCode());
+                    }
+                    long amountMinor = MoneyUtil.toMinor(request.getAmount());
+                    TopKSelector scoredGateways = rank(biller, amountMinor, request.getUrgency(), snapshot, now);
+
+                    // Commit straight from the routing pass: biller, gateway and commission are already resolved
+                    write = submit(biller, scoredGateways.getGateway(0), now, amountMinor,
+                            scoredGateways.getCommissionMinor(0), request.getUrgency(), transactionCodeGenerator.next());
+                    recommendations[index] = buildResponse(scoredGateways);
+                } catch (RuntimeException ex) {
+                    failures[index] = ex;
+                }
+                writes.add(write);
             }
 
-            if (request.getUrgency() == Urgency.INSTANT){
-                    List<Gateway> instantGateways = gateways.stream()
-                                                    .filter(g -> g.getProcessingTime().compareTo(BigDecimal.ZERO) == 0)
-                                                    .collect(Collectors.toList());
-                log.debug("After hard filters: {} INSTANT gateways remaining", gateways.size());
+            // In group and async mode the items' rows are committed together; wait only once all are queued
+            List<BatchRecommendationResponse.ItemResult> results = new ArrayList<>(requests.size());
+            int succeeded = 0;
+            for (int index = 0; index < requests.size(); index++) {
+                if (failures[index] == null) {
+                    try {
+                        GroupCommitWriter.await(writes.get(index));
+                    } catch (RuntimeException ex) {
+                        failures[index] = ex;
+                    }
+                }
 
-                if (!instantGateways.isEmpty()) {
-                    gateways = instantGateways;
-                    log.debug("Urgency=INSTANT: Filtered to {} instant gateways", gateways.size());
+                BatchRecommendationResponse.ItemResult.ItemResultBuilder result =
+                        BatchRecommendationResponse.ItemResult.builder()
+                                .index(index)
+                                .billerCode(requests.get(index).getBillerCode());
+                if (failures[index] == null) {
+                    result.success(true).recommendation(recommendations[index]);
+                    succeeded++;
                 } else {
-                    log.warn("No instant gateways available, using all available gateways");
+                    log.debug("Batch item {} failed: {}", index, failures[index].getMessage());
+                    result.success(false).error(errorCode(failures[index])).message(failures[index].getMessage());
                 }
-            } else {
-                log.debug("Urgency=CAN_WAIT: Using all {} available gateways", gateways.size());
+                results.add(result.build());
             }
 
-            List<ScoredGateway> scoredGateways = gateways.stream().
-                    map(g -> scoreGateway(g, biller.getId(), request.getAmount()))
-                    .sorted(
-                            Comparator.comparing(ScoredGateway::getCommission).
-                            thenComparing(ScoredGateway::getRemainingQuota , Comparator.reverseOrder())
-                    ).collect(Collectors.toList());
+            log.info("Batch recommendation finished: {} succeeded, {} failed (snapshot v{})",
+                    succeeded, requests.size() - succeeded, snapshot.getVersion());
 
-            log.info("Sorted {} gateways. Best: {} with commission: {}",
-                    scoredGateways.size(),
-                    scoredGateways.get(0).getGateway().getCode(),
-                    scoredGateways.get(0).getCommission());
-
-
-            transactionService.createTransaction(request.getBillerCode(), scoredGateways.get(0).getGateway().getCode(), request.getAmount());
+            return BatchRecommendationResponse.builder()
+                    .total(requests.size())
+                    .succeeded(succeeded)
+                    .failed(requests.size() - succeeded)
+                    .snapshotVersion(snapshot.getVersion())
+                    .results(results)
+                    .build();
+        }
 
-            return buildResponse(scoredGateways, request.getAmount());
+        /**
+         * Read-only recommendation: runs the same filters and scoring against the
+         * snapshot and the in-memory quota view, writes nothing and returns a
+         * short-lived token that {@link #commitQuote} turns into a transaction.
+         */
+        public QuoteResponse quoteGateway(PaymentRecommendationRequest request) {
+            log.info("Starting gateway quote for biller: {}, amount: {}, urgency: {}",
+                    request.getBillerCode(), request.getAmount(), request.getUrgency());
+
+            long amountMinor = MoneyUtil.toMinor(request.getAmount());
+            Ranking ranking = rankShared(request, amountMinor).getValue();
+            Biller biller = ranking.getBiller();
+            TopKSelector scoredGateways = ranking.getGateways();
+
+            QuoteStore.Quote quote = quoteStore.issue(biller, scoredGateways.getGateway(0), amountMinor,
+                    scoredGateways.getCommissionMinor(0), request.getUrgency());
+
+            return QuoteResponse.builder()
+                    .quoteToken(quote.getToken())
+                    .expiresAt(quote.getExpiresAt())
+                    .recommendation(buildResponse(scoredGateways))
+                    .build();
+        }
 
+        /**
+         * Urgency the quote was issued for, so the commit runs on that lane.
+         */
+        public Urgency quoteUrgency(String quoteToken) {
+            return quoteStore.peek(quoteToken)
+                    .map(QuoteStore.Quote::getUrgency)
+                    .orElseThrow(() -> new InvalidTransactionException("Quote not found, already used or expired"));
         }
 
+        /**
+         * Commit a quote of {@code billerCode}: the quoted gateway and commission are
+         * honoured while the token is live, provided the gateway is still active,
+         * available and within its limits, and the quota can be reserved now. The
+         * token is used up only when the transaction is written; after a failed check
+         * or write it can be committed again until it expires.
+         */
+        public TransactionResponse commitQuote(String billerCode, String quoteToken) {
+            QuoteStore.Quote quote = quoteStore.take(quoteToken)
+                    .orElseThrow(() -> new InvalidTransactionException("Quote not found, already used or expired"));
+
+            RoutingGateway gateway;
+            Transaction transaction;
+            try {
+                if (!quote.getBiller().getCode().equals(billerCode)) {
+                    throw new InvalidTransactionException("Quote was not issued for biller " + billerCode);
+                }
+                LocalDateTime now = LocalDateTime.now();
+                gateway = routingSnapshotService.current().findById(quote.getGateway().getId());
+                if (gateway == null) {
+                    throw new NoAvailableGatewayException("Quoted gateway is no longer active: " + quote.getGateway().getCode());
+                }
+                if (!GatewayRanker.fitsAmount(gateway, quote.getAmountMinor())
+                        || !GatewayRanker.isAvailable(gateway, AvailabilityBitmap.minuteOfWeek(now))) {
+                    throw new NoAvailableGatewayException("Quoted gateway can no longer take this payment: " + gateway.getCode());
+                }
 
-       private boolean fitAmount(Gateway gateway, BigDecimal amount) {
+                log.info("Committing quote for biller: {}, gateway: {}, amount: {}",
+                        quote.getBiller().getCode(), gateway.getCode(), MoneyUtil.fromMinor(quote.getAmountMinor()));
 
-            if (amount.compareTo(gateway.getMinTransaction()) <= 0) {
-                log.debug("Gateway {} rejected: amount {} < min {}",
-                        gateway.getCode(), amount, gateway.getMinTransaction());
-                return false;
+                transaction = persist(quote.getBiller(), gateway, now, quote.getAmountMinor(),
+                        quote.getCommissionMinor(), quote.getUrgency(), transactionCodeGenerator.next());
+            } catch (RuntimeException ex) {
+                quoteStore.restore(quote);
+                throw ex;
             }
+            return transactionService.toResponse(transaction, quote.getBiller(), gateway);
+        }
 
-            if (amount.compareTo(gateway.getMaxTransaction()) >= 0) {
-                log.debug("Gateway {} rejected: amount {} > max {}",
-                        gateway.getCode(), amount, gateway.getMinTransaction());
-                return false;
+        /**
+         * The recommendation behind a transaction read back from the database, for an
+         * idempotent retry whose first request did not store its response. Only the
+         * chosen gateway is known; the alternatives were not kept.
+         */
+        public GatewayRecommendationResponse toRecommendation(Transaction transaction) {
+            RoutingGateway gateway = routingSnapshotService.current().findById(transaction.getGatewayId().longValue());
+            GatewayRecommendationResponse.RecommendedGateway.RecommendedGatewayBuilder recommendedGateway =
+                    GatewayRecommendationResponse.RecommendedGateway.builder()
+                            .id(transaction.getGatewayId().longValue())
+                            .estimatedCommission(transaction.getCommission());
+            if (gateway != null) {
+                recommendedGateway.code(gateway.getCode())
+                        .name(gateway.getName())
+                        .urgency(gateway.getUrgency())
+                        .remainingQuota(MoneyUtil.fromMinor(quotaService.getRemainingQuotaMinor(
+                                transaction.getBillerId().longValue(), gateway.getId(), gateway.getDailyLimitMinor())));
             }
 
-            return true;
-       }
-
-       private boolean isAvailableNow(Gateway gateway) {
-            LocalDateTime now = LocalDateTime.now();
-            String Day = now.getDayOfWeek().toString().substring(0, 3);
-            DayType currentDay = DayType.valueOf(Day);
-            LocalTime currentTime = now.toLocalTime();
-
-            List<GatewayAvailability> schedules = availabilityRepository
-                    .findAvailabilityForDay(gateway.getId(), currentDay);
-
-           if (schedules.isEmpty()) {
-               log.debug("Gateway {} rejected: no availability schedule", gateway.getCode());
-               return false;
-           }
-
-           for (GatewayAvailability schedule : schedules) {
-               if (Boolean.TRUE.equals(schedule.getIs24_7())) {
-                   log.debug("Gateway {} available: 24/7", gateway.getCode());
-                   return true;
-               }
-
-               if (schedule.getStartTime() != null && schedule.getEndTime() != null) {
-                   if (currentTime.isAfter(schedule.getStartTime()) &&
-                           currentTime.isBefore(schedule.getEndTime())) {
-                       log.debug("Gateway {} available: within time window", gateway.getCode());
-                       return true;
-                   }
-               }
-           }
-
-           log.debug("Gateway {} rejected: outside availability window", gateway.getCode());
-           return false ;
-
+            return GatewayRecommendationResponse.builder()
+                    .recommendedGateway(recommendedGateway.build())
+                    .alternatives(List.of())
+                    .recommendationReason(String.format(
+                            "Lowest commission (%.2f EGP) among available gateways", transaction.getCommission()))
+                    .build();
         }
-       private boolean hasQuotaRemaining(Long  billerId, Gateway gateway, BigDecimal amount ) {
-            BigDecimal remainingQuota = quotaService.getRemainingQuota(billerId, gateway.getId());
 
-            boolean hasQuota = amount.compareTo(remainingQuota) <= 0;
+        /**
+         * Biller lookup and ranking for a single request, coalesced with concurrent
+         * requests for the same biller, amount and urgency. Read-only, so sharing
+         * is safe; every caller still reserves quota for itself.
+         */
+        private SingleFlight.Outcome<Ranking> rankShared(PaymentRecommendationRequest request, long amountMinor) {
+            RankingKey key = new RankingKey(request.getBillerCode(), amountMinor, request.getUrgency());
+            return rankingFlights.execute(key, () -> rankAlone(request, amountMinor));
+        }
 
-           if (!hasQuota) {
-               log.debug("Gateway {} rejected: insufficient quota. Required: {}, Remaining: {}",
-                       gateway.getCode(), amount, remainingQuota);
-           }
+        private Ranking rankAlone(PaymentRecommendationRequest request, long amountMinor) {
+            Biller biller = billerRepository.findByCode(request.getBillerCode())
+                    .orElseThrow(() -> new BillerNotFoundException("Biller not found: " + request.getBillerCode()));
+            LocalDateTime now = LocalDateTime.now();
+            TopKSelector scoredGateways = rank(biller, amountMinor, request.getUrgency(), routingSnapshotService.current(), now);
+            return new Ranking(biller, scoredGateways, now);
+        }
 
-            return hasQuota;
-       }
-       private ScoredGateway scoreGateway(Gateway gateway, Long billerCode, BigDecimal amount) {
+        private void persist(Ranking ranking, long amountMinor, Urgency urgency, UUID code) {
+            TopKSelector scoredGateways = ranking.getGateways();
+            persist(ranking.getBiller(), scoredGateways.getGateway(0), ranking.getRankedAt(), amountMinor,
+                    scoredGateways.getCommissionMinor(0), urgency, code);
+        }
 
-                 BigDecimal commission = calculateCommission(gateway, amount);
-                 BigDecimal remainingQuota = BigDecimal.ZERO;
+        /**
+         * Filter and score the snapshot for one payment. Read-only: quota is read from
+         * the in-memory view and nothing is reserved.
+         */
+        private TopKSelector rank(Biller biller, long amountMinor, Urgency urgency,
+                                  RoutingSnapshot snapshot, LocalDateTime now) {
+            log.debug("Found {} active gateways in routing snapshot v{}", snapshot.size(), snapshot.getVersion());
 
+            TopKSelector scoredGateways = gatewayRanker.rank(snapshot, amountMinor, urgency, now,
+                    gateway -> quotaService.getRemainingQuotaMinor(biller.getId(), gateway.getId(), gateway.getDailyLimitMinor()));
 
-           return new ScoredGateway(gateway, commission, remainingQuota );
+            if (scoredGateways.isEmpty()){
+                    throw new NoAvailableGatewayException("No available gateway found for amount: " + MoneyUtil.fromMinor(amountMinor));
+            }
 
-       }
+            log.info("Ranked {} gateways. Best: {} with commission: {}",
+                    scoredGateways.offered(),
+                    scoredGateways.getGateway(0).getCode(),
+                    MoneyUtil.fromMinor(scoredGateways.getCommissionMinor(0)));
 
-       private BigDecimal calculateCommission(Gateway gateway, BigDecimal amount) {
+            return scoredGateways;
+        }
 
-                BigDecimal fixed = gateway.getCommissionFixed();
-                BigDecimal percentage = gateway.getCommissionAmount();
+        private Transaction persist(Biller biller, RoutingGateway gateway, LocalDateTime now,
+                                    long amountMinor, long commissionMinor, Urgency urgency, UUID code) {
+            return GroupCommitWriter.await(submit(biller, gateway, now, amountMinor, commissionMinor, urgency, code));
+        }
 
-                return fixed.add(percentage.multiply(amount));
+        /**
+         * Start persisting a transaction; group and async mode complete the future once
+         * the row has committed, sync mode has written it when this returns.
+         */
+        private CompletableFuture<Transaction> submit(Biller biller, RoutingGateway gateway, LocalDateTime now,
+                                                      long amountMinor, long commissionMinor, Urgency urgency, UUID code) {
+            if (groupCommitWriter != null) {
+                return groupCommitWriter.submit(transactionService.newTransaction(biller, gateway, amountMinor, commissionMinor, urgency, code),
+                        now.toLocalDate(), amountMinor, gateway.getDailyLimitMinor());
+            }
+            if (transactionWritePipeline != null) {
+                return transactionWritePipeline.submit(biller, gateway, now.toLocalDate(), amountMinor, commissionMinor, urgency, code);
+            }
+            return CompletableFuture.completedFuture(
+                    transactionService.createTransaction(biller, gateway, now.toLocalDate(), amountMinor, commissionMinor, urgency, code));
+        }
 
-       }
 
+    // Same codes the GlobalExceptionHandler uses for single requests
+    private String errorCode(RuntimeException ex) {
+        if (ex instanceof BillerNotFoundException) {
+            return "BILLER_NOT_FOUND";
+        }
+        if (ex instanceof NoAvailableGatewayException) {
+            return "NO_AVAILABLE_GATEWAY";
+        }
+        if (ex instanceof InsufficientQuotaException) {
+            return "INSUFFICIENT_QUOTA";
+        }
+        if (ex instanceof InvalidTransactionException) {
+            return "INVALID_TRANSACTION";
+        }
+        if (ex instanceof ServiceOverloadedException) {
+            return "SERVICE_OVERLOADED";
+        }
+        if (ex instanceof ResourceNotFoundException) {
+            return "RESOURCE_NOT_FOUND";
+        }
+        log.error("Unexpected error in batch item: {}", ex.getMessage(), ex);
+        return "INTERNAL_SERVER_ERROR";
+    }
 
-    private GatewayRecommendationResponse buildResponse(List<ScoredGateway> scoredGateways, BigDecimal amount) {
+    private GatewayRecommendationResponse buildResponse(TopKSelector scoredGateways) {
 
-            ScoredGateway best = scoredGateways.get(0);
+            RoutingGateway best = scoredGateways.getGateway(0);
+            BigDecimal bestCommission = MoneyUtil.fromMinor(scoredGateways.getCommissionMinor(0));
 
             GatewayRecommendationResponse.RecommendedGateway recommendedGateway
                     = GatewayRecommendationResponse.RecommendedGateway.builder()
-                    .id(best.getGateway().getId())
-                    .code(best.getGateway().getCode())
-                    .name(best.getGateway().getName())
-                    .estimatedCommission(best.getCommission())
-                    .urgency(best.getGateway().getUrgencyFromProcessingTime())
-                    .remainingQuota(best.getRemainingQuota())
+                    .id(best.getId())
+                    .code(best.getCode())
+                    .name(best.getName())
+                    .estimatedCommission(bestCommission)
+                    .urgency(best.getUrgency())
+                    .remainingQuota(MoneyUtil.fromMinor(scoredGateways.getRemainingQuotaMinor(0)))
                     .build();
 
-        List<GatewayRecommendationResponse.AlternativeGateway> alternatives =
-                scoredGateways.stream()
-                        .skip(1)  // Skip the best one
-                        .limit(2)  // Take max 2 alternatives
-                        .map(sg -> GatewayRecommendationResponse.AlternativeGateway.builder()
-                                .id(sg.getGateway().getId())
-                                .code(sg.getGateway().getCode())
-                                .name(sg.getGateway().getName())
-                                .estimatedCommission(sg.getCommission())
-                                .urgency(sg.getGateway().getUrgencyFromProcessingTime())
-                                .build())
-                        .collect(Collectors.toList());
+        // Everything after the best one is an alternative (at most K - 1)
+        List<GatewayRecommendationResponse.AlternativeGateway> alternatives = new ArrayList<>(scoredGateways.size());
+        for (int rank = 1; rank < scoredGateways.size(); rank++) {
+            RoutingGateway alternative = scoredGateways.getGateway(rank);
+            alternatives.add(GatewayRecommendationResponse.AlternativeGateway.builder()
+                    .id(alternative.getId())
+                    .code(alternative.getCode())
+                    .name(alternative.getName())
+                    .estimatedCommission(MoneyUtil.fromMinor(scoredGateways.getCommissionMinor(rank)))
+                    .urgency(alternative.getUrgency())
+                    .build());
+        }
 
         // Build reason
         String reason = String.format(
                 "Lowest commission (%.2f EGP) among available gateways",
-                best.getCommission()
+                bestCommission
         );
 
         return GatewayRecommendationResponse.builder()
@@ -230,15 +451,25 @@ public class RoutingAlgorithmService {
                 .build();
 
     }
-        /**
-         * Internal class to hold gateway + score
-         */
-        @Data
-        @AllArgsConstructor
-        private static class ScoredGateway {
-            private Gateway gateway;
-            private BigDecimal commission;
-            private BigDecimal remainingQuota;
-        }
 
+    private static double coalescingRatio(SingleFlight<?, ?> flights) {
+        long followers = flights.followers();
+        long total = flights.leaders() + followers;
+        return total == 0 ? 0.0 : (double) followers / total;
+    }
+
+    @lombok.Value
+    private static class RankingKey {
+        String billerCode;
+        long amountMinor;
+        Urgency urgency;
+    }
+
+    // Shared between coalesced requests; never modified after ranking
+    @lombok.Value
+    private static class Ranking {
+        Biller biller;
+        TopKSelector gateways;
+        LocalDateTime rankedAt;
+    }
 }
@@ -0,0 +1,139 @@
+package com.fawry.paymentroutingengine.service;
+
+import com.fawry.paymentroutingengine.entity.Gateway;
+import com.fawry.paymentroutingengine.entity.GatewayAvailability;
+import com.fawry.paymentroutingengine.repository.GateWayRepository;
+import com.fawry.paymentroutingengine.repository.GatewayAvailabilityRepository;
+import com.fawry.paymentroutingengine.routing.AvailabilityBitmap;
+import com.fawry.paymentroutingengine.routing.GatewayConfigChangedEvent;
+import com.fawry.paymentroutingengine.routing.RoutingGateway;
+import com.fawry.paymentroutingengine.routing.RoutingSnapshot;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Holds the in-memory routing snapshot used by the recommendation hot path.
+ *
+ * The snapshot is rebuilt from the database at startup, after every committed
+ * gateway change and periodically (to pick up changes made by other instances),
+ * then swapped atomically. Readers only ever dereference {@link #current()}.
+ */
+@Service
+@Slf4j
+public class RoutingSnapshotService {
+
+    private final GateWayRepository gatewayRepository;
+    private final GatewayAvailabilityRepository availabilityRepository;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final AtomicReference<RoutingSnapshot> snapshot = new AtomicReference<>(RoutingSnapshot.empty());
+    private final AtomicLong versions = new AtomicLong();
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    // Compiled availability per gateway, reused across rebuilds while its rows are unchanged.
+    // Only touched while holding refreshLock.
+    private Map<Long, CompiledAvailability> compiledAvailability = new HashMap<>();
+
+    public RoutingSnapshotService(GateWayRepository gatewayRepository,
+                                  GatewayAvailabilityRepository availabilityRepository,
+                                  PlatformTransactionManager transactionManager) {
+        this.gatewayRepository = gatewayRepository;
+        this.availabilityRepository = availabilityRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public RoutingSnapshot current() {
+        return snapshot.get();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        refresh();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onGatewayConfigChanged(GatewayConfigChangedEvent event) {
+        log.debug("Gateway {} changed, rebuilding routing snapshot", event.getGatewayCode());
+        refresh();
+    }
+
+    @Scheduled(fixedDelayString = "${routing.snapshot.refresh-interval-ms:60000}",
+            initialDelayString = "${routing.snapshot.refresh-interval-ms:60000}")
+    public void scheduledRefresh() {
+        refresh();
+    }
+
+    /**
+     * Rebuild the snapshot from the database and publish it. Builds are serialized
+     * so an older build can never overwrite a newer one.
+     */
+    public RoutingSnapshot refresh() {
+        refreshLock.lock();
+        try {
+            RoutingSnapshot rebuilt = readOnlyTransaction.execute(status -> build());
+            snapshot.set(rebuilt);
+            log.info("Routing snapshot v{} published with {} active gateways",
+                    rebuilt.getVersion(), rebuilt.size());
+            return rebuilt;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private RoutingSnapshot build() {
+        List<Gateway> gateways = gatewayRepository.findByIsActiveTrue();
+
+        Map<Long, List<GatewayAvailability>> availabilityByGateway = availabilityRepository.findAll().stream()
+                .sorted(Comparator.comparing(GatewayAvailability::getId))
+                .collect(Collectors.groupingBy(GatewayAvailability::getGatewayId));
+
+        Map<Long, CompiledAvailability> compiled = new HashMap<>();
+        List<RoutingGateway> routingGateways = gateways.stream()
+                .map(g -> {
+                    List<GatewayAvailability> rows = availabilityByGateway.getOrDefault(g.getId(), List.of());
+                    CompiledAvailability availability = compileIfChanged(g.getId(), rows);
+                    compiled.put(g.getId(), availability);
+                    return RoutingGateway.from(g, availability.getBitmap());
+                })
+                .collect(Collectors.toList());
+        compiledAvailability = compiled;
+
+        return new RoutingSnapshot(versions.incrementAndGet(), routingGateways, LocalDateTime.now());
+    }
+
+    private CompiledAvailability compileIfChanged(Long gatewayId, List<GatewayAvailability> rows) {
+        CompiledAvailability previous = compiledAvailability.get(gatewayId);
+        if (previous != null && previous.getRows().equals(rows)) {
+            return previous;
+        }
+        log.debug("Compiling availability bitmap for gateway {} from {} schedule rows", gatewayId, rows.size());
+        return new CompiledAvailability(List.copyOf(rows), AvailabilityBitmap.compile(rows));
+    }
+
+    @Value
+    private static class CompiledAvailability {
+        List<GatewayAvailability> rows;
+        AvailabilityBitmap bitmap;
+    }
+}
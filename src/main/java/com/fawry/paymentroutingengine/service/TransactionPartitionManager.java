@@ -0,0 +1,174 @@
+package com.fawry.paymentroutingengine.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the range partitions of {@code transactions} (by {@code created_at})
+ * ahead of time and applies retention by detaching whole partitions instead of
+ * deleting rows ({@code routing.partitioning.*}, PostgreSQL only).
+ *
+ * - runs on startup and daily; partitions for the current and the next
+ *   {@code premake} months (or days) are created if missing
+ * - partitions entirely older than {@code retention-days} are detached, and
+ *   dropped with {@code drop-detached}; detached ones stay as plain tables for
+ *   archiving
+ * - only partitions named {@code transactions_pYYYY_MM} / {@code transactions_pYYYY_MM_DD}
+ *   are managed; rows outside every partition land in {@code transactions_default}
+ * - a session advisory lock lets one instance do the work when several run
+ *
+ * The table has to be converted once with {@code db/transactions-partitioning.sql};
+ * until then this only logs a warning.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "routing.partitioning.enabled", havingValue = "true")
+public class TransactionPartitionManager {
+
+    private static final String TABLE = "transactions";
+    private static final Pattern PARTITION_NAME = Pattern.compile("transactions_p(\\d{4})_(\\d{2})(?:_(\\d{2}))?");
+    private static final DateTimeFormatter MONTHLY_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final DateTimeFormatter DAILY_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM_dd");
+    // Arbitrary application-wide key for pg_try_advisory_lock
+    private static final long LOCK_KEY = 720_250_001L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean daily;
+    private final int premake;
+    private final int retentionDays;
+    private final boolean dropDetached;
+
+    public TransactionPartitionManager(JdbcTemplate jdbcTemplate,
+                                       @Value("${routing.partitioning.interval:monthly}") String interval,
+                                       @Value("${routing.partitioning.premake:3}") int premake,
+                                       @Value("${routing.partitioning.retention-days:0}") int retentionDays,
+                                       @Value("${routing.partitioning.drop-detached:false}") boolean dropDetached) {
+        if (!"monthly".equalsIgnoreCase(interval) && !"daily".equalsIgnoreCase(interval)) {
+            throw new IllegalArgumentException("routing.partitioning.interval must be monthly or daily: " + interval);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.daily = "daily".equalsIgnoreCase(interval);
+        this.premake = premake;
+        this.retentionDays = retentionDays;
+        this.dropDetached = dropDetached;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${routing.partitioning.cron:0 15 0 * * *}")
+    public void maintain() {
+        maintain(LocalDate.now());
+    }
+
+    void maintain(LocalDate today) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            if (!isPartitioned(connection)) {
+                log.warn("Table {} is not partitioned; run db/transactions-partitioning.sql to enable partition management", TABLE);
+                return null;
+            }
+            if (!queryBoolean(connection, "SELECT pg_try_advisory_lock(" + LOCK_KEY + ")")) {
+                log.debug("Partition maintenance is running on another instance");
+                return null;
+            }
+            try {
+                createUpcoming(connection, today);
+                if (retentionDays > 0) {
+                    applyRetention(connection, today.minusDays(retentionDays));
+                }
+            } finally {
+                queryBoolean(connection, "SELECT pg_advisory_unlock(" + LOCK_KEY + ")");
+            }
+            return null;
+        });
+    }
+
+    private void createUpcoming(Connection connection, LocalDate today) {
+        LocalDate from = daily ? today : today.withDayOfMonth(1);
+        for (int i = 0; i <= premake; i++) {
+            LocalDate to = next(from);
+            String name = TABLE + "_p" + from.format(daily ? DAILY_SUFFIX : MONTHLY_SUFFIX);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + TABLE
+                        + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+            } catch (SQLException ex) {
+                // Typically the range is already covered by a partition of another interval,
+                // or transactions_default holds rows of that range
+                log.warn("Could not create partition {}: {}", name, ex.getMessage());
+            }
+            from = to;
+        }
+    }
+
+    private void applyRetention(Connection connection, LocalDate cutoff) throws SQLException {
+        for (String name : partitions(connection)) {
+            Matcher matcher = PARTITION_NAME.matcher(name);
+            if (!matcher.matches()) {
+                continue;
+            }
+            LocalDate from = LocalDate.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)),
+                    matcher.group(3) != null ? Integer.parseInt(matcher.group(3)) : 1);
+            LocalDate to = matcher.group(3) != null ? from.plusDays(1) : from.plusMonths(1);
+            if (to.isAfter(cutoff)) {
+                continue;
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ALTER TABLE " + TABLE + " DETACH PARTITION " + name);
+                if (dropDetached) {
+                    statement.execute("DROP TABLE " + name);
+                }
+                log.info("{} partition {} ({} to {})", dropDetached ? "Dropped" : "Detached", name, from, to);
+            } catch (SQLException ex) {
+                log.warn("Could not detach partition {}: {}", name, ex.getMessage());
+            }
+        }
+    }
+
+    private LocalDate next(LocalDate from) {
+        return daily ? from.plusDays(1) : from.plusMonths(1);
+    }
+
+    private static boolean isPartitioned(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery(
+                     "SELECT relkind FROM pg_class WHERE oid = to_regclass('" + TABLE + "')")) {
+            return rows.next() && "p".equals(rows.getString(1));
+        }
+    }
+
+    private static List<String> partitions(Connection connection) throws SQLException {
+        List<String> names = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT c.relname FROM pg_inherits i "
+                     + "JOIN pg_class c ON c.oid = i.inhrelid "
+                     + "WHERE i.inhparent = to_regclass('" + TABLE + "') ORDER BY c.relname")) {
+            while (rows.next()) {
+                names.add(rows.getString(1));
+            }
+        }
+        return names;
+    }
+
+    private static boolean queryBoolean(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery(sql)) {
+            return rows.next() && rows.getBoolean(1);
+        }
+    }
+}
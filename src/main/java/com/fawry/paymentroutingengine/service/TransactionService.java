@@ -3,28 +3,42 @@ package com.fawry.paymentroutingengine.service;
 import com.fawry.paymentroutingengine.constant.Status;
 import com.fawry.paymentroutingengine.constant.Urgency;
 import com.fawry.paymentroutingengine.dto.request.TransactionCreateRequest;
+import com.fawry.paymentroutingengine.dto.response.TransactionPageResponse;
 import com.fawry.paymentroutingengine.dto.response.TransactionResponse;
 import com.fawry.paymentroutingengine.dto.response.TransactionSummaryResponse;
 import com.fawry.paymentroutingengine.entity.Biller;
-import com.fawry.paymentroutingengine.entity.DailyQuota;
 import com.fawry.paymentroutingengine.entity.Gateway;
 import com.fawry.paymentroutingengine.entity.Transaction;
 import com.fawry.paymentroutingengine.exception.InsufficientQuotaException;
 import com.fawry.paymentroutingengine.exception.InvalidTransactionException;
 import com.fawry.paymentroutingengine.exception.ResourceNotFoundException;
 import com.fawry.paymentroutingengine.repository.BillerRepository;
-import com.fawry.paymentroutingengine.repository.DailyQuotaRepository;
 import com.fawry.paymentroutingengine.repository.GateWayRepository;
 import com.fawry.paymentroutingengine.repository.TransactionRepository;
+import com.fawry.paymentroutingengine.routing.RoutingGateway;
+import com.fawry.paymentroutingengine.routing.SplitPart;
+import com.fawry.paymentroutingengine.util.MoneyUtil;
+import com.fawry.paymentroutingengine.util.TransactionCodeGenerator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -38,11 +52,32 @@ public class TransactionService {
     private final TransactionRepository transactionRepository;
     private final BillerRepository billerRepository;
     private final GateWayRepository gatewayRepository;
-    private final DailyQuotaRepository quotaRepository;
+    private final QuotaService quotaService;
     private final GatewayService gatewayService;
-
-    @Transactional
-    public TransactionResponse createTransaction(String billerCode, TransactionCreateRequest request) {
+    private final PlatformTransactionManager transactionManager;
+    private final TransactionCodeGenerator transactionCodeGenerator;
+
+    // Present only with routing.persistence.mode=group
+    @Autowired(required = false)
+    private GroupCommitWriter groupCommitWriter;
+
+    @Value("${routing.transactions.max-range-days:31}")
+    private int maxRangeDays;
+
+    @Value("${routing.transactions.page-size:100}")
+    private int defaultPageSize;
+
+    @Value("${routing.transactions.max-page-size:1000}")
+    private int maxPageSize;
+
+    /**
+     * Not {@code @Transactional}: in group mode the caller waits for the group commit
+     * and must not hold a connection meanwhile; otherwise the quota reservation and
+     * the insert run in one transaction.
+     *
+     * @param code the transaction code, chosen up front so an idempotent retry can find the row
+     */
+    public TransactionResponse createTransaction(String billerCode, TransactionCreateRequest request, UUID code) {
         log.info("Creating transaction for biller: {}, gateway: {}, amount: {}",
                 billerCode, request.getGateWayCode(), request.getAmount());
 
@@ -65,15 +100,10 @@ public class TransactionService {
             throw new InvalidTransactionException("Amount exceeds maximum transaction limit");
         }
 
-        BigDecimal remainingQuota = getRemainingQuota(biller.getId(), gateway.getId());
-        if (remainingQuota.compareTo(request.getAmount()) < 0) {
-            throw new InsufficientQuotaException("Insufficient daily quota. Remaining: " + remainingQuota);
-        }
-
         BigDecimal commission = gatewayService.calculateCommissionForGateway(gateway, request.getAmount());
 
         Transaction transaction = new Transaction();
-        transaction.setCode("TXN-" + UUID.randomUUID().toString());
+        transaction.setCode(code);
         transaction.setBillerId(biller.getId().intValue());
         transaction.setGatewayId(gateway.getId().intValue());
         transaction.setAmount(request.getAmount());
@@ -83,152 +113,219 @@ public class TransactionService {
         transaction.setProcessingTime(gateway.getProcessingTime().toString() + " seconds");
         transaction.setCompletedAt(LocalDateTime.now());
 
-        Transaction savedTransaction = transactionRepository.save(transaction);
-
-        updateQuota(biller.getId(), gateway.getId(), request.getAmount());
+        Transaction savedTransaction;
+        if (groupCommitWriter != null) {
+            savedTransaction = groupCommitWriter.write(transaction, LocalDate.now(),
+                    MoneyUtil.toMinor(request.getAmount()), MoneyUtil.toMinor(gateway.getDailyLimit()));
+        } else {
+            savedTransaction = new TransactionTemplate(transactionManager).execute(status -> {
+                if (!quotaService.reserve(biller.getId(), gateway.getId(), request.getAmount(), gateway.getDailyLimit())) {
+                    throw new InsufficientQuotaException("Insufficient daily quota. Remaining: "
+                            + quotaService.getRemainingQuota(biller.getId(), gateway.getId(), gateway.getDailyLimit()));
+                }
+                return transactionRepository.save(transaction);
+            });
+        }
 
-        log.info("Transaction created successfully: {}", savedTransaction.getCode());
+        log.info("Transaction created successfully: {}", TransactionCodeGenerator.render(savedTransaction.getCode()));
         return mapToResponse(savedTransaction, biller, gateway);
     }
 
+    /**
+     * Persist a transaction for a gateway already chosen by the routing pass.
+     * Only the quota reservation and the insert touch the database.
+     */
     @Transactional
-    public void createTransaction(String billerCode, String gatewayCode, BigDecimal amount) {
-        log.info("Creating transaction for biller: {}, gateway: {}, amount: {}",
-                billerCode, gatewayCode, amount);
+    public Transaction createTransaction(Biller biller, RoutingGateway gateway, LocalDate quotaDate,
+                                         long amountMinor, long commissionMinor, Urgency urgency, UUID code) {
+        if (!quotaService.reserve(biller.getId(), gateway.getId(), quotaDate, amountMinor, gateway.getDailyLimitMinor())) {
+            throw new InsufficientQuotaException("Insufficient daily quota. Remaining: "
+                    + MoneyUtil.fromMinor(quotaService.getRemainingQuotaMinor(
+                            biller.getId(), gateway.getId(), gateway.getDailyLimitMinor())));
+        }
 
-        Biller biller = billerRepository.findByCode(billerCode)
-                .orElseThrow(() -> new ResourceNotFoundException("Biller not found: " + billerCode));
+        Transaction savedTransaction = transactionRepository.save(
+                newTransaction(biller, gateway, amountMinor, commissionMinor, urgency, code));
 
-        Gateway gateway = gatewayRepository.findByCode(gatewayCode)
-                .orElseThrow(() -> new ResourceNotFoundException("Gateway not found: " + gatewayCode));
+        log.info("Transaction created successfully: {}", TransactionCodeGenerator.render(savedTransaction.getCode()));
+        return savedTransaction;
+    }
 
-        if (!gateway.getIsActive()) {
-            throw new InvalidTransactionException("Gateway is not active: " + gateway.getName());
+    /**
+     * Persist the child transactions of a split payment in one database transaction.
+     * Quota is reserved per part; if any part cannot be reserved or saved, nothing is
+     * persisted and the reservations already made are released on rollback.
+     */
+    @Transactional
+    public List<Transaction> createSplitTransactions(Biller biller, List<SplitPart> parts, Urgency urgency) {
+        log.info("Creating {} split transactions for biller: {}", parts.size(), biller.getCode());
+
+        List<Transaction> children = new ArrayList<>(parts.size());
+        for (int i = 0; i < parts.size(); i++) {
+            SplitPart part = parts.get(i);
+            RoutingGateway gateway = part.getGateway();
+            BigDecimal amount = MoneyUtil.fromMinor(part.getAmountMinor());
+
+            if (!quotaService.reserve(biller.getId(), gateway.getId(), amount, gateway.getDailyLimit())) {
+                throw new InsufficientQuotaException("Insufficient daily quota on gateway " + gateway.getCode()
+                        + " for split part " + (i + 1) + ". Remaining: "
+                        + quotaService.getRemainingQuota(biller.getId(), gateway.getId(), gateway.getDailyLimit()));
+            }
+
+            Transaction transaction = newTransaction(biller, gateway, part.getAmountMinor(), part.getCommissionMinor(), urgency);
+            transaction.setIsSplit(true);
+            transaction.setSplitSequence(i + 1);
+            transaction.setTotalSplits(parts.size());
+            children.add(transaction);
         }
 
-        if (amount.compareTo(gateway.getMinTransaction()) < 0) {
-            throw new InvalidTransactionException("Amount below minimum transaction limit");
-        }
+        List<Transaction> saved = transactionRepository.saveAll(children);
 
-        if (gateway.getMaxTransaction().compareTo(BigDecimal.ZERO) > 0 &&
-                amount.compareTo(gateway.getMaxTransaction()) > 0) {
-            throw new InvalidTransactionException("Amount exceeds maximum transaction limit");
+        // The first child anchors the split and has no parent; the update is flushed on commit
+        Long parentId = saved.get(0).getId();
+        for (Transaction child : saved.subList(1, saved.size())) {
+            child.setParentTransactionId(parentId);
         }
 
-        BigDecimal remainingQuota = getRemainingQuota(biller.getId(), gateway.getId());
-        if (remainingQuota.compareTo(amount) < 0) {
-            throw new InsufficientQuotaException("Insufficient daily quota. Remaining: " + remainingQuota);
-        }
+        log.info("Split transactions created successfully under parent id {}", parentId);
+        return saved;
+    }
 
-        BigDecimal commission = gatewayService.calculateCommissionForGateway(gateway, amount );
+    /**
+     * Build a completed, not yet persisted transaction for a routed payment.
+     */
+    public Transaction newTransaction(Biller biller, RoutingGateway gateway, long amountMinor,
+                                      long commissionMinor, Urgency urgency) {
+        return newTransaction(biller, gateway, amountMinor, commissionMinor, urgency, transactionCodeGenerator.next());
+    }
 
+    public Transaction newTransaction(Biller biller, RoutingGateway gateway, long amountMinor,
+                                      long commissionMinor, Urgency urgency, UUID code) {
         Transaction transaction = new Transaction();
-        transaction.setCode("TXN-" + UUID.randomUUID().toString());
+        transaction.setCode(code);
         transaction.setBillerId(biller.getId().intValue());
         transaction.setGatewayId(gateway.getId().intValue());
-        transaction.setAmount(amount);
-        transaction.setCommission(commission);
-        transaction.setUrgency(Urgency.INSTANT);
+        transaction.setAmount(MoneyUtil.fromMinor(amountMinor));
+        transaction.setCommission(MoneyUtil.fromMinor(commissionMinor));
+        transaction.setUrgency(urgency);
         transaction.setStatus(Status.COMPLETED);
         transaction.setProcessingTime(gateway.getProcessingTime().toString() + " seconds");
         transaction.setCompletedAt(LocalDateTime.now());
-
-        Transaction savedTransaction = transactionRepository.save(transaction);
-
-        updateQuota(biller.getId(), gateway.getId(), amount);
-
-        log.info("Transaction created successfully: {}", savedTransaction.getCode());
-
+        return transaction;
     }
 
+    /**
+     * Transactions of one day (today when no dates are given), or of startDate to endDate
+     * inclusive (at most {@code routing.transactions.max-range-days} days), oldest first and
+     * at most {@code limit} per page. The range bounds the listing to the partitions it covers;
+     * further pages start after the (created_at, id) of the previous page's last row.
+     *
+     * @param cursor nextCursor of the previous page, or null for the first one
+     */
     @Transactional(readOnly = true)
-    public List<TransactionResponse> getTransactionsByBiller(String billerCode, LocalDate date) {
-        log.info("Fetching transactions for biller: {}, date: {}", billerCode, date);
+    public TransactionPageResponse getTransactionsByBiller(String billerCode, LocalDate date, LocalDate startDate,
+                                                           LocalDate endDate, Integer limit, String cursor) {
+        log.info("Fetching transactions for biller: {}, date: {}, period: {} to {}", billerCode, date, startDate, endDate);
+
+        if (date != null) {
+            if (startDate != null || endDate != null) {
+                throw new InvalidTransactionException("Give either date or startDate and endDate, not both");
+            }
+            startDate = date;
+            endDate = date;
+        } else if (startDate == null && endDate == null) {
+            startDate = LocalDate.now();
+            endDate = startDate;
+        } else if (startDate == null || endDate == null) {
+            throw new InvalidTransactionException("startDate and endDate must be given together");
+        }
+        checkRange(startDate, endDate);
+        int pageSize = limit != null ? limit : defaultPageSize;
+        if (pageSize < 1 || pageSize > maxPageSize) {
+            throw new InvalidTransactionException("limit must be between 1 and " + maxPageSize);
+        }
 
         Biller biller = billerRepository.findByCode(billerCode)
                 .orElseThrow(() -> new ResourceNotFoundException("Biller not found: " + billerCode));
 
-        List<Transaction> transactions;
-
-        if (date != null) {
-            LocalDateTime startOfDay = date.atStartOfDay();
-            LocalDateTime endOfDay = date.plusDays(1).atStartOfDay();
-            transactions = transactionRepository.findByBillerIdAndCreatedAtBetween(
-                    biller.getId(), startOfDay, endOfDay);
-        } else {
-            transactions = transactionRepository.findByBillerId(biller.getId());
+        LocalDateTime from = startDate.atStartOfDay();
+        LocalDateTime afterCreatedAt = from;
+        long afterId = Long.MIN_VALUE;
+        if (cursor != null) {
+            Cursor after = Cursor.decode(cursor);
+            afterCreatedAt = after.getCreatedAt();
+            afterId = after.getId();
         }
+        List<Transaction> transactions = transactionRepository.findPageByBillerIdCreatedIn(
+                biller.getId().intValue(), from, endDate.plusDays(1).atStartOfDay(),
+                afterCreatedAt, afterId, Limit.of(pageSize));
 
-        return transactions.stream()
-                .map(txn -> {
-                    Biller txnBiller = billerRepository.findById(txn.getBillerId()).orElse(biller);
-                    Gateway txnGateway = gatewayRepository.findById(txn.getGatewayId().longValue()).orElse(null);
-                    return mapToResponse(txn, txnBiller, txnGateway);
-                })
+        Map<Long, Gateway> gateways = gatewaysOf(transactions.stream().map(Transaction::getGatewayId).toList());
+        List<TransactionResponse> responses = transactions.stream()
+                .map(txn -> mapToResponse(txn, biller, gateways.get(txn.getGatewayId().longValue())))
                 .collect(Collectors.toList());
+
+        String nextCursor = null;
+        if (transactions.size() == pageSize) {
+            Transaction last = transactions.get(transactions.size() - 1);
+            nextCursor = new Cursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return TransactionPageResponse.builder()
+                .transactions(responses)
+                .nextCursor(nextCursor)
+                .build();
     }
 
+    /**
+     * Totals per gateway and status, aggregated by the database in one query over the
+     * partitions of the period (today when no dates are given, at most
+     * {@code routing.transactions.max-range-days} days).
+     */
     @Transactional(readOnly = true)
     public TransactionSummaryResponse getTransactionSummary(String billerCode, LocalDate startDate, LocalDate endDate) {
         log.info("Fetching transaction summary for biller: {}, period: {} to {}", billerCode, startDate, endDate);
 
-        Biller biller = billerRepository.findByCode(billerCode)
-                .orElseThrow(() -> new ResourceNotFoundException("Biller not found: " + billerCode));
-
         LocalDate effectiveStartDate = startDate != null ? startDate : LocalDate.now();
         LocalDate effectiveEndDate = endDate != null ? endDate : LocalDate.now();
+        checkRange(effectiveStartDate, effectiveEndDate);
 
-        LocalDateTime startDateTime = effectiveStartDate.atStartOfDay();
-        LocalDateTime endDateTime = effectiveEndDate.plusDays(1).atStartOfDay();
-
-        List<Transaction> transactions = transactionRepository.findByBillerIdAndCreatedAtBetween(
-                biller.getId(), startDateTime, endDateTime);
-
-        BigDecimal totalAmount = transactions.stream()
-                .map(Transaction::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        BigDecimal totalCommission = transactions.stream()
-                .map(Transaction::getCommission)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        Map<Integer, List<Transaction>> byGateway = transactions.stream()
-                .collect(Collectors.groupingBy(Transaction::getGatewayId));
-
-        List<TransactionSummaryResponse.GatewaySummary> gatewaySummaries = byGateway.entrySet().stream()
-                .map(entry -> {
-                    Integer gatewayId = entry.getKey();
-                    List<Transaction> gatewayTransactions = entry.getValue();
-
-                    Gateway gateway = gatewayRepository.findById(gatewayId.longValue()).orElse(null);
-
-                    BigDecimal gatewayTotal = gatewayTransactions.stream()
-                            .map(Transaction::getAmount)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-                    BigDecimal gatewayCommission = gatewayTransactions.stream()
-                            .map(Transaction::getCommission)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-                    BigDecimal avgCommission = gatewayTransactions.isEmpty() ? BigDecimal.ZERO :
-                            gatewayCommission.divide(BigDecimal.valueOf(gatewayTransactions.size()), 2, RoundingMode.HALF_UP);
-
-                    return TransactionSummaryResponse.GatewaySummary.builder()
-                            .gatewayCode(gateway != null ? gateway.getCode() : "UNKNOWN")
-                            .gatewayName(gateway != null ? gateway.getName() : "Unknown Gateway")
-                            .transactionCount(gatewayTransactions.size())
-                            .totalAmount(gatewayTotal)
-                            .totalCommission(gatewayCommission)
-                            .averageCommission(avgCommission)
-                            .build();
-                })
-                .collect(Collectors.toList());
+        Biller biller = billerRepository.findByCode(billerCode)
+                .orElseThrow(() -> new ResourceNotFoundException("Biller not found: " + billerCode));
 
-        Map<String, Integer> byStatus = transactions.stream()
-                .collect(Collectors.groupingBy(
-                        txn -> txn.getStatus().name(),
-                        Collectors.summingInt(txn -> 1)
-                ));
+        List<TransactionRepository.GatewayStatusTotals> totals = transactionRepository.sumByGatewayAndStatus(
+                biller.getId().intValue(), effectiveStartDate.atStartOfDay(), effectiveEndDate.plusDays(1).atStartOfDay());
+
+        Map<Long, Gateway> gateways = gatewaysOf(totals.stream().map(TransactionRepository.GatewayStatusTotals::getGatewayId).toList());
+
+        long totalTransactions = 0;
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        BigDecimal totalCommission = BigDecimal.ZERO;
+        Map<Integer, TransactionSummaryResponse.GatewaySummary> byGateway = new LinkedHashMap<>();
+        Map<String, Integer> byStatus = new HashMap<>();
+        for (TransactionRepository.GatewayStatusTotals row : totals) {
+            totalTransactions += row.getTransactionCount();
+            totalAmount = totalAmount.add(row.getTotalAmount());
+            totalCommission = totalCommission.add(row.getTotalCommission());
+            byStatus.merge(row.getStatus().name(), (int) row.getTransactionCount(), Integer::sum);
+
+            TransactionSummaryResponse.GatewaySummary summary = byGateway.computeIfAbsent(row.getGatewayId(), gatewayId -> {
+                Gateway gateway = gateways.get(gatewayId.longValue());
+                return TransactionSummaryResponse.GatewaySummary.builder()
+                        .gatewayCode(gateway != null ? gateway.getCode() : "UNKNOWN")
+                        .gatewayName(gateway != null ? gateway.getName() : "Unknown Gateway")
+                        .transactionCount(0)
+                        .totalAmount(BigDecimal.ZERO)
+                        .totalCommission(BigDecimal.ZERO)
+                        .build();
+            });
+            summary.setTransactionCount(summary.getTransactionCount() + (int) row.getTransactionCount());
+            summary.setTotalAmount(summary.getTotalAmount().add(row.getTotalAmount()));
+            summary.setTotalCommission(summary.getTotalCommission().add(row.getTotalCommission()));
+        }
+        for (TransactionSummaryResponse.GatewaySummary summary : byGateway.values()) {
+            summary.setAverageCommission(summary.getTotalCommission()
+                    .divide(BigDecimal.valueOf(summary.getTransactionCount()), 2, RoundingMode.HALF_UP));
+        }
 
         return TransactionSummaryResponse.builder()
                 .billerCode(biller.getCode())
@@ -236,56 +333,57 @@ public class TransactionService {
                         .startDate(effectiveStartDate)
                         .endDate(effectiveEndDate)
                         .build())
-                .totalTransactions(transactions.size())
+                .totalTransactions((int) totalTransactions)
                 .totalAmount(totalAmount)
                 .totalCommission(totalCommission)
-                .byGateway(gatewaySummaries)
+                .byGateway(new ArrayList<>(byGateway.values()))
                 .byStatus(byStatus)
                 .build();
     }
 
-    private BigDecimal getRemainingQuota(Long billerId, Long gatewayId) {
-        DailyQuota quota = quotaRepository.findByBillerIdAndGatewayIdAndQuotaDate(
-                billerId, gatewayId, LocalDate.now()).orElse(null);
-
-        Gateway gateway = gatewayRepository.findById(gatewayId)
-                .orElseThrow(() -> new ResourceNotFoundException("Gateway not found"));
-
-        if (quota == null) {
-            return gateway.getDailyLimit();
+    private void checkRange(LocalDate startDate, LocalDate endDate) {
+        if (endDate.isBefore(startDate)) {
+            throw new InvalidTransactionException("endDate must not be before startDate");
         }
+        if (ChronoUnit.DAYS.between(startDate, endDate) >= maxRangeDays) {
+            throw new InvalidTransactionException("At most " + maxRangeDays + " days of transactions can be read at once");
+        }
+    }
 
-        return gateway.getDailyLimit().subtract(quota.getTotalAmount());
+    private Map<Long, Gateway> gatewaysOf(List<Integer> gatewayIds) {
+        return gatewayRepository.findAllById(gatewayIds.stream().distinct().map(Integer::longValue).toList()).stream()
+                .collect(Collectors.toMap(Gateway::getId, gateway -> gateway));
     }
 
-    @Transactional
-    private void updateQuota(Long billerId, Long gatewayId, BigDecimal amount) {
-        LocalDate today = LocalDate.now();
-        DailyQuota quota = quotaRepository.findByBillerIdAndGatewayIdAndQuotaDate(
-                billerId, gatewayId, today).orElse(null);
-
-        Gateway gateway = gatewayRepository.findById(gatewayId)
-                .orElseThrow(() -> new ResourceNotFoundException("Gateway not found"));
-
-        if (quota == null) {
-            quota = new DailyQuota();
-            quota.setBillerId(billerId);
-            quota.setGatewayId(gatewayId);
-            quota.setQuotaDate(today);
-            quota.setTotalAmount(amount);
-            quota.setTransactionCount(1);
-            quota.setDailyLimit(gateway.getDailyLimit());
-        } else {
-            quota.setTotalAmount(quota.getTotalAmount().add(amount));
-            quota.setTransactionCount(quota.getTransactionCount() + 1);
-        }
+    /**
+     * Response for a transaction read back from the database, e.g. to answer an
+     * idempotent retry whose first request did not store its response.
+     */
+    @Transactional(readOnly = true)
+    public TransactionResponse toResponse(Transaction transaction) {
+        return mapToResponse(transaction,
+                billerRepository.findById(transaction.getBillerId()).orElse(null),
+                gatewayRepository.findById(transaction.getGatewayId().longValue()).orElse(null));
+    }
 
-        quotaRepository.save(quota);
+    public TransactionResponse toResponse(Transaction transaction, Biller biller, RoutingGateway gateway) {
+        return TransactionResponse.builder()
+                .code(TransactionCodeGenerator.render(transaction.getCode()))
+                .billerCode(biller.getCode())
+                .gatewayCode(gateway.getCode())
+                .gatewayName(gateway.getName())
+                .amount(transaction.getAmount())
+                .commission(transaction.getCommission())
+                .urgency(transaction.getUrgency())
+                .status(transaction.getStatus())
+                .createdAt(transaction.getCreatedAt())
+                .completedAt(transaction.getCompletedAt())
+                .build();
     }
 
     private TransactionResponse mapToResponse(Transaction transaction, Biller biller, Gateway gateway) {
         return TransactionResponse.builder()
-                .code(transaction.getCode())
+                .code(TransactionCodeGenerator.render(transaction.getCode()))
                 .billerCode(biller != null ? biller.getCode() : "UNKNOWN")
                 .gatewayCode(gateway != null ? gateway.getCode() : "UNKNOWN")
                 .gatewayName(gateway != null ? gateway.getName() : "Unknown Gateway")
@@ -297,4 +395,27 @@ public class TransactionService {
                 .completedAt(transaction.getCompletedAt())
                 .build();
     }
-}
\ No newline at end of file
+
+    /**
+     * Keyset position of a listing page's last row, handed to clients as an opaque token.
+     */
+    @lombok.Value
+    private static class Cursor {
+        LocalDateTime createdAt;
+        long id;
+
+        String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((createdAt + "|" + id).getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String token) {
+            try {
+                String[] position = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|");
+                return new Cursor(LocalDateTime.parse(position[0]), Long.parseLong(position[1]));
+            } catch (RuntimeException ex) {
+                throw new InvalidTransactionException("Invalid cursor");
+            }
+        }
+    }
+}
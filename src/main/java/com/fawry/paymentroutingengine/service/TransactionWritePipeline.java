@@ -0,0 +1,259 @@
+package com.fawry.paymentroutingengine.service;
+
+import com.fawry.paymentroutingengine.constant.Status;
+import com.fawry.paymentroutingengine.constant.Urgency;
+import com.fawry.paymentroutingengine.entity.Biller;
+import com.fawry.paymentroutingengine.entity.Transaction;
+import com.fawry.paymentroutingengine.exception.InsufficientQuotaException;
+import com.fawry.paymentroutingengine.exception.ServiceOverloadedException;
+import com.fawry.paymentroutingengine.repository.TransactionRepository;
+import com.fawry.paymentroutingengine.routing.RoutingGateway;
+import com.fawry.paymentroutingengine.util.MoneyUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batched writer for transaction rows ({@code routing.persistence.mode=async}).
+ *
+ * The request thread reserves quota and enqueues the transaction; a single
+ * worker drains the queue and inserts rows in batches. Each request completes
+ * only once the batch holding its row has committed, so a transaction code is
+ * never handed out for a row that is not durable; what the mode saves is one
+ * commit per request, not the wait for it.
+ *
+ * - quota is reserved by {@link QuotaService}: in memory with the ledger store,
+ *   but a synchronous upsert on the caller's thread with {@code routing.quota.store=database}
+ * - the queue is bounded; when it is full the reservation is released and the
+ *   request is rejected with {@link ServiceOverloadedException} (503)
+ * - a failed batch is retried with backoff, then written row by row; a row that
+ *   still fails has its quota released, is recorded with status FAILED when
+ *   possible, and its request fails
+ * - on shutdown new writes are refused and the queue is drained before the
+ *   quota ledger flushes; writes still queued after the drain timeout fail
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "routing.persistence.mode", havingValue = "async")
+public class TransactionWritePipeline {
+
+    private final TransactionRepository transactionRepository;
+    private final TransactionService transactionService;
+    private final QuotaService quotaService;
+    private final TransactionTemplate writeTransaction;
+
+    private final BlockingQueue<PendingWrite> queue;
+    private final int batchSize;
+    private final int maxRetries;
+    private final long retryBackoffMs;
+    private final long drainTimeoutMs;
+
+    private volatile boolean accepting = true;
+    private Thread worker;
+
+    public TransactionWritePipeline(TransactionRepository transactionRepository,
+                                    TransactionService transactionService,
+                                    QuotaService quotaService,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${routing.persistence.queue-capacity:10000}") int queueCapacity,
+                                    @Value("${routing.persistence.batch-size:200}") int batchSize,
+                                    @Value("${routing.persistence.max-retries:3}") int maxRetries,
+                                    @Value("${routing.persistence.retry-backoff-ms:200}") long retryBackoffMs,
+                                    @Value("${routing.persistence.drain-timeout-ms:30000}") long drainTimeoutMs) {
+        this.transactionRepository = transactionRepository;
+        this.transactionService = transactionService;
+        this.quotaService = quotaService;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.maxRetries = maxRetries;
+        this.retryBackoffMs = retryBackoffMs;
+        this.drainTimeoutMs = drainTimeoutMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        worker = new Thread(this::run, "transaction-write-pipeline");
+        worker.setDaemon(true);
+        worker.start();
+        log.info("Transaction write pipeline started (capacity {}, batch size {})",
+                queue.remainingCapacity(), batchSize);
+    }
+
+    /**
+     * Reserve quota and enqueue the transaction row.
+     *
+     * @return completes with the transaction once its batch has committed, or with the write failure
+     * @throws InsufficientQuotaException if the amount does not fit the remaining quota
+     * @throws ServiceOverloadedException if the write queue is full or shutting down
+     */
+    public CompletableFuture<Transaction> submit(Biller biller, RoutingGateway gateway, LocalDate quotaDate,
+                                                 long amountMinor, long commissionMinor, Urgency urgency, UUID code) {
+        if (!accepting) {
+            throw new ServiceOverloadedException("Transaction writes are shutting down, please retry");
+        }
+
+        if (!quotaService.reserve(biller.getId(), gateway.getId(), quotaDate, amountMinor, gateway.getDailyLimitMinor())) {
+            throw new InsufficientQuotaException("Insufficient daily quota. Remaining: "
+                    + MoneyUtil.fromMinor(quotaService.getRemainingQuotaMinor(
+                            biller.getId(), gateway.getId(), gateway.getDailyLimitMinor())));
+        }
+
+        Transaction transaction = transactionService.newTransaction(biller, gateway, amountMinor, commissionMinor, urgency, code);
+        PendingWrite write = new PendingWrite(transaction, biller.getId(), gateway.getId(), quotaDate, amountMinor,
+                new CompletableFuture<>());
+
+        if (!queue.offer(write)) {
+            release(write);
+            throw new ServiceOverloadedException("Transaction write queue is full, please retry");
+        }
+
+        log.debug("Queued transaction {} ({} pending)", transaction.getCode(), queue.size());
+        return write.getResult();
+    }
+
+    public int pending() {
+        return queue.size();
+    }
+
+    @PreDestroy
+    public void stop() {
+        accepting = false;
+        log.info("Draining {} queued transaction writes before shutdown", queue.size());
+        try {
+            worker.join(drainTimeoutMs);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive() || !queue.isEmpty()) {
+            log.error("Shutdown drain timed out with {} transaction writes still queued", queue.size());
+            List<PendingWrite> left = new ArrayList<>();
+            queue.drainTo(left);
+            for (PendingWrite write : left) {
+                fail(write, new ServiceOverloadedException("Transaction writes are shutting down, please retry"));
+            }
+        }
+    }
+
+    private void run() {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        while (accepting || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException ex) {
+                log.error("Unexpected error in transaction write pipeline", ex);
+                for (PendingWrite write : batch) {
+                    if (!write.getResult().isDone()) {
+                        fail(write, ex);
+                    }
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<PendingWrite> batch) throws InterruptedException {
+        for (int attempt = 0; attempt <= maxRetries; attempt++) {
+            if (saveAll(batch)) {
+                log.debug("Persisted {} queued transactions", batch.size());
+                for (PendingWrite write : batch) {
+                    write.getResult().complete(write.getTransaction());
+                }
+                return;
+            }
+            Thread.sleep(retryBackoffMs * (attempt + 1));
+        }
+
+        // Keep one bad row from taking the whole batch with it
+        log.warn("Batch of {} transactions failed after {} retries, writing rows individually",
+                batch.size(), maxRetries);
+        for (PendingWrite write : batch) {
+            if (saveAll(List.of(write))) {
+                write.getResult().complete(write.getTransaction());
+            } else {
+                log.error("Transaction {} could not be written after repeated failures, releasing its quota",
+                        write.getTransaction().getCode());
+                recordFailed(write);
+                fail(write, new ServiceOverloadedException("Transaction could not be recorded, please retry"));
+            }
+        }
+    }
+
+    /**
+     * Keep a FAILED row for a transaction whose write failed, so it is visible in the
+     * history; when even that cannot be written the failure is only logged.
+     */
+    private void recordFailed(PendingWrite write) {
+        Transaction transaction = write.getTransaction();
+        transaction.setStatus(Status.FAILED);
+        transaction.setCompletedAt(null);
+        if (!saveAll(List.of(write))) {
+            log.error("Transaction {} could not be recorded as FAILED either", transaction.getCode());
+        }
+    }
+
+    private void fail(PendingWrite write, RuntimeException ex) {
+        release(write);
+        write.getResult().completeExceptionally(ex);
+    }
+
+    private boolean saveAll(List<PendingWrite> writes) {
+        List<Transaction> transactions = new ArrayList<>(writes.size());
+        for (PendingWrite write : writes) {
+            // A failed attempt may have assigned ids that were rolled back
+            write.getTransaction().setId(null);
+            transactions.add(write.getTransaction());
+        }
+        try {
+            writeTransaction.executeWithoutResult(status -> transactionRepository.saveAll(transactions));
+            return true;
+        } catch (RuntimeException ex) {
+            log.warn("Failed to persist {} transactions: {}", transactions.size(), ex.getMessage());
+            return false;
+        }
+    }
+
+    private void release(PendingWrite write) {
+        try {
+            quotaService.release(write.getBillerId(), write.getGatewayId(), write.getQuotaDate(), write.getAmountMinor());
+        } catch (RuntimeException ex) {
+            log.error("Failed to release quota for transaction {}: {}", write.getTransaction().getCode(), ex.getMessage());
+        }
+    }
+
+    @lombok.Value
+    private static class PendingWrite {
+        Transaction transaction;
+        Long billerId;
+        Long gatewayId;
+        LocalDate quotaDate;
+        long amountMinor;
+        CompletableFuture<Transaction> result;
+    }
+}
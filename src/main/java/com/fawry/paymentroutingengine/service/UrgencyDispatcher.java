@@ -0,0 +1,276 @@
+package com.fawry.paymentroutingengine.service;
+
+import com.fawry.paymentroutingengine.constant.Urgency;
+import com.fawry.paymentroutingengine.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs routing and transaction work on a fixed set of workers fed by one
+ * bounded lane per urgency, so INSTANT payments keep their latency when the
+ * engine is saturated ({@code routing.dispatch.*}).
+ *
+ * - {@code routing.dispatch.instant.reserved-workers} of the workers only run
+ *   INSTANT work, so a backlog of CAN_WAIT work can never occupy every worker
+ * - the other workers take from the lanes in weighted turns (INSTANT 4 :
+ *   CAN_WAIT 1 by default); a lane with nothing queued gives its turn to the
+ *   other, so CAN_WAIT work uses all shared workers when there is no INSTANT traffic
+ * - the worker count caps how much routing work reaches the database pool at
+ *   once; everything beyond it waits in its lane
+ * - a full lane rejects with {@link ServiceOverloadedException} (503), and work
+ *   that waited longer than its lane's max wait is failed the same way instead
+ *   of being run for a client that has likely given up
+ *
+ * Callers get a future that completes on the worker; controllers return it so
+ * the request thread is released while the work is queued. Each lane's max wait
+ * must stay below {@code spring.mvc.async.request-timeout} (the container's 30s
+ * when unset), or the request times out before queued work is failed with 503. With
+ * {@code spring.threads.virtual.enabled} on Java 21+ the workers are virtual
+ * threads; their count still bounds database concurrency.
+ */
+@Service
+@Slf4j
+public class UrgencyDispatcher {
+
+    private final boolean enabled;
+    private final int workerCount;
+    private final int instantReservedWorkers;
+    private final boolean virtualThreads;
+    private final Lane instant;
+    private final Lane canWait;
+    private final int cycle;
+
+    // One permit per queued task across both lanes, for the shared workers; the reserved
+    // workers wait on the INSTANT lane's own permits. A task taken by the other kind of
+    // worker leaves a permit whose holder finds nothing to take and waits again.
+    private final Semaphore queued = new Semaphore(0);
+    private final AtomicLong turns = new AtomicLong();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    public UrgencyDispatcher(@Value("${routing.dispatch.enabled:true}") boolean enabled,
+                             @Value("${routing.dispatch.workers:16}") int workerCount,
+                             @Value("${routing.dispatch.instant.queue-capacity:1000}") int instantCapacity,
+                             @Value("${routing.dispatch.instant.weight:4}") int instantWeight,
+                             @Value("${routing.dispatch.instant.max-wait-ms:2000}") long instantMaxWaitMs,
+                             @Value("${routing.dispatch.instant.reserved-workers:4}") int instantReservedWorkers,
+                             @Value("${routing.dispatch.can-wait.queue-capacity:5000}") int canWaitCapacity,
+                             @Value("${routing.dispatch.can-wait.weight:1}") int canWaitWeight,
+                             @Value("${routing.dispatch.can-wait.max-wait-ms:30000}") long canWaitMaxWaitMs,
+                             @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                             @Value("${spring.mvc.async.request-timeout:30s}") Duration asyncRequestTimeout,
+                             MeterRegistry meterRegistry) {
+        if (enabled && Math.max(instantMaxWaitMs, canWaitMaxWaitMs) >= asyncRequestTimeout.toMillis()) {
+            throw new IllegalArgumentException("routing.dispatch max-wait-ms must be below spring.mvc.async.request-timeout ("
+                    + asyncRequestTimeout.toMillis() + " ms), got INSTANT " + instantMaxWaitMs + " ms, CAN_WAIT " + canWaitMaxWaitMs + " ms");
+        }
+        if (enabled && (instantReservedWorkers < 0 || instantReservedWorkers >= workerCount)) {
+            throw new IllegalArgumentException("routing.dispatch.instant.reserved-workers must be between 0 and routing.dispatch.workers - 1 ("
+                    + (workerCount - 1) + "), got " + instantReservedWorkers);
+        }
+        this.enabled = enabled;
+        this.workerCount = workerCount;
+        this.instantReservedWorkers = instantReservedWorkers;
+        // Same rule as Spring Boot: the property only takes effect on Java 21+
+        this.virtualThreads = virtualThreads && Runtime.version().feature() >= 21;
+        this.instant = new Lane(Urgency.INSTANT, instantCapacity, instantWeight, instantMaxWaitMs, meterRegistry);
+        this.canWait = new Lane(Urgency.CAN_WAIT, canWaitCapacity, canWaitWeight, canWaitMaxWaitMs, meterRegistry);
+        this.cycle = instantWeight + canWaitWeight;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        ThreadFactory threads = virtualThreads
+                ? new VirtualThreadTaskExecutor("urgency-dispatch-").getVirtualThreadFactory()
+                : this::platformWorker;
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = threads.newThread(i < instantReservedWorkers ? this::runInstant : this::run);
+            worker.start();
+            workers.add(worker);
+        }
+        log.info("Urgency dispatcher started ({} {} workers, {} of them INSTANT only, INSTANT:CAN_WAIT weight {}:{})",
+                workerCount, virtualThreads ? "virtual" : "platform", instantReservedWorkers, instant.weight, canWait.weight);
+    }
+
+    /**
+     * Queue work on the lane of its urgency; runs it inline when dispatching is disabled.
+     *
+     * @throws ServiceOverloadedException if the lane is full
+     */
+    public <T> CompletableFuture<T> submit(Urgency urgency, Supplier<T> work) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(work.get());
+        }
+
+        Lane lane = urgency == Urgency.INSTANT ? instant : canWait;
+        Task<T> task = new Task<>(work, lane);
+        if (!running || !lane.queue.offer(task)) {
+            lane.rejected.increment();
+            throw new ServiceOverloadedException(lane.urgency + " queue is full, please retry");
+        }
+        lane.queued.release();
+        queued.release();
+        return task.future;
+    }
+
+    public int queueDepth(Urgency urgency) {
+        return (urgency == Urgency.INSTANT ? instant : canWait).queue.size();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        log.info("Stopping urgency dispatcher with {} INSTANT and {} CAN_WAIT tasks queued",
+                instant.queue.size(), canWait.queue.size());
+        for (Thread worker : workers) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private Thread platformWorker(Runnable task) {
+        Thread worker = new Thread(task, "urgency-dispatch-" + workers.size());
+        worker.setDaemon(true);
+        return worker;
+    }
+
+    private void run() {
+        while (running || queued.availablePermits() > 0) {
+            try {
+                if (!queued.tryAcquire(1, TimeUnit.SECONDS)) {
+                    continue;
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            Task<?> task = take();
+            if (task != null) {
+                task.run();
+            }
+        }
+    }
+
+    private void runInstant() {
+        while (running || instant.queued.availablePermits() > 0) {
+            try {
+                if (!instant.queued.tryAcquire(1, TimeUnit.SECONDS)) {
+                    continue;
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            Task<?> task = instant.queue.poll();
+            if (task != null) {
+                task.run();
+            }
+        }
+    }
+
+    /**
+     * Next task by weighted turn, or null when a reserved worker took the task the
+     * permit stood for.
+     */
+    private Task<?> take() {
+        boolean instantTurn = Math.floorMod(turns.getAndIncrement(), cycle) < instant.weight;
+        Lane first = instantTurn ? instant : canWait;
+        Lane second = instantTurn ? canWait : instant;
+        Task<?> task = first.queue.poll();
+        return task != null ? task : second.queue.poll();
+    }
+
+    private static final class Lane {
+        private final Urgency urgency;
+        private final BlockingQueue<Task<?>> queue;
+        // One permit per task queued on this lane
+        private final Semaphore queued = new Semaphore(0);
+        private final int weight;
+        private final long maxWaitNanos;
+        private final Timer waitTime;
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder expired = new LongAdder();
+
+        Lane(Urgency urgency, int capacity, int weight, long maxWaitMs, MeterRegistry meterRegistry) {
+            this.urgency = urgency;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.weight = weight;
+            this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+
+            String lane = urgency.name();
+            this.waitTime = Timer.builder("routing.dispatch.wait")
+                    .description("Time from submission until a worker picks the task up")
+                    .tag("lane", lane)
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry);
+            Gauge.builder("routing.dispatch.queue.depth", queue, BlockingQueue::size)
+                    .description("Tasks waiting for a worker")
+                    .tag("lane", lane)
+                    .register(meterRegistry);
+            FunctionCounter.builder("routing.dispatch.rejected", rejected, LongAdder::sum)
+                    .description("Tasks refused because the lane was full")
+                    .tag("lane", lane)
+                    .register(meterRegistry);
+            FunctionCounter.builder("routing.dispatch.expired", expired, LongAdder::sum)
+                    .description("Tasks failed because they waited longer than the lane's max wait")
+                    .tag("lane", lane)
+                    .register(meterRegistry);
+        }
+    }
+
+    private static final class Task<T> {
+        private final Supplier<T> work;
+        private final Lane lane;
+        private final long submittedAt = System.nanoTime();
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        Task(Supplier<T> work, Lane lane) {
+            this.work = work;
+            this.lane = lane;
+        }
+
+        void run() {
+            long waited = System.nanoTime() - submittedAt;
+            lane.waitTime.record(waited, TimeUnit.NANOSECONDS);
+            if (waited > lane.maxWaitNanos) {
+                lane.expired.increment();
+                future.completeExceptionally(new ServiceOverloadedException(
+                        lane.urgency + " request waited too long in the queue, please retry"));
+                return;
+            }
+            try {
+                future.complete(work.get());
+            } catch (RuntimeException | Error ex) {
+                future.completeExceptionally(ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.fawry.paymentroutingengine.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point commission arithmetic.
+ *
+ * commission = commissionFixed + amount * commissionRate, rounded HALF_UP to
+ * piastres. Amounts and fixed fees are long piastres; rates are long units of
+ * 1e-10 (the scale of {@code gate_way.commission_amount}), so the product is
+ * exact and is rounded once, giving the same result as the BigDecimal formula.
+ * Products that do not fit in a long fall back to BigDecimal.
+ */
+public final class CommissionUtil {
+
+    public static final int RATE_SCALE = 10;
+
+    private static final long RATE_ONE = 10_000_000_000L;
+    private static final long HALF_UNIT = RATE_ONE / 2;
+
+    private CommissionUtil() {
+    }
+
+    /**
+     * @return the rate in 1e-10 units, or -1 if it cannot be represented exactly
+     */
+    public static long toRateUnits(BigDecimal rate) {
+        if (rate.signum() < 0 || rate.stripTrailingZeros().scale() > RATE_SCALE) {
+            return -1;
+        }
+        try {
+            return rate.setScale(RATE_SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return the fixed fee in piastres, or -1 if it cannot be represented exactly
+     */
+    public static long toFixedMinor(BigDecimal fixed) {
+        if (fixed.signum() < 0 || fixed.stripTrailingZeros().scale() > MoneyUtil.SCALE) {
+            return -1;
+        }
+        try {
+            return fixed.setScale(MoneyUtil.SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException ex) {
+            return -1;
+        }
+    }
+
+    public static long commissionMinor(long fixedMinor, long rateUnits, long amountMinor) {
+        long high = Math.multiplyHigh(amountMinor, rateUnits);
+        long product = amountMinor * rateUnits;
+
+        if (high != 0 || product < 0 || product > Long.MAX_VALUE - HALF_UNIT) {
+            BigDecimal exact = BigDecimal.valueOf(amountMinor)
+                    .multiply(BigDecimal.valueOf(rateUnits))
+                    .divide(BigDecimal.valueOf(RATE_ONE), 0, RoundingMode.HALF_UP);
+            return fixedMinor + exact.longValueExact();
+        }
+
+        return fixedMinor + (product + HALF_UNIT) / RATE_ONE;
+    }
+
+    /**
+     * BigDecimal entry point for API-level callers.
+     */
+    public static BigDecimal commission(BigDecimal fixed, BigDecimal rate, BigDecimal amount) {
+        long fixedMinor = toFixedMinor(fixed);
+        long rateUnits = toRateUnits(rate);
+
+        if (fixedMinor < 0 || rateUnits < 0 || amount.stripTrailingZeros().scale() > MoneyUtil.SCALE) {
+            return fixed.add(amount.multiply(rate)).setScale(MoneyUtil.SCALE, RoundingMode.HALF_UP);
+        }
+
+        return MoneyUtil.fromMinor(commissionMinor(fixedMinor, rateUnits, MoneyUtil.toMinor(amount)));
+    }
+}
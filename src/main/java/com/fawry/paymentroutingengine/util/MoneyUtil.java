@@ -0,0 +1,24 @@
+package com.fawry.paymentroutingengine.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Conversions between API amounts (BigDecimal EGP) and the long piastre
+ * (minor unit, 1/100 EGP) values used on the routing hot path.
+ */
+public final class MoneyUtil {
+
+    public static final int SCALE = 2;
+
+    private MoneyUtil() {
+    }
+
+    public static long toMinor(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal fromMinor(long minor) {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+}
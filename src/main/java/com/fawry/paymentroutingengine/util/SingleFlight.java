@@ -0,0 +1,79 @@
+package com.fawry.paymentroutingengine.util;
+
+import lombok.Value;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key: the first caller (the leader)
+ * runs the work, callers arriving while it is in flight wait for and share its
+ * result or exception. Nothing is kept once the flight lands, so this is not a
+ * cache; a later call runs the work again.
+ */
+public final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+    private final LongAdder leaders = new LongAdder();
+    private final LongAdder followers = new LongAdder();
+
+    public Outcome<V> execute(K key, Supplier<V> work) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = flights.putIfAbsent(key, flight);
+        if (inFlight != null) {
+            followers.increment();
+            return new Outcome<>(await(inFlight), true);
+        }
+
+        leaders.increment();
+        try {
+            V value = work.get();
+            flight.complete(value);
+            return new Outcome<>(value, false);
+        } catch (RuntimeException | Error ex) {
+            flight.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    /**
+     * Calls that ran the work themselves.
+     */
+    public long leaders() {
+        return leaders.sum();
+    }
+
+    /**
+     * Calls that shared another caller's result.
+     */
+    public long followers() {
+        return followers.sum();
+    }
+
+    private V await(CompletableFuture<V> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    @Value
+    public static class Outcome<V> {
+        V value;
+        // True if the value was computed by another caller
+        boolean shared;
+    }
+}
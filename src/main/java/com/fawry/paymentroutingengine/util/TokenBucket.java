@@ -0,0 +1,96 @@
+package com.fawry.paymentroutingengine.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free token bucket.
+ *
+ * The whole state is one timestamp (the generic cell rate algorithm): the time
+ * at which the bucket would be full again. Taking tokens pushes it forward by
+ * their refill time, with a single compare-and-set; a request is refused when
+ * that would put the bucket more than its capacity in debt.
+ */
+public final class TokenBucket {
+
+    private final double tokensPerSecond;
+    private final int capacity;
+    private final long nanosPerToken;
+    private final long capacityNanos;
+
+    private final AtomicLong fullAt;
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public TokenBucket(double tokensPerSecond, int capacity) {
+        if (tokensPerSecond <= 0 || capacity < 1) {
+            throw new IllegalArgumentException("Token bucket needs a positive rate and capacity, got "
+                    + tokensPerSecond + "/s and " + capacity);
+        }
+        this.tokensPerSecond = tokensPerSecond;
+        this.capacity = capacity;
+        this.nanosPerToken = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond));
+        this.capacityNanos = nanosPerToken * capacity;
+        this.fullAt = new AtomicLong(System.nanoTime());
+    }
+
+    public boolean tryAcquire() {
+        return tryAcquire(1);
+    }
+
+    public boolean tryAcquire(int tokens) {
+        long cost = nanosPerToken * tokens;
+        while (true) {
+            long now = System.nanoTime();
+            long current = fullAt.get();
+            long next = (current - now > 0 ? current : now) + cost;
+            if (next - now > capacityNanos) {
+                rejected.increment();
+                return false;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                admitted.increment();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Give back tokens taken by {@link #tryAcquire(int)} for a request that was
+     * not admitted after all.
+     */
+    public void refund(int tokens) {
+        fullAt.addAndGet(-nanosPerToken * tokens);
+        admitted.decrement();
+    }
+
+    public double availableTokens() {
+        long debt = Math.max(0L, fullAt.get() - System.nanoTime());
+        return (double) (capacityNanos - debt) / nanosPerToken;
+    }
+
+    /**
+     * Time until {@code tokens} could be taken, 0 if they can be taken now.
+     */
+    public long nanosUntilAvailable(int tokens) {
+        long debt = Math.max(0L, fullAt.get() - System.nanoTime());
+        return Math.max(0L, debt + nanosPerToken * tokens - capacityNanos);
+    }
+
+    public double getTokensPerSecond() {
+        return tokensPerSecond;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long admitted() {
+        return admitted.sum();
+    }
+
+    public long rejected() {
+        return rejected.sum();
+    }
+}
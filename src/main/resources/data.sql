@@ -11,29 +11,29 @@ INSERT INTO gate_way (code, name, min_transaction, max_transaction, commission_f
 
 -- Insert Gateway Availability
 -- Gateway 1: 24/7
-INSERT INTO gateway_availability (gateway_id, day_week, is_24_7) VALUES
-                                                                     (1, 'MONDAY', true),
-                                                                     (1, 'TUESDAY', true),
-                                                                     (1, 'WEDNESDAY', true),
-                                                                     (1, 'THURSDAY', true),
-                                                                     (1, 'FRIDAY', true),
-                                                                     (1, 'SATURDAY', true),
-                                                                     (1, 'SUNDAY', true);
+INSERT INTO gateway_availability (id, gateway_id, day_week, is_24_7) VALUES
+                                                                     (nextval('gateway_availability_seq'), 1, 'MONDAY', true),
+                                                                     (nextval('gateway_availability_seq'), 1, 'TUESDAY', true),
+                                                                     (nextval('gateway_availability_seq'), 1, 'WEDNESDAY', true),
+                                                                     (nextval('gateway_availability_seq'), 1, 'THURSDAY', true),
+                                                                     (nextval('gateway_availability_seq'), 1, 'FRIDAY', true),
+                                                                     (nextval('gateway_availability_seq'), 1, 'SATURDAY', true),
+                                                                     (nextval('gateway_availability_seq'), 1, 'SUNDAY', true);
 
 -- Gateway 2: Sun-Thu 9AM-5PM
-INSERT INTO gateway_availability (gateway_id, day_week, start_time, end_time, is_24_7) VALUES
-                                                                                           (2, 'SUNDAY', '09:00:00', '17:00:00', false),
-                                                                                           (2, 'MONDAY', '09:00:00', '17:00:00', false),
-                                                                                           (2, 'TUESDAY', '09:00:00', '17:00:00', false),
-                                                                                           (2, 'WEDNESDAY', '09:00:00', '17:00:00', false),
-                                                                                           (2, 'THURSDAY', '09:00:00', '17:00:00', false);
+INSERT INTO gateway_availability (id, gateway_id, day_week, start_time, end_time, is_24_7) VALUES
+                                                                                           (nextval('gateway_availability_seq'), 2, 'SUNDAY', '09:00:00', '17:00:00', false),
+                                                                                           (nextval('gateway_availability_seq'), 2, 'MONDAY', '09:00:00', '17:00:00', false),
+                                                                                           (nextval('gateway_availability_seq'), 2, 'TUESDAY', '09:00:00', '17:00:00', false),
+                                                                                           (nextval('gateway_availability_seq'), 2, 'WEDNESDAY', '09:00:00', '17:00:00', false),
+                                                                                           (nextval('gateway_availability_seq'), 2, 'THURSDAY', '09:00:00', '17:00:00', false);
 
 -- Gateway 3: 24/7
-INSERT INTO gateway_availability (gateway_id, day_week, is_24_7) VALUES
-                                                                     (3, 'MONDAY', true),
-                                                                     (3, 'TUESDAY', true),
-                                                                     (3, 'WEDNESDAY', true),
-                                                                     (3, 'THURSDAY', true),
-                                                                     (3, 'FRIDAY', true),
-                                                                     (3, 'SATURDAY', true),
-                                                                     (3, 'SUNDAY', true);
\ No newline at end of file
+INSERT INTO gateway_availability (id, gateway_id, day_week, is_24_7) VALUES
+                                                                     (nextval('gateway_availability_seq'), 3, 'MONDAY', true),
+                                                                     (nextval('gateway_availability_seq'), 3, 'TUESDAY', true),
+                                                                     (nextval('gateway_availability_seq'), 3, 'WEDNESDAY', true),
+                                                                     (nextval('gateway_availability_seq'), 3, 'THURSDAY', true),
+                                                                     (nextval('gateway_availability_seq'), 3, 'FRIDAY', true),
+                                                                     (nextval('gateway_availability_seq'), 3, 'SATURDAY', true),
+                                                                     (nextval('gateway_availability_seq'), 3, 'SUNDAY', true);
\ No newline at end of file
@@ -0,0 +1,23 @@
+-- One-off migration for databases created while gateway_availability allowed one row per
+-- (gateway_id, day_week). Several windows per day are now supported, so that unique constraint
+-- must go. Hibernate named it with a generated hash, so it is found by its columns. Safe to re-run.
+
+DO $$
+DECLARE
+    constraint_name name;
+BEGIN
+    FOR constraint_name IN
+        SELECT c.conname
+        FROM pg_constraint c
+        WHERE c.conrelid = 'gateway_availability'::regclass
+          AND c.contype = 'u'
+          AND (SELECT array_agg(a.attname::text ORDER BY a.attname)
+               FROM pg_attribute a
+               WHERE a.attrelid = c.conrelid AND a.attnum = ANY (c.conkey)) = ARRAY['day_week', 'gateway_id']
+    LOOP
+        EXECUTE format('ALTER TABLE gateway_availability DROP CONSTRAINT %I', constraint_name);
+    END LOOP;
+END $$;
+
+-- Lookups by gateway previously used the constraint's index
+CREATE INDEX IF NOT EXISTS idx_gateway_availability_gateway ON gateway_availability (gateway_id);
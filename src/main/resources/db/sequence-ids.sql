@@ -0,0 +1,11 @@
+-- One-off migration for databases created while transactions and gateway_availability
+-- used identity columns. Run it once before starting this version; ddl-auto only adds
+-- the sequences, starting at 1, which would collide with the existing ids.
+
+CREATE SEQUENCE IF NOT EXISTS transactions_seq INCREMENT BY 50;
+SELECT setval('transactions_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM transactions), false);
+ALTER TABLE transactions ALTER COLUMN id DROP IDENTITY IF EXISTS;
+
+CREATE SEQUENCE IF NOT EXISTS gateway_availability_seq INCREMENT BY 50;
+SELECT setval('gateway_availability_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM gateway_availability), false);
+ALTER TABLE gateway_availability ALTER COLUMN id DROP IDENTITY IF EXISTS;
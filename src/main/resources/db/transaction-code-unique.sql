@@ -0,0 +1,12 @@
+-- Standalone unique index on transactions.code for tables that are NOT partitioned.
+-- The entity only declares (code, created_at), the form a partitioned table can enforce; on a plain
+-- table that still allows a repeated code with another created_at. Run this once on deployments
+-- that do not use db/transactions-partitioning.sql (safe to re-run; it does nothing on a partitioned
+-- table). It blocks writes while the index is built, so run it in a quiet period on large tables.
+
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = 'transactions'::regclass) THEN
+        CREATE UNIQUE INDEX IF NOT EXISTS uk_transactions_code ON transactions (code);
+    END IF;
+END $$;
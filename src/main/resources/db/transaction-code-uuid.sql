@@ -0,0 +1,7 @@
+-- One-off migration for databases whose transactions.code is still varchar ("TXN-" + random UUID).
+-- Codes are now time-ordered UUIDs stored as uuid; the TXN- prefix is only added in API responses.
+-- ddl-auto never changes a column type, so run this once before starting this version.
+-- The unique index is rebuilt as part of the type change.
+
+ALTER TABLE transactions
+    ALTER COLUMN code TYPE uuid USING CAST(substring(code FROM 5) AS uuid);
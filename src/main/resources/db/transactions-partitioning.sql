@@ -0,0 +1,58 @@
+-- One-off migration: turn transactions into a table range-partitioned by month on created_at
+-- (PostgreSQL 12+). Run after sequence-ids.sql and transaction-code-uuid.sql, in a maintenance
+-- window with the application stopped, then start it with routing.partitioning.enabled=true so
+-- TransactionPartitionManager keeps upcoming partitions created and applies retention.
+--
+-- Partition keys must be part of every unique index, so the primary key becomes (id, created_at)
+-- and code is unique together with created_at. After this migration the database no longer
+-- guarantees that a code is unique across created_at values: global code uniqueness depends on
+-- TransactionCodeGenerator (UUIDv7 with a distinct routing.transaction-code.node-id per
+-- instance), as id uniqueness depends on transactions_seq.
+--
+-- For daily partitions (routing.partitioning.interval=daily) replace 'month' / 'YYYY_MM' below
+-- with 'day' / 'YYYY_MM_DD'. For very large tables copy the rows in created_at ranges instead of
+-- the single INSERT ... SELECT.
+
+BEGIN;
+
+ALTER TABLE transactions RENAME TO transactions_unpartitioned;
+-- From db/transaction-code-unique.sql; the name stays with the old table
+ALTER INDEX IF EXISTS uk_transactions_code RENAME TO uk_transactions_unpartitioned_code;
+
+UPDATE transactions_unpartitioned SET created_at = COALESCE(completed_at, now()) WHERE created_at IS NULL;
+
+CREATE TABLE transactions (LIKE transactions_unpartitioned INCLUDING DEFAULTS) PARTITION BY RANGE (created_at);
+ALTER TABLE transactions ALTER COLUMN created_at SET NOT NULL;
+ALTER TABLE transactions ADD PRIMARY KEY (id, created_at);
+-- A unique index rather than a constraint: ddl-auto update drops and re-adds a constraint of
+-- this name on every startup, which would rebuild it on each partition
+CREATE UNIQUE INDEX uk_transactions_code_created ON transactions (code, created_at);
+CREATE INDEX idx_transactions_biller_created ON transactions (biller_id, created_at);
+
+-- Rows outside every partition (e.g. if partition maintenance fell behind)
+CREATE TABLE transactions_default PARTITION OF transactions DEFAULT;
+
+-- One partition per month from the oldest row up to three months ahead
+DO $$
+DECLARE
+    period_start date;
+BEGIN
+    FOR period_start IN
+        SELECT generate_series(
+                       date_trunc('month', COALESCE((SELECT min(created_at) FROM transactions_unpartitioned), now())),
+                       date_trunc('month', now()) + interval '3 months',
+                       interval '1 month')::date
+    LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF transactions FOR VALUES FROM (%L) TO (%L)',
+                       'transactions_p' || to_char(period_start, 'YYYY_MM'), period_start, (period_start + interval '1 month')::date);
+    END LOOP;
+END $$;
+
+INSERT INTO transactions SELECT * FROM transactions_unpartitioned;
+
+COMMIT;
+
+ANALYZE transactions;
+
+-- After checking the row counts match:
+-- DROP TABLE transactions_unpartitioned;
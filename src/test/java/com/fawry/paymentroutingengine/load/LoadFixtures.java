@@ -0,0 +1,121 @@
+package com.fawry.paymentroutingengine.load;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Generates data.sql-style fixtures at scale: billers, gateways with availability
+ * windows, and a history of completed transactions spread over the last days.
+ * Deterministic for a given seed so runs are comparable.
+ */
+@Slf4j
+class LoadFixtures {
+
+    private static final String[] DAYS = {"MON", "TUE", "WED", "THU", "FRI", "SAT", "SUN"};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Random random;
+
+    LoadFixtures(JdbcTemplate jdbcTemplate, long seed) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.random = new Random(seed);
+    }
+
+    List<String> seedBillers(int count) {
+        List<Object[]> rows = new ArrayList<>(count);
+        List<String> codes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String code = String.format("BILL_%05d", i);
+            codes.add(code);
+            rows.add(new Object[]{code, "Load Biller " + i, "biller" + i + "@load.test"});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO biller (code, name, email, created_at, updated_at) " +
+                "VALUES (?, ?, ?, now(), now())", rows);
+        return codes;
+    }
+
+    /**
+     * Gateways are 40% instant; 60% open 24/7, the rest on a daytime window every day.
+     * Daily limits are high enough that quota rarely runs out during a run.
+     */
+    void seedGateways(int count) {
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[]{
+                    String.format("GW_%04d", i),
+                    "Load Gateway " + i,
+                    BigDecimal.valueOf(random.nextInt(1_000), 2),
+                    BigDecimal.valueOf(5_000 + random.nextInt(995_000)),
+                    BigDecimal.valueOf(random.nextInt(500), 2),
+                    BigDecimal.valueOf(50 + random.nextInt(250), 4),
+                    BigDecimal.valueOf(50_000_000L + random.nextInt(50_000_000)),
+                    random.nextInt(10) < 4 ? BigDecimal.ZERO : BigDecimal.valueOf(60 + random.nextInt(86_400))
+            });
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO gate_way (code, name, min_transaction, max_transaction, " +
+                "commission_fixed, commission_amount, daily_limit, processing_time, is_active, created_at, updated_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, true, now(), now())", rows);
+
+        List<Object[]> availability = new ArrayList<>();
+        for (Long gatewayId : gatewayIds()) {
+            boolean allDay = random.nextInt(10) < 6;
+            for (String day : DAYS) {
+                availability.add(allDay
+                        ? new Object[]{gatewayId, day, null, null, true}
+                        : new Object[]{gatewayId, day, LocalTime.of(6, 0), LocalTime.of(23, 0), false});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO gateway_availability (id, gateway_id, day_week, start_time, end_time, " +
+                "is_24_7, created_at, updated_at) VALUES (nextval('gateway_availability_seq'), ?, ?, ?, ?, ?, now(), now())", availability);
+    }
+
+    void seedTransactionHistory(int count, int days) {
+        List<Long> billerIds = jdbcTemplate.queryForList("SELECT id FROM biller", Long.class);
+        List<Long> gatewayIds = gatewayIds();
+        LocalDateTime now = LocalDateTime.now();
+
+        List<Object[]> rows = new ArrayList<>(Math.min(count, 5_000));
+        for (int i = 0; i < count; i++) {
+            LocalDateTime createdAt = now.minusMinutes(random.nextInt(Math.max(days, 1) * 24 * 60));
+            BigDecimal amount = BigDecimal.valueOf(1_000 + random.nextInt(400_000), 2);
+            rows.add(new Object[]{
+                    UUID.randomUUID(),
+                    billerIds.get(random.nextInt(billerIds.size())),
+                    gatewayIds.get(random.nextInt(gatewayIds.size())),
+                    amount,
+                    amount.multiply(new BigDecimal("0.015")).setScale(2, RoundingMode.HALF_UP),
+                    random.nextBoolean() ? "INSTANT" : "CAN_WAIT",
+                    Timestamp.valueOf(createdAt),
+                    Timestamp.valueOf(createdAt)
+            });
+            if (rows.size() == 5_000) {
+                insertTransactions(rows);
+                rows.clear();
+            }
+        }
+        if (!rows.isEmpty()) {
+            insertTransactions(rows);
+        }
+        log.info("Seeded {} historical transactions over {} days", count, days);
+    }
+
+    private void insertTransactions(List<Object[]> rows) {
+        jdbcTemplate.batchUpdate("INSERT INTO transactions (id, code, biller_id, gateway_id, amount, commission, " +
+                "urgency, status, processing_time, is_split, created_at, completed_at) " +
+                "VALUES (nextval('transactions_seq'), ?, ?, ?, ?, ?, ?, 'COMPLETED', '0 seconds', false, ?, ?)", rows);
+    }
+
+    private List<Long> gatewayIds() {
+        return jdbcTemplate.queryForList("SELECT id FROM gate_way ORDER BY id", Long.class);
+    }
+}
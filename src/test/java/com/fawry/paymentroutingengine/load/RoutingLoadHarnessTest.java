@@ -0,0 +1,391 @@
+package com.fawry.paymentroutingengine.load;
+
+import com.fawry.paymentroutingengine.service.RoutingSnapshotService;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ActiveProfilesResolver;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * End-to-end load harness: boots the full application against in-process H2 in
+ * PostgreSQL mode, seeds fixtures at scale and drives the HTTP API with a
+ * configurable request mix and concurrency.
+ *
+ * Reports throughput, latency percentiles per endpoint, SQL statements per
+ * request (Hibernate statistics, measured in a sequential probe per endpoint so
+ * statements are not mixed across endpoints) and heap and thread usage during
+ * the measured run. The report is logged and written to target/load-report.txt.
+ * Requests that fail below HTTP (refused, reset, timed out) are counted as
+ * transport errors per endpoint instead of ending the run.
+ *
+ * Excluded from the normal build; run with {@code mvn -Ploadtest test}.
+ * Settings are the {@code load.*} properties in application-loadtest.yml;
+ * {@code -Dload.profiles=virtual} adds profiles, e.g. to compare the
+ * virtual-thread mode (Java 21+) against the default thread model.
+ */
+@Slf4j
+@Tag("load")
+@ActiveProfiles(resolver = RoutingLoadHarnessTest.LoadProfiles.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class RoutingLoadHarnessTest {
+
+    enum Endpoint {
+        RECOMMEND("recommend"),
+        TRANSACTIONS("transactions"),
+        SUMMARY("summary");
+
+        private final String key;
+
+        Endpoint(String key) {
+            this.key = key;
+        }
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private RoutingSnapshotService routingSnapshotService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private Environment environment;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private List<String> billerCodes;
+
+    @Test
+    void runLoad() throws Exception {
+        int concurrency = setting("concurrency", 16);
+        int warmupRequests = setting("warmup-requests", 2_000);
+        int requests = setting("requests", 20_000);
+        int probeRequests = setting("probe-requests", 200);
+        Map<Endpoint, Integer> mix = parseMix(environment.getProperty("load.mix", "recommend=80,transactions=10,summary=10"));
+
+        long seedStart = System.nanoTime();
+        LoadFixtures fixtures = new LoadFixtures(jdbcTemplate, 42);
+        billerCodes = fixtures.seedBillers(setting("billers", 200));
+        fixtures.seedGateways(setting("gateways", 50));
+        fixtures.seedTransactionHistory(setting("history-transactions", 50_000), setting("history-days", 30));
+        routingSnapshotService.refresh();
+        log.info("Fixtures seeded in {} ms", (System.nanoTime() - seedStart) / 1_000_000);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+
+        Map<Endpoint, Double> statementsPerRequest = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint : Endpoint.values()) {
+            if (mix.getOrDefault(endpoint, 0) == 0) {
+                continue;
+            }
+            long before = statistics.getPrepareStatementCount();
+            for (int i = 0; i < probeRequests; i++) {
+                try {
+                    call(endpoint);
+                } catch (IOException ex) {
+                    log.warn("Probe request to {} failed: {}", endpoint.key, ex.toString());
+                }
+            }
+            statementsPerRequest.put(endpoint,
+                    (statistics.getPrepareStatementCount() - before) / (double) probeRequests);
+        }
+
+        run(mix, concurrency, warmupRequests);
+        JvmUsage.reset();
+        RunResult result = run(mix, concurrency, requests);
+        JvmUsage jvm = JvmUsage.sample();
+
+        String report = report(result, statementsPerRequest, concurrency, mix, jvm);
+        log.info("\n{}", report);
+        Files.writeString(Path.of("target", "load-report.txt"), report);
+
+        assertThat(result.completed()).isEqualTo(requests);
+    }
+
+    private RunResult run(Map<Endpoint, Integer> mix, int concurrency, int requests) throws Exception {
+        Endpoint[] weighted = weighted(mix);
+        AtomicInteger remaining = new AtomicInteger(requests);
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+
+        long start = System.nanoTime();
+        List<Future<Map<Endpoint, Samples>>> futures = new ArrayList<>();
+        for (int w = 0; w < concurrency; w++) {
+            futures.add(workers.submit(() -> {
+                Map<Endpoint, Samples> samples = new EnumMap<>(Endpoint.class);
+                while (remaining.getAndDecrement() > 0) {
+                    Endpoint endpoint = weighted[ThreadLocalRandom.current().nextInt(weighted.length)];
+                    Samples endpointSamples = samples.computeIfAbsent(endpoint, e -> new Samples());
+                    long t0 = System.nanoTime();
+                    try {
+                        int status = call(endpoint);
+                        endpointSamples.record(System.nanoTime() - t0, status);
+                    } catch (IOException ex) {
+                        endpointSamples.recordTransportError(System.nanoTime() - t0, ex);
+                    }
+                }
+                return samples;
+            }));
+        }
+
+        Map<Endpoint, Samples> merged = new EnumMap<>(Endpoint.class);
+        for (Future<Map<Endpoint, Samples>> future : futures) {
+            future.get().forEach((endpoint, samples) ->
+                    merged.computeIfAbsent(endpoint, e -> new Samples()).addAll(samples));
+        }
+        long elapsed = System.nanoTime() - start;
+        workers.shutdown();
+        return new RunResult(merged, elapsed);
+    }
+
+    private int call(Endpoint endpoint) throws IOException, InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String billerCode = billerCodes.get(random.nextInt(billerCodes.size()));
+        String base = "http://localhost:" + port;
+        LocalDate today = LocalDate.now();
+
+        HttpRequest request = switch (endpoint) {
+            case RECOMMEND -> HttpRequest.newBuilder(URI.create(base + "/api/payment/recommend"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(String.format(
+                            "{\"billerCode\":\"%s\",\"amount\":%d.%02d,\"urgency\":\"%s\"}",
+                            billerCode, 10 + random.nextInt(4_000), random.nextInt(100),
+                            random.nextBoolean() ? "INSTANT" : "CAN_WAIT")))
+                    .build();
+            case TRANSACTIONS -> HttpRequest.newBuilder(URI.create(
+                            base + "/api/billers/" + billerCode + "/transactions?date=" + today))
+                    .GET().build();
+            case SUMMARY -> HttpRequest.newBuilder(URI.create(
+                            base + "/api/billers/" + billerCode + "/transactions/summary?startDate="
+                                    + today.minusDays(30) + "&endDate=" + today))
+                    .GET().build();
+        };
+
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private String report(RunResult result, Map<Endpoint, Double> statementsPerRequest,
+                          int concurrency, Map<Endpoint, Integer> mix, JvmUsage jvm) {
+        double seconds = result.getElapsedNanos() / 1e9;
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("Load run: %d requests, concurrency %d, mix %s, %.1f s, %.0f req/s%n",
+                result.completed(), concurrency, mix, seconds, result.completed() / seconds));
+        // Spring Boot ignores spring.threads.virtual.enabled below Java 21
+        boolean virtualThreads = Runtime.version().feature() >= 21
+                && environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false);
+        out.append(String.format("Java %d, profiles %s, virtual threads %s%n",
+                Runtime.version().feature(), Arrays.toString(environment.getActiveProfiles()), virtualThreads));
+        out.append(String.format("JVM: heap peak %.0f MB, heap after run %.0f MB, platform threads peak %d, live %d%n",
+                jvm.getHeapPeakBytes() / 1048576.0, jvm.getHeapUsedBytes() / 1048576.0,
+                jvm.getPeakThreads(), jvm.getLiveThreads()));
+        out.append(String.format("%-13s %8s %8s %9s %9s %9s %9s %9s %9s %10s%n",
+                "endpoint", "requests", "non-2xx", "transport", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms", "SQL/req"));
+        for (Endpoint endpoint : Endpoint.values()) {
+            Samples samples = result.getSamples().get(endpoint);
+            if (samples == null) {
+                continue;
+            }
+            long[] sorted = samples.sorted();
+            out.append(String.format("%-13s %8d %8d %9d %9.0f %9.2f %9.2f %9.2f %9.2f %10.1f%n",
+                    endpoint.key, sorted.length, samples.failures, samples.transportErrors, sorted.length / seconds,
+                    percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99),
+                    sorted[sorted.length - 1] / 1e6,
+                    statementsPerRequest.getOrDefault(endpoint, Double.NaN)));
+        }
+        for (Endpoint endpoint : Endpoint.values()) {
+            Samples samples = result.getSamples().get(endpoint);
+            if (samples != null && samples.transportErrors > 0) {
+                out.append(String.format("%s transport errors: %d, first: %s%n",
+                        endpoint.key, samples.transportErrors, samples.firstTransportError));
+            }
+        }
+        return out.toString();
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+
+    private static Map<Endpoint, Integer> parseMix(String mix) {
+        Map<Endpoint, Integer> weights = new EnumMap<>(Endpoint.class);
+        for (String part : mix.split(",")) {
+            String[] keyValue = part.trim().split("=");
+            Endpoint endpoint = Arrays.stream(Endpoint.values())
+                    .filter(e -> e.key.equalsIgnoreCase(keyValue[0].trim()))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown endpoint in load.mix: " + keyValue[0]));
+            weights.put(endpoint, Integer.parseInt(keyValue[1].trim()));
+        }
+        return weights;
+    }
+
+    private static Endpoint[] weighted(Map<Endpoint, Integer> mix) {
+        List<Endpoint> slots = new ArrayList<>();
+        mix.forEach((endpoint, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                slots.add(endpoint);
+            }
+        });
+        return slots.toArray(new Endpoint[0]);
+    }
+
+    private int setting(String name, int defaultValue) {
+        return environment.getProperty("load." + name, Integer.class, defaultValue);
+    }
+
+    private static final class Samples {
+        private long[] latencies = new long[1024];
+        private int size;
+        // Non-2xx responses, and requests that got no response at all
+        private int failures;
+        private int transportErrors;
+        private String firstTransportError;
+
+        void record(long nanos, int status) {
+            add(nanos);
+            if (status < 200 || status >= 300) {
+                failures++;
+            }
+        }
+
+        void recordTransportError(long nanos, IOException error) {
+            add(nanos);
+            if (transportErrors++ == 0) {
+                firstTransportError = error.toString();
+            }
+        }
+
+        void addAll(Samples other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.latencies[i]);
+            }
+            failures += other.failures;
+            if (transportErrors == 0) {
+                firstTransportError = other.firstTransportError;
+            }
+            transportErrors += other.transportErrors;
+        }
+
+        private void add(long nanos) {
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+            }
+            latencies[size++] = nanos;
+        }
+
+        long[] sorted() {
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    /**
+     * Adds the profiles listed in {@code load.profiles} to the loadtest profile.
+     */
+    static class LoadProfiles implements ActiveProfilesResolver {
+
+        @Override
+        public String[] resolve(Class<?> testClass) {
+            List<String> profiles = new ArrayList<>(List.of("loadtest"));
+            for (String profile : System.getProperty("load.profiles", "").split(",")) {
+                if (!profile.isBlank()) {
+                    profiles.add(profile.trim());
+                }
+            }
+            return profiles.toArray(new String[0]);
+        }
+    }
+
+    /**
+     * Heap and thread usage of this JVM (the server runs in-process). Peaks are
+     * since the last {@link #reset()}; virtual threads are not counted as threads.
+     */
+    @Value
+    private static class JvmUsage {
+        long heapPeakBytes;
+        long heapUsedBytes;
+        int peakThreads;
+        int liveThreads;
+
+        static void reset() {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    pool.resetPeakUsage();
+                }
+            }
+            ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+        }
+
+        static JvmUsage sample() {
+            long peak = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    peak += pool.getPeakUsage().getUsed();
+                }
+            }
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            return new JvmUsage(peak, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(),
+                    threads.getPeakThreadCount(), threads.getThreadCount());
+        }
+    }
+
+    @Value
+    private static class RunResult {
+        Map<Endpoint, Samples> samples;
+        long elapsedNanos;
+
+        int completed() {
+            int total = 0;
+            for (Samples s : samples.values()) {
+                total += s.size;
+            }
+            return total;
+        }
+    }
+}
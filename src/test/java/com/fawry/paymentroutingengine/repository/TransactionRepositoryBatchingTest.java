@@ -0,0 +1,87 @@
+package com.fawry.paymentroutingengine.repository;
+
+import com.fawry.paymentroutingengine.constant.Status;
+import com.fawry.paymentroutingengine.constant.Urgency;
+import com.fawry.paymentroutingengine.entity.Transaction;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Transactions use a pooled sequence, so saveAll is sent as JDBC batches
+ * instead of one insert (and one identity round trip) per row.
+ */
+@DataJpaTest(properties = {
+        "spring.sql.init.mode=never",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class TransactionRepositoryBatchingTest {
+
+    private static final int ROWS = 1_000;
+    private static final int BATCH_SIZE = 50;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void resetStatistics() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void saveAllOfThousandTransactionsIsBatched() {
+        List<Transaction> transactions = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            transactions.add(transaction(i));
+        }
+
+        transactionRepository.saveAll(transactions);
+        long batches = ROWS / BATCH_SIZE;
+        // One sequence call per block of 50 ids (the allocation size matches the batch size)
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(batches);
+        entityManager.flush();
+
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(ROWS);
+        // One insert statement, prepared once and executed as every batch
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(batches + 1);
+        assertThat(transactions).allSatisfy(transaction -> assertThat(transaction.getId()).isNotNull());
+        assertThat(transactions.stream().map(Transaction::getId).distinct().count()).isEqualTo(ROWS);
+    }
+
+    private static Transaction transaction(int i) {
+        Transaction transaction = new Transaction();
+        transaction.setCode(UUID.randomUUID());
+        transaction.setBillerId(1);
+        transaction.setGatewayId(1 + i % 3);
+        transaction.setAmount(BigDecimal.valueOf(100 + i, 2));
+        transaction.setCommission(BigDecimal.ONE);
+        transaction.setUrgency(i % 2 == 0 ? Urgency.INSTANT : Urgency.CAN_WAIT);
+        transaction.setStatus(Status.COMPLETED);
+        transaction.setProcessingTime("0 seconds");
+        transaction.setCompletedAt(LocalDateTime.now());
+        return transaction;
+    }
+}
@@ -0,0 +1,71 @@
+package com.fawry.paymentroutingengine.routing;
+
+import com.fawry.paymentroutingengine.constant.Urgency;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The range index must find exactly the gateways a linear scan finds, with the
+ * limits inclusive and a max of 0 meaning unlimited, most of all at the limits.
+ */
+class AmountRangeIndexTest {
+
+    @ParameterizedTest
+    @ValueSource(longs = {5L, 17L, 256L, 31_337L, 1_000_003L})
+    void candidatesMatchLinearScan(long seed) {
+        Random random = new Random(seed);
+        List<RoutingGateway> gateways = RandomFleet.gateways(50 + random.nextInt(100), random);
+        Predicate<RoutingGateway> instant = RoutingGateway::isInstant;
+        AmountRangeIndex all = new AmountRangeIndex(gateways, gateway -> true);
+        AmountRangeIndex instantOnly = new AmountRangeIndex(gateways, instant);
+
+        for (long amount : RandomFleet.amounts(gateways, 300, random)) {
+            BigDecimal amountMajor = BigDecimal.valueOf(amount, 2);
+            List<RoutingGateway> fitting = gateways.stream()
+                    .filter(gateway -> fitsByTerms(gateway, amountMajor))
+                    .toList();
+
+            assertThat(gateways.stream().filter(gateway -> gateway.fitsAmount(amount)).toList())
+                    .as("seed %d, amount %d", seed, amount)
+                    .isEqualTo(fitting);
+            assertThat(all.candidates(amount)).as("seed %d, amount %d", seed, amount).isEqualTo(fitting);
+            assertThat(instantOnly.candidates(amount)).as("seed %d, instant, amount %d", seed, amount)
+                    .isEqualTo(fitting.stream().filter(instant).toList());
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {8L, 64L, 999L})
+    void indexedRankingMatchesLinearPassAtTheLimits(long seed) {
+        Random random = new Random(seed);
+        List<RoutingGateway> gateways = RandomFleet.gateways(30 + random.nextInt(60), random);
+        RoutingSnapshot snapshot = new RoutingSnapshot(1L, gateways, LocalDateTime.now());
+        // Every gateway ranks, so a limit off by one piastre shows up as a missing or extra gateway
+        GatewayRanker ranker = new GatewayRanker(gateways.size());
+        GatewayRanker.QuotaView unlimited = gateway -> Long.MAX_VALUE;
+        int[] minutes = RandomFleet.minutes(gateways, 5, random);
+
+        for (long amount : RandomFleet.amounts(gateways, 0, random)) {
+            LocalDateTime now = RandomFleet.at(minutes[random.nextInt(minutes.length)]);
+            for (Urgency urgency : new Urgency[]{Urgency.INSTANT, Urgency.CAN_WAIT}) {
+                assertThat(RandomFleet.ranking(ranker.rank(snapshot, amount, urgency, now, unlimited)))
+                        .as("seed %d, amount %d, %s at %s", seed, amount, urgency, now)
+                        .isEqualTo(RandomFleet.ranking(ranker.rank(gateways, amount, urgency, now, unlimited)));
+            }
+        }
+    }
+
+    // The limits as configured on the gateway: inclusive, max 0 for no upper limit
+    private static boolean fitsByTerms(RoutingGateway gateway, BigDecimal amount) {
+        return amount.compareTo(gateway.getMinTransaction()) >= 0
+                && (gateway.getMaxTransaction().signum() == 0 || amount.compareTo(gateway.getMaxTransaction()) <= 0);
+    }
+}
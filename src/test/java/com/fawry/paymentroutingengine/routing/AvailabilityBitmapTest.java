@@ -0,0 +1,126 @@
+package com.fawry.paymentroutingengine.routing;
+
+import com.fawry.paymentroutingengine.constant.DayType;
+import com.fawry.paymentroutingengine.entity.GatewayAvailability;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A window covers [start, end) at minute resolution, one whose end is not after
+ * its start runs into the next day (SUN into MON), and windows of the same day add up.
+ */
+class AvailabilityBitmapTest {
+
+    // A Monday
+    private static final LocalDate WEEK = LocalDate.of(2024, 1, 1);
+
+    @Test
+    void windowCoversStartUpToButExcludingItsEndMinute() {
+        AvailabilityBitmap bitmap = AvailabilityBitmap.compile(List.of(window(DayType.TUE, "09:00", "17:00")));
+
+        assertThat(bitmap.isAvailable(at(DayType.TUE, "08:59"))).isFalse();
+        assertThat(bitmap.isAvailable(at(DayType.TUE, "09:00"))).isTrue();
+        assertThat(bitmap.isAvailable(at(DayType.TUE, "16:59").withSecond(59).withNano(999_999_999))).isTrue();
+        assertThat(bitmap.isAvailable(at(DayType.TUE, "17:00"))).isFalse();
+        assertThat(bitmap.isAvailable(at(DayType.WED, "10:00"))).isFalse();
+    }
+
+    @Test
+    void windowEndingBeforeItsStartCrossesMidnight() {
+        AvailabilityBitmap bitmap = AvailabilityBitmap.compile(List.of(window(DayType.FRI, "22:00", "02:00")));
+
+        assertThat(bitmap.isAvailable(at(DayType.FRI, "21:59"))).isFalse();
+        assertThat(bitmap.isAvailable(at(DayType.FRI, "22:00"))).isTrue();
+        assertThat(bitmap.isAvailable(at(DayType.FRI, "23:59"))).isTrue();
+        assertThat(bitmap.isAvailable(at(DayType.SAT, "00:00"))).isTrue();
+        assertThat(bitmap.isAvailable(at(DayType.SAT, "01:59"))).isTrue();
+        assertThat(bitmap.isAvailable(at(DayType.SAT, "02:00"))).isFalse();
+        // Only the night after Friday
+        assertThat(bitmap.isAvailable(at(DayType.FRI, "01:00"))).isFalse();
+        assertThat(bitmap.isAvailable(at(DayType.SAT, "22:00"))).isFalse();
+    }
+
+    @Test
+    void sundayNightContinuesOnMonday() {
+        AvailabilityBitmap bitmap = AvailabilityBitmap.compile(List.of(window(DayType.SUN, "23:00", "01:00")));
+
+        assertThat(bitmap.isAvailable(at(DayType.SUN, "22:59"))).isFalse();
+        assertThat(bitmap.isAvailable(at(DayType.SUN, "23:59"))).isTrue();
+        assertThat(bitmap.isAvailable(at(DayType.MON, "00:00"))).isTrue();
+        assertThat(bitmap.isAvailable(0)).isTrue();
+        assertThat(bitmap.isAvailable(at(DayType.MON, "00:59"))).isTrue();
+        assertThat(bitmap.isAvailable(at(DayType.MON, "01:00"))).isFalse();
+        assertThat(bitmap.isAvailable(at(DayType.MON, "23:30"))).isFalse();
+        // Closes Monday 01:00, opens Sunday 23:00; no change at the week boundary
+        assertThat(AvailabilityBitmap.changeMinutes(List.of(bitmap)))
+                .containsExactly(60, 6 * AvailabilityBitmap.MINUTES_PER_DAY + 23 * 60);
+    }
+
+    @Test
+    void windowsOfTheSameDayAddUp() {
+        AvailabilityBitmap bitmap = AvailabilityBitmap.compile(List.of(
+                window(DayType.WED, "09:00", "12:00"),
+                window(DayType.WED, "14:00", "17:00"),
+                window(DayType.WED, "20:00", "01:00")));
+
+        assertThat(bitmap.isAvailable(at(DayType.WED, "10:00"))).isTrue();
+        assertThat(bitmap.isAvailable(at(DayType.WED, "12:00"))).isFalse();
+        assertThat(bitmap.isAvailable(at(DayType.WED, "13:59"))).isFalse();
+        assertThat(bitmap.isAvailable(at(DayType.WED, "14:00"))).isTrue();
+        assertThat(bitmap.isAvailable(at(DayType.WED, "17:00"))).isFalse();
+        assertThat(bitmap.isAvailable(at(DayType.WED, "20:00"))).isTrue();
+        assertThat(bitmap.isAvailable(at(DayType.THU, "00:30"))).isTrue();
+        assertThat(bitmap.isAvailable(at(DayType.THU, "10:00"))).isFalse();
+    }
+
+    @Test
+    void windowStartingAtItsEndCoversTwentyFourHours() {
+        AvailabilityBitmap fromMorning = AvailabilityBitmap.compile(List.of(window(DayType.THU, "08:00", "08:00")));
+
+        assertThat(fromMorning.isAvailable(at(DayType.THU, "07:59"))).isFalse();
+        assertThat(fromMorning.isAvailable(at(DayType.THU, "08:00"))).isTrue();
+        assertThat(fromMorning.isAvailable(at(DayType.FRI, "07:59"))).isTrue();
+        assertThat(fromMorning.isAvailable(at(DayType.FRI, "08:00"))).isFalse();
+
+        AvailabilityBitmap midnight = AvailabilityBitmap.compile(List.of(window(DayType.THU, "00:00", "00:00")));
+        assertThat(midnight.isAvailable(at(DayType.WED, "23:59"))).isFalse();
+        assertThat(midnight.isAvailable(at(DayType.THU, "00:00"))).isTrue();
+        assertThat(midnight.isAvailable(at(DayType.THU, "23:59"))).isTrue();
+        assertThat(midnight.isAvailable(at(DayType.FRI, "00:00"))).isFalse();
+    }
+
+    @Test
+    void allDayRowsAndMissingTimes() {
+        GatewayAvailability allWeek = window(DayType.ALL, null, null);
+        allWeek.setIs24_7(true);
+        GatewayAvailability sunday = window(DayType.SUN, null, null);
+        sunday.setIs24_7(true);
+
+        assertThat(AvailabilityBitmap.changeMinutes(List.of(AvailabilityBitmap.compile(List.of(allWeek))))).isEmpty();
+        AvailabilityBitmap sundayOnly = AvailabilityBitmap.compile(List.of(sunday, window(DayType.MON, null, "10:00")));
+        assertThat(sundayOnly.isAvailable(at(DayType.SUN, "00:00"))).isTrue();
+        assertThat(sundayOnly.isAvailable(AvailabilityBitmap.MINUTES_PER_WEEK - 1)).isTrue();
+        assertThat(sundayOnly.isAvailable(at(DayType.MON, "00:00"))).isFalse();
+        assertThat(AvailabilityBitmap.compile(List.of()).isAvailable(at(DayType.MON, "12:00"))).isFalse();
+    }
+
+    private static LocalDateTime at(DayType day, String time) {
+        return WEEK.plusDays(day.ordinal()).atTime(LocalTime.parse(time));
+    }
+
+    private static GatewayAvailability window(DayType day, String start, String end) {
+        GatewayAvailability availability = new GatewayAvailability();
+        availability.setGatewayId(1L);
+        availability.setDayWeek(day);
+        availability.setStartTime(start != null ? LocalTime.parse(start) : null);
+        availability.setEndTime(end != null ? LocalTime.parse(end) : null);
+        availability.setIs24_7(false);
+        return availability;
+    }
+}
@@ -0,0 +1,87 @@
+package com.fawry.paymentroutingengine.routing;
+
+import com.fawry.paymentroutingengine.constant.Urgency;
+import com.fawry.paymentroutingengine.service.RecommendationCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A cached candidate list must never change a recommendation: across schedule
+ * boundaries, quota that moves with every recorded payment, and configuration
+ * changes, the cached path of {@link GatewayRanker} returns what the linear
+ * pass over the current gateways returns.
+ */
+class CandidateCacheTest {
+
+    @ParameterizedTest
+    @CsvSource({
+            "1, 3, 1",
+            "2, 3, 2",
+            "3, 1, 16",
+            "4, 5, 4",
+            "5, 3, 16",
+    })
+    void cachedRankingMatchesLinearPass(long seed, int topK, int candidateLimit) {
+        Random random = new Random(seed);
+        RecommendationCache cache = new RecommendationCache(true, 10_000, candidateLimit, new SimpleMeterRegistry());
+        GatewayRanker cached = new GatewayRanker(topK, cache);
+        GatewayRanker linear = new GatewayRanker(topK);
+
+        List<RoutingGateway> gateways = RandomFleet.gateways(40 + random.nextInt(40), random);
+        RoutingSnapshot snapshot = new RoutingSnapshot(1L, gateways, LocalDateTime.now());
+        Map<Long, Long> remaining = RandomFleet.quotas(gateways, random);
+        GatewayRanker.QuotaView quota = gateway -> remaining.get(gateway.getId());
+        // Few distinct shapes so most lookups hit
+        long[] shapes = shapes(gateways, random);
+        int[] minutes = RandomFleet.minutes(gateways, 10, random);
+
+        for (int i = 0; i < 5_000; i++) {
+            long amount = shapes[random.nextInt(shapes.length)];
+            LocalDateTime now = RandomFleet.at(minutes[random.nextInt(minutes.length)]);
+            Urgency urgency = random.nextBoolean() ? Urgency.INSTANT : Urgency.CAN_WAIT;
+
+            TopKSelector selected = cached.rank(snapshot, amount, urgency, now, quota);
+            assertThat(RandomFleet.ranking(selected))
+                    .as("seed %d, request %d, snapshot v%d, amount %d, %s at %s",
+                            seed, i, snapshot.getVersion(), amount, urgency, now)
+                    .isEqualTo(RandomFleet.ranking(linear.rank(snapshot.getGateways(), amount, urgency, now, quota)));
+
+            // Recording the payment uses up quota on the chosen gateway; some is released again
+            if (!selected.isEmpty()) {
+                RoutingGateway chosen = selected.getGateway(0);
+                remaining.put(chosen.getId(), remaining.get(chosen.getId()) - amount);
+            }
+            if (random.nextInt(10) == 0) {
+                RoutingGateway released = snapshot.getGateways().get(random.nextInt(snapshot.size()));
+                remaining.put(released.getId(), RandomFleet.quota(random));
+            }
+
+            // Occasional configuration change: same gateway ids, new terms, limits and schedules
+            if (random.nextInt(1_000) == 0) {
+                List<RoutingGateway> changed = RandomFleet.gateways(gateways.size(), random);
+                snapshot = new RoutingSnapshot(snapshot.getVersion() + 1, changed, LocalDateTime.now());
+                shapes = shapes(changed, random);
+                minutes = RandomFleet.minutes(changed, 10, random);
+            }
+        }
+
+        assertThat(cache.stats().hitCount()).isPositive();
+    }
+
+    private static long[] shapes(List<RoutingGateway> gateways, Random random) {
+        long[] amounts = RandomFleet.amounts(gateways, 20, random);
+        long[] shapes = new long[30];
+        for (int i = 0; i < shapes.length; i++) {
+            shapes[i] = amounts[random.nextInt(amounts.length)];
+        }
+        return shapes;
+    }
+}
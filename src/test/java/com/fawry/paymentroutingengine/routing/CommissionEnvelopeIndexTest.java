@@ -0,0 +1,86 @@
+package com.fawry.paymentroutingengine.routing;
+
+import com.fawry.paymentroutingengine.constant.Urgency;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The index path of {@link GatewayRanker} must return what the linear pass over
+ * the same gateways returns, gateway for gateway and in the same order.
+ */
+class CommissionEnvelopeIndexTest {
+
+    @ParameterizedTest
+    @ValueSource(longs = {1L, 7L, 42L, 2024L, 90210L})
+    void cursorHandsOutEveryFittingGatewayOnceCheapestFirst(long seed) {
+        Random random = new Random(seed);
+        List<RoutingGateway> gateways = RandomFleet.gateways(60 + random.nextInt(60), random);
+        CommissionEnvelopeIndex index = CommissionEnvelopeIndex.build(gateways);
+
+        for (long amount : RandomFleet.amounts(gateways, 200, random)) {
+            List<RoutingGateway> expected = gateways.stream()
+                    .filter(gateway -> gateway.fitsAmount(amount))
+                    .sorted(Comparator.comparingLong((RoutingGateway gateway) -> gateway.commissionMinor(amount))
+                            .thenComparingInt(gateways::indexOf))
+                    .toList();
+
+            List<RoutingGateway> actual = new ArrayList<>();
+            CommissionEnvelopeIndex.Cursor cursor = index.cheapestFirst(amount);
+            while (cursor.hasNext()) {
+                long peeked = cursor.peekCommissionMinor();
+                RoutingGateway gateway = cursor.next();
+                assertThat(gateways.get(cursor.position())).isSameAs(gateway);
+                assertThat(cursor.commissionMinor()).isEqualTo(peeked).isEqualTo(gateway.commissionMinor(amount));
+                if (!actual.isEmpty()) {
+                    assertThat(cursor.commissionMinor()).isGreaterThanOrEqualTo(actual.get(actual.size() - 1).commissionMinor(amount));
+                }
+                actual.add(gateway);
+            }
+            // Equal commissions may come out of snapshot order; callers break those ties on the position
+            actual.sort(Comparator.comparingLong((RoutingGateway gateway) -> gateway.commissionMinor(amount))
+                    .thenComparingInt(gateways::indexOf));
+
+            assertThat(actual).as("seed %d, amount %d", seed, amount).isEqualTo(expected);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {3L, 11L, 123L, 4096L, 777_777L})
+    void indexedRankingMatchesLinearPass(long seed) {
+        Random random = new Random(seed);
+        List<RoutingGateway> gateways = RandomFleet.gateways(40 + random.nextInt(80), random);
+        RoutingSnapshot snapshot = new RoutingSnapshot(1L, gateways, LocalDateTime.now());
+        Map<Long, Long> remaining = RandomFleet.quotas(gateways, random);
+        GatewayRanker.QuotaView quota = gateway -> remaining.get(gateway.getId());
+        long[] amounts = RandomFleet.amounts(gateways, 100, random);
+        int[] minutes = RandomFleet.minutes(gateways, 20, random);
+
+        for (int topK : new int[]{1, 3, 5}) {
+            GatewayRanker ranker = new GatewayRanker(topK);
+            for (int i = 0; i < 2_000; i++) {
+                long amount = amounts[random.nextInt(amounts.length)];
+                LocalDateTime now = RandomFleet.at(minutes[random.nextInt(minutes.length)]);
+                Urgency urgency = random.nextBoolean() ? Urgency.INSTANT : Urgency.CAN_WAIT;
+
+                assertThat(RandomFleet.ranking(ranker.rank(snapshot, amount, urgency, now, quota)))
+                        .as("seed %d, k %d, amount %d, %s at %s", seed, topK, amount, urgency, now)
+                        .isEqualTo(RandomFleet.ranking(ranker.rank(gateways, amount, urgency, now, quota)));
+
+                // Quota moves between requests as transactions are recorded and released
+                if (random.nextInt(4) == 0) {
+                    RoutingGateway changed = gateways.get(random.nextInt(gateways.size()));
+                    remaining.put(changed.getId(), RandomFleet.quota(random));
+                }
+            }
+        }
+    }
+}
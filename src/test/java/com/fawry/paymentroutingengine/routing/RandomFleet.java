@@ -0,0 +1,181 @@
+package com.fawry.paymentroutingengine.routing;
+
+import com.fawry.paymentroutingengine.constant.DayType;
+import com.fawry.paymentroutingengine.entity.Gateway;
+import com.fawry.paymentroutingengine.entity.GatewayAvailability;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Seeded gateway fleets for the equivalence tests, skewed towards the cases the
+ * indexes have to get right: shared and inclusive amount limits, unlimited and
+ * empty ranges, parallel and equal commission lines, terms that only BigDecimal
+ * holds exactly, overlapping and overnight schedules and ties on quota.
+ */
+final class RandomFleet {
+
+    static final LocalDateTime MONDAY = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private static final long[] LIMITS_MINOR = {0, 1, 100, 1_000, 5_000, 10_000, 50_000, 100_000, 1_000_000};
+    private static final String[] RATES = {"0", "0.005", "0.01", "0.0125", "0.02", "0.015"};
+    private static final DayType[] DAYS = DayType.values();
+
+    private RandomFleet() {
+    }
+
+    static List<RoutingGateway> gateways(int size, Random random) {
+        List<RoutingGateway> gateways = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Gateway gateway = new Gateway();
+            gateway.setId((long) i + 1);
+            gateway.setCode("GW_" + i);
+            gateway.setName("Gateway " + i);
+
+            long minMinor = random.nextInt(3) == 0 ? random.nextInt(200_000) : LIMITS_MINOR[random.nextInt(LIMITS_MINOR.length)];
+            long maxMinor;
+            int range = random.nextInt(10);
+            if (range < 2) {
+                maxMinor = 0;
+            } else if (range < 3) {
+                // Exactly one amount, or (for a zero minimum) unlimited
+                maxMinor = minMinor;
+            } else if (range < 4) {
+                // Empty range: fits nothing
+                maxMinor = Math.max(minMinor - 1, 1);
+            } else {
+                maxMinor = minMinor + (random.nextBoolean() ? LIMITS_MINOR[random.nextInt(LIMITS_MINOR.length)] : random.nextInt(2_000_000));
+            }
+            gateway.setMinTransaction(BigDecimal.valueOf(minMinor, 2));
+            gateway.setMaxTransaction(BigDecimal.valueOf(maxMinor, 2));
+
+            int terms = random.nextInt(20);
+            if (terms == 0) {
+                // Sub-piastre fee: scored with BigDecimal outside the envelopes
+                gateway.setCommissionFixed(new BigDecimal("1.125"));
+            } else {
+                gateway.setCommissionFixed(BigDecimal.valueOf(random.nextInt(4) * 250L + (random.nextBoolean() ? 0 : random.nextInt(500)), 2));
+            }
+            if (terms == 1) {
+                gateway.setCommissionAmount(new BigDecimal("0.00500000000005"));
+            } else if (random.nextBoolean()) {
+                gateway.setCommissionAmount(new BigDecimal(RATES[random.nextInt(RATES.length)]));
+            } else {
+                gateway.setCommissionAmount(BigDecimal.valueOf(random.nextInt(300), 4));
+            }
+
+            gateway.setDailyLimit(BigDecimal.valueOf(100_000 + random.nextInt(900_000)));
+            gateway.setProcessingTime(random.nextInt(10) < 4 ? BigDecimal.ZERO : BigDecimal.valueOf(60 + random.nextInt(3600)));
+            gateways.add(RoutingGateway.from(gateway, AvailabilityBitmap.compile(schedule(gateway.getId(), random))));
+        }
+        return gateways;
+    }
+
+    /**
+     * Random amounts plus, for every gateway, its limits and the piastre either side.
+     */
+    static long[] amounts(List<RoutingGateway> gateways, int randomCount, Random random) {
+        List<Long> amounts = new ArrayList<>();
+        amounts.add(0L);
+        amounts.add(1L);
+        for (RoutingGateway gateway : gateways) {
+            amounts.add(gateway.getLowestAmountMinor() - 1);
+            amounts.add(gateway.getLowestAmountMinor());
+            amounts.add(gateway.getMaxTransactionMinor());
+            amounts.add(gateway.getMaxTransactionMinor() + 1);
+        }
+        for (int i = 0; i < randomCount; i++) {
+            amounts.add((long) random.nextInt(3_000_000));
+        }
+        return amounts.stream().mapToLong(Long::longValue).filter(amount -> amount >= 0).toArray();
+    }
+
+    /**
+     * Random minutes of the week plus, for every schedule boundary, the minute before it and the minute itself.
+     */
+    static int[] minutes(List<RoutingGateway> gateways, int randomCount, Random random) {
+        int[] changes = AvailabilityBitmap.changeMinutes(gateways.stream().map(RoutingGateway::getAvailability).toList());
+        List<Integer> minutes = new ArrayList<>();
+        for (int change : changes) {
+            minutes.add(Math.floorMod(change - 1, AvailabilityBitmap.MINUTES_PER_WEEK));
+            minutes.add(change);
+        }
+        for (int i = 0; i < randomCount; i++) {
+            minutes.add(random.nextInt(AvailabilityBitmap.MINUTES_PER_WEEK));
+        }
+        return minutes.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Remaining quota per gateway id, from a handful of values so that ties on quota occur.
+     */
+    static Map<Long, Long> quotas(List<RoutingGateway> gateways, Random random) {
+        Map<Long, Long> remaining = new HashMap<>();
+        for (RoutingGateway gateway : gateways) {
+            remaining.put(gateway.getId(), quota(random));
+        }
+        return remaining;
+    }
+
+    static long quota(Random random) {
+        int kind = random.nextInt(6);
+        if (kind == 0) {
+            return 0;
+        }
+        if (kind == 1) {
+            return random.nextInt(200_000);
+        }
+        return kind * 1_000_000L;
+    }
+
+    /**
+     * Gateway, commission and remaining quota per rank, for comparing two rankings.
+     */
+    static List<String> ranking(TopKSelector selected) {
+        List<String> ranks = new ArrayList<>(selected.size());
+        for (int rank = 0; rank < selected.size(); rank++) {
+            ranks.add(selected.getGateway(rank).getCode() + " commission=" + selected.getCommissionMinor(rank)
+                    + " quota=" + selected.getRemainingQuotaMinor(rank));
+        }
+        return ranks;
+    }
+
+    static LocalDateTime at(int minuteOfWeek) {
+        return MONDAY.plusMinutes(minuteOfWeek);
+    }
+
+    private static List<GatewayAvailability> schedule(Long gatewayId, Random random) {
+        List<GatewayAvailability> rows = new ArrayList<>();
+        int kind = random.nextInt(10);
+        if (kind < 4) {
+            rows.add(row(gatewayId, DayType.ALL, null, null, true));
+        } else if (kind < 9) {
+            int windows = 1 + random.nextInt(3);
+            for (int i = 0; i < windows; i++) {
+                DayType day = DAYS[random.nextInt(DAYS.length)];
+                LocalTime start = LocalTime.of(random.nextInt(24), random.nextInt(4) * 15);
+                // End before start crosses midnight
+                LocalTime end = LocalTime.of(random.nextInt(24), random.nextInt(4) * 15);
+                rows.add(row(gatewayId, day, start, end, false));
+            }
+        }
+        // Otherwise no schedule: never open
+        return rows;
+    }
+
+    private static GatewayAvailability row(Long gatewayId, DayType day, LocalTime start, LocalTime end, boolean allDay) {
+        GatewayAvailability availability = new GatewayAvailability();
+        availability.setGatewayId(gatewayId);
+        availability.setDayWeek(day);
+        availability.setStartTime(start);
+        availability.setEndTime(end);
+        availability.setIs24_7(allDay);
+        return availability;
+    }
+}
@@ -0,0 +1,174 @@
+package com.fawry.paymentroutingengine.routing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * With an unlimited budget the optimizer must find a plan exactly when one exists,
+ * and one as cheap as the best found by trying every vector of part counts.
+ */
+class SplitOptimizerTest {
+
+    private static final int MAX_PARTS = 4;
+
+    @ParameterizedTest
+    @ValueSource(longs = {3L, 41L, 512L, 7_919L, 65_537L})
+    void cheapestPlanMatchesExhaustiveSearch(long seed) {
+        Random random = new Random(seed);
+        SplitOptimizer optimizer = new SplitOptimizer(MAX_PARTS, 64, Long.MAX_VALUE, 60_000);
+
+        for (int round = 0; round < 40; round++) {
+            List<SplitCandidate> candidates = new ArrayList<>();
+            for (RoutingGateway gateway : RandomFleet.gateways(2 + random.nextInt(5), random)) {
+                candidates.add(new SplitCandidate(gateway, RandomFleet.quota(random)));
+            }
+            long largest = candidates.stream()
+                    .mapToLong(candidate -> Math.min(candidate.getGateway().getHighestAmountMinor(), 5_000_000))
+                    .max().orElse(1);
+
+            for (int i = 0; i < 10; i++) {
+                long amount = 1 + (long) (random.nextDouble() * MAX_PARTS * largest);
+                SplitPlan plan = optimizer.optimize(amount, candidates);
+                double best = exhaustive(amount, candidates);
+
+                String context = "seed " + seed + ", round " + round + ", amount " + amount;
+                assertThat(plan.isOptimal()).as(context).isTrue();
+                assertThat(plan.isFeasible()).as(context).isEqualTo(best < Double.POSITIVE_INFINITY);
+                if (plan.isFeasible()) {
+                    assertValid(plan, amount, candidates, context);
+                    assertThat(cost(plan)).as(context).isCloseTo(best, within(1e-6 * Math.max(1, best)));
+                }
+            }
+        }
+    }
+
+    @Test
+    void amountBeyondTheLargestPartsIsRejectedWithoutSearching() {
+        List<SplitCandidate> candidates = new ArrayList<>();
+        for (RoutingGateway gateway : RandomFleet.gateways(20, new Random(11))) {
+            candidates.add(new SplitCandidate(gateway, 10_000_000));
+        }
+        // Far more than MAX_PARTS parts of at most 1M each (or 10M of quota) can carry
+        SplitPlan plan = new SplitOptimizer(MAX_PARTS, 64, Long.MAX_VALUE, 60_000).optimize(1_000_000_000L, candidates);
+
+        assertThat(plan.isFeasible()).isFalse();
+        assertThat(plan.isOptimal()).isTrue();
+        assertThat(plan.getNodesExplored()).isZero();
+    }
+
+    @Test
+    void budgetsAndCandidateCapDropTheOptimalityClaim() {
+        List<SplitCandidate> candidates = new ArrayList<>();
+        for (RoutingGateway gateway : RandomFleet.gateways(40, new Random(23))) {
+            candidates.add(new SplitCandidate(gateway, 10_000_000));
+        }
+        long amount = 150_000;
+
+        assertThat(new SplitOptimizer(MAX_PARTS, 64, Long.MAX_VALUE, 60_000).optimize(amount, candidates).isOptimal()).isTrue();
+        assertThat(new SplitOptimizer(MAX_PARTS, 64, 1, 60_000).optimize(amount, candidates).isOptimal()).isFalse();
+        assertThat(new SplitOptimizer(MAX_PARTS, 64, Long.MAX_VALUE, 0).optimize(amount, candidates).isOptimal()).isFalse();
+        assertThat(new SplitOptimizer(MAX_PARTS, 2, Long.MAX_VALUE, 60_000).optimize(amount, candidates).isOptimal()).isFalse();
+    }
+
+    private static void assertValid(SplitPlan plan, long amount, List<SplitCandidate> candidates, String context) {
+        assertThat(plan.getParts()).as(context).hasSizeLessThanOrEqualTo(MAX_PARTS);
+        assertThat(plan.getParts().stream().mapToLong(SplitPart::getAmountMinor).sum()).as(context).isEqualTo(amount);
+
+        Map<RoutingGateway, Long> perGateway = new HashMap<>();
+        for (SplitPart part : plan.getParts()) {
+            assertThat(part.getGateway().fitsAmount(part.getAmountMinor())).as(context).isTrue();
+            assertThat(part.getAmountMinor()).as(context).isPositive();
+            perGateway.merge(part.getGateway(), part.getAmountMinor(), Long::sum);
+        }
+        for (SplitCandidate candidate : candidates) {
+            assertThat(perGateway.getOrDefault(candidate.getGateway(), 0L)).as(context)
+                    .isLessThanOrEqualTo(candidate.getRemainingQuotaMinor());
+        }
+    }
+
+    private static double cost(SplitPlan plan) {
+        double cost = 0;
+        for (SplitPart part : plan.getParts()) {
+            cost += fixed(part.getGateway()) + rate(part.getGateway()) * part.getAmountMinor();
+        }
+        return cost;
+    }
+
+    /**
+     * Cheapest objective over every vector of part counts with at most MAX_PARTS parts;
+     * for fixed counts the cheapest amounts are the minimums plus a fill by rate.
+     */
+    private static double exhaustive(long amount, List<SplitCandidate> candidates) {
+        List<SplitCandidate> usable = new ArrayList<>();
+        for (SplitCandidate candidate : candidates) {
+            long minPart = Math.max(candidate.getGateway().getLowestAmountMinor(), 1);
+            if (minPart <= Math.min(candidate.getRemainingQuotaMinor(), amount)
+                    && candidate.getGateway().getHighestAmountMinor() >= minPart) {
+                usable.add(candidate);
+            }
+        }
+        usable.sort((a, b) -> Double.compare(rate(a.getGateway()), rate(b.getGateway())));
+        return exhaustive(amount, usable, new int[usable.size()], 0, 0);
+    }
+
+    private static double exhaustive(long amount, List<SplitCandidate> usable, int[] counts, int index, int parts) {
+        if (index == usable.size()) {
+            return planCost(amount, usable, counts);
+        }
+        double best = Double.POSITIVE_INFINITY;
+        for (int count = 0; parts + count <= MAX_PARTS; count++) {
+            counts[index] = count;
+            best = Math.min(best, exhaustive(amount, usable, counts, index + 1, parts + count));
+        }
+        counts[index] = 0;
+        return best;
+    }
+
+    private static double planCost(long amount, List<SplitCandidate> usable, int[] counts) {
+        double cost = 0;
+        long need = amount;
+        long[] room = new long[usable.size()];
+        for (int i = 0; i < usable.size(); i++) {
+            RoutingGateway gateway = usable.get(i).getGateway();
+            long cap = Math.min(usable.get(i).getRemainingQuotaMinor(), amount);
+            long minPart = Math.max(gateway.getLowestAmountMinor(), 1);
+            long maxPart = Math.min(gateway.getHighestAmountMinor(), cap);
+            long lower = counts[i] * minPart;
+            if (lower > cap) {
+                return Double.POSITIVE_INFINITY;
+            }
+            room[i] = Math.min(counts[i] * maxPart, cap) - lower;
+            need -= lower;
+            cost += counts[i] * fixed(gateway) + rate(gateway) * lower;
+        }
+        if (need < 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        for (int i = 0; i < usable.size() && need > 0; i++) {
+            long take = Math.min(room[i], need);
+            need -= take;
+            cost += rate(usable.get(i).getGateway()) * take;
+        }
+        return need > 0 ? Double.POSITIVE_INFINITY : cost;
+    }
+
+    private static double rate(RoutingGateway gateway) {
+        return gateway.getCommissionRate().doubleValue();
+    }
+
+    private static double fixed(RoutingGateway gateway) {
+        return gateway.getCommissionFixedMinor() >= 0
+                ? gateway.getCommissionFixedMinor()
+                : gateway.getCommissionFixed().movePointRight(2).doubleValue();
+    }
+}
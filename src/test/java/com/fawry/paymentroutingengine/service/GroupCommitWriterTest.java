@@ -0,0 +1,265 @@
+package com.fawry.paymentroutingengine.service;
+
+import com.fawry.paymentroutingengine.constant.Status;
+import com.fawry.paymentroutingengine.constant.Urgency;
+import com.fawry.paymentroutingengine.entity.Transaction;
+import com.fawry.paymentroutingengine.exception.InsufficientQuotaException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Concurrent submissions share one database transaction, quota rows are upserted
+ * in key order, and a group that cannot be written falls back to one write at a
+ * time so each caller gets its own outcome.
+ */
+class GroupCommitWriterTest {
+
+    private static final LocalDate TODAY = LocalDate.now();
+    private static final long DAILY_LIMIT = 1_000_000;
+
+    // Quota totals by biller/gateway/day, checked against the limit as the upsert does
+    private final Map<String, BigDecimal> quotaTotals = new HashMap<>();
+    private final List<List<Object[]>> batchUpserts = new CopyOnWriteArrayList<>();
+    private final List<Object[]> singleUpserts = new CopyOnWriteArrayList<>();
+    // Codes of each multi-row insert, in statement order
+    private final List<List<UUID>> inserts = new CopyOnWriteArrayList<>();
+    private final Set<UUID> unwritable = ConcurrentHashMap.newKeySet();
+    private final AtomicLong ids = new AtomicLong(1_000);
+
+    private JdbcTemplate jdbcTemplate;
+    private QuotaLedger quotaLedger;
+    private PlatformTransactionManager transactionManager;
+    private GroupCommitWriter writer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            List<Object[]> upserts = invocation.getArgument(1);
+            batchUpserts.add(upserts);
+            return upserts.stream().mapToInt(this::upsert).toArray();
+        });
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenAnswer(invocation -> {
+            Object[] parameters = (Object[]) invocation.getRawArguments()[1];
+            singleUpserts.add(parameters);
+            return upsert(parameters);
+        });
+        when(jdbcTemplate.update(any(PreparedStatementCreator.class), any(KeyHolder.class)))
+                .thenAnswer(invocation -> insert(invocation.getArgument(0), invocation.getArgument(1)));
+
+        quotaLedger = mock(QuotaLedger.class);
+        when(quotaLedger.tryReserveUnflushed(anyLong(), anyLong(), any(), anyLong(), anyLong())).thenReturn(true);
+        transactionManager = mock(PlatformTransactionManager.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (writer != null) {
+            writer.stop();
+        }
+    }
+
+    @Test
+    void concurrentSubmissionsAreWrittenInOneGroup() throws Exception {
+        int callers = 20;
+        writer = writer(callers);
+        ExecutorService threads = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<Transaction>> written = new ArrayList<>();
+        try {
+            for (int i = 0; i < callers; i++) {
+                Transaction transaction = transaction(1, 1 + i % 3);
+                written.add(CompletableFuture.supplyAsync(() -> {
+                    await(start);
+                    return writer.write(transaction, TODAY, 10_000, DAILY_LIMIT);
+                }, threads));
+            }
+            start.countDown();
+
+            for (CompletableFuture<Transaction> transaction : written) {
+                assertThat(transaction.get(5, TimeUnit.SECONDS).getId()).isNotNull();
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+        assertThat(inserts).hasSize(1);
+        assertThat(inserts.get(0)).hasSize(callers);
+        // One aggregated upsert per gateway
+        assertThat(batchUpserts).hasSize(1);
+        assertThat(batchUpserts.get(0)).hasSize(3);
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    void quotaUpsertsAreAggregatedAndSortedByKey() throws Exception {
+        writer = writer(6);
+        List<CompletableFuture<Transaction>> written = List.of(
+                writer.submit(transaction(2, 1), TODAY, 100, DAILY_LIMIT),
+                writer.submit(transaction(1, 2), TODAY, 200, DAILY_LIMIT),
+                writer.submit(transaction(1, 1), TODAY.plusDays(1), 300, DAILY_LIMIT),
+                writer.submit(transaction(1, 1), TODAY, 400, DAILY_LIMIT),
+                writer.submit(transaction(2, 1), TODAY, 500, DAILY_LIMIT),
+                writer.submit(transaction(1, 2), TODAY, 600, DAILY_LIMIT));
+        CompletableFuture.allOf(written.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        assertThat(batchUpserts).hasSize(1);
+        // (biller, gateway, day, amount, count) in biller, gateway, day order
+        assertThat(batchUpserts.get(0)).extracting(parameters -> Arrays.asList(parameters).subList(0, 5)).containsExactly(
+                List.of(1L, 1L, Date.valueOf(TODAY), new BigDecimal("4.00"), 1),
+                List.of(1L, 1L, Date.valueOf(TODAY.plusDays(1)), new BigDecimal("3.00"), 1),
+                List.of(1L, 2L, Date.valueOf(TODAY), new BigDecimal("8.00"), 2),
+                List.of(2L, 1L, Date.valueOf(TODAY), new BigDecimal("6.00"), 2));
+    }
+
+    @Test
+    void failedGroupIsRetriedOneByOneAndOnlyTheBadRowFails() throws Exception {
+        writer = writer(4);
+        Transaction bad = transaction(1, 2);
+        unwritable.add(bad.getCode());
+        CompletableFuture<Transaction> first = writer.submit(transaction(1, 1), TODAY, 100, DAILY_LIMIT);
+        CompletableFuture<Transaction> failing = writer.submit(bad, TODAY, 200, DAILY_LIMIT);
+        CompletableFuture<Transaction> third = writer.submit(transaction(1, 1), TODAY, 300, DAILY_LIMIT);
+        CompletableFuture<Transaction> fourth = writer.submit(transaction(2, 1), TODAY, 400, DAILY_LIMIT);
+
+        assertThatThrownBy(() -> GroupCommitWriter.await(failing)).isInstanceOf(DataIntegrityViolationException.class);
+        for (CompletableFuture<Transaction> written : List.of(first, third, fourth)) {
+            assertThat(written.get(5, TimeUnit.SECONDS).getId()).isNotNull();
+        }
+        assertThat(bad.getId()).isNull();
+        // The group, then each write alone
+        assertThat(inserts).hasSize(5);
+        assertThat(inserts.subList(1, 5)).allSatisfy(codes -> assertThat(codes).hasSize(1));
+        verify(transactionManager, times(2)).rollback(any());
+        verify(transactionManager, times(3)).commit(any());
+        // Only the failed write gives its reservation back
+        verify(quotaLedger).recordPersisted(1L, 2L, TODAY, -200);
+        verify(quotaLedger, never()).recordPersisted(eq(1L), eq(1L), any(), anyLong());
+        verify(quotaLedger, never()).recordPersisted(eq(2L), eq(1L), any(), anyLong());
+    }
+
+    @Test
+    void keyOverItsLimitAcceptsTheLongestPrefixInArrivalOrder() throws Exception {
+        writer = writer(3);
+        long limit = 50_000;
+        CompletableFuture<Transaction> first = writer.submit(transaction(1, 1), TODAY, 30_000, limit);
+        CompletableFuture<Transaction> second = writer.submit(transaction(1, 1), TODAY, 30_000, limit);
+        CompletableFuture<Transaction> third = writer.submit(transaction(1, 1), TODAY, 10_000, limit);
+
+        assertThat(first.get(5, TimeUnit.SECONDS).getId()).isNotNull();
+        assertThatThrownBy(() -> GroupCommitWriter.await(second)).isInstanceOf(InsufficientQuotaException.class);
+        // Would fit on its own, but is not taken ahead of the earlier payment
+        assertThatThrownBy(() -> GroupCommitWriter.await(third)).isInstanceOf(InsufficientQuotaException.class);
+        assertThat(singleUpserts).hasSize(2);
+        assertThat(inserts).hasSize(1);
+        assertThat(inserts.get(0)).hasSize(1);
+        verify(quotaLedger).recordPersisted(1L, 1L, TODAY, -30_000);
+        verify(quotaLedger).recordPersisted(1L, 1L, TODAY, -10_000);
+    }
+
+    /**
+     * Groups are written once {@code groupSize} writes are queued; the wait window
+     * is long enough that every test's submissions land in one group.
+     */
+    private GroupCommitWriter writer(int groupSize) {
+        GroupCommitWriter writer = new GroupCommitWriter(jdbcTemplate, quotaLedger, transactionManager,
+                new SimpleMeterRegistry(), "ledger", 1_000, groupSize, 5_000);
+        writer.start();
+        return writer;
+    }
+
+    private synchronized int upsert(Object[] parameters) {
+        String key = parameters[0] + "/" + parameters[1] + "/" + parameters[2];
+        BigDecimal total = quotaTotals.getOrDefault(key, BigDecimal.ZERO).add((BigDecimal) parameters[3]);
+        if (total.compareTo((BigDecimal) parameters[5]) > 0) {
+            return 0;
+        }
+        quotaTotals.put(key, total);
+        return 1;
+    }
+
+    private int insert(PreparedStatementCreator creator, KeyHolder keys) throws Exception {
+        List<UUID> codes = new ArrayList<>();
+        PreparedStatement statement = mock(PreparedStatement.class);
+        doAnswer(invocation -> {
+            if (invocation.getArgument(1) instanceof UUID code) {
+                codes.add(code);
+            }
+            return null;
+        }).when(statement).setObject(anyInt(), any());
+        Connection connection = mock(Connection.class);
+        when(connection.prepareStatement(anyString(), any(String[].class))).thenReturn(statement);
+
+        creator.createPreparedStatement(connection);
+        inserts.add(codes);
+        if (codes.stream().anyMatch(unwritable::contains)) {
+            throw new DataIntegrityViolationException("duplicate key value violates unique constraint");
+        }
+        for (int i = 0; i < codes.size(); i++) {
+            keys.getKeyList().add(Map.of("id", ids.incrementAndGet()));
+        }
+        return codes.size();
+    }
+
+    private static Transaction transaction(int billerId, int gatewayId) {
+        Transaction transaction = new Transaction();
+        transaction.setCode(UUID.randomUUID());
+        transaction.setBillerId(billerId);
+        transaction.setGatewayId(gatewayId);
+        transaction.setAmount(BigDecimal.ONE);
+        transaction.setCommission(BigDecimal.ZERO);
+        transaction.setUrgency(Urgency.INSTANT);
+        transaction.setStatus(Status.COMPLETED);
+        return transaction;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
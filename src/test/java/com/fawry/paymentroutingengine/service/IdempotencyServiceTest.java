@@ -0,0 +1,281 @@
+package com.fawry.paymentroutingengine.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fawry.paymentroutingengine.constant.IdempotentOperation;
+import com.fawry.paymentroutingengine.constant.Status;
+import com.fawry.paymentroutingengine.entity.IdempotencyRecord;
+import com.fawry.paymentroutingengine.entity.Transaction;
+import com.fawry.paymentroutingengine.exception.IdempotencyConflictException;
+import com.fawry.paymentroutingengine.exception.ServiceOverloadedException;
+import com.fawry.paymentroutingengine.repository.IdempotencyRecordRepository;
+import com.fawry.paymentroutingengine.repository.TransactionRepository;
+import com.fawry.paymentroutingengine.util.TransactionCodeGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The claim table decides which request writes; every other request with the
+ * key replays its response, recovers it from the transaction row, or runs again
+ * only once the claim is known to have written nothing.
+ */
+class IdempotencyServiceTest {
+
+    private static final IdempotentOperation OPERATION = IdempotentOperation.CREATE_TRANSACTION;
+    private static final String BILLER = "BILL_1";
+    private static final String KEY = "key-1";
+    private static final Map<String, Object> REQUEST = Map.of("amount", 100, "urgency", "INSTANT");
+    private static final long ABANDONED_AFTER_SECONDS = 300;
+    private static final int DUPLICATES = 16;
+
+    // The idempotency_keys table, by (operation, biller, key)
+    private final Map<String, IdempotencyRecord> claims = new ConcurrentHashMap<>();
+    // The transactions table, by code
+    private final Map<UUID, Transaction> transactions = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicInteger writes = new AtomicInteger();
+    private final TransactionCodeGenerator codes = new TransactionCodeGenerator(1);
+    private final ExecutorService workers = Executors.newFixedThreadPool(8);
+    private final ExecutorService callerThreads = Executors.newFixedThreadPool(DUPLICATES);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private IdempotencyRecordRepository repository;
+    private TransactionRepository transactionRepository;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(IdempotencyRecordRepository.class);
+        when(repository.saveAndFlush(any())).thenAnswer(invocation -> {
+            IdempotencyRecord record = invocation.getArgument(0);
+            record.setId(ids.incrementAndGet());
+            record.setCreatedAt(LocalDateTime.now());
+            if (claims.putIfAbsent(key(record), record) != null) {
+                throw new DataIntegrityViolationException("duplicate key");
+            }
+            return record;
+        });
+        when(repository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(repository.findByOperationAndBillerCodeAndIdempotencyKey(any(), any(), any()))
+                .thenAnswer(invocation -> Optional.ofNullable(claims.get(
+                        invocation.getArgument(0) + "/" + invocation.getArgument(1) + "/" + invocation.getArgument(2))));
+        when(repository.deleteUnfinished(anyLong())).thenAnswer(invocation -> {
+            Long id = invocation.getArgument(0);
+            return claims.values().removeIf(record -> record.getId().equals(id) && record.getCompletedAt() == null) ? 1 : 0;
+        });
+
+        transactionRepository = mock(TransactionRepository.class);
+        when(transactionRepository.findByGeneratedCode(any()))
+                .thenAnswer(invocation -> Optional.ofNullable(transactions.get(invocation.<UUID>getArgument(0))));
+    }
+
+    @AfterEach
+    void tearDown() {
+        workers.shutdownNow();
+        callerThreads.shutdownNow();
+    }
+
+    @Test
+    void concurrentDuplicatesWriteOnceAndReplayTheResponse() throws Exception {
+        IdempotencyService service = service();
+        CountDownLatch release = new CountDownLatch(1);
+        Function<UUID, String> work = code -> {
+            await(release);
+            return write(code);
+        };
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<CompletableFuture<String>>> callers = new ArrayList<>();
+        for (int i = 0; i < DUPLICATES; i++) {
+            callers.add(CompletableFuture.supplyAsync(() -> {
+                await(start);
+                return service.execute(OPERATION, BILLER, KEY, REQUEST, String.class, this::dispatch, work, this::recover);
+            }, callerThreads));
+        }
+        start.countDown();
+        List<CompletableFuture<String>> responses = new ArrayList<>();
+        for (CompletableFuture<CompletableFuture<String>> caller : callers) {
+            responses.add(caller.get(5, TimeUnit.SECONDS));
+        }
+        release.countDown();
+
+        String first = responses.get(0).get(5, TimeUnit.SECONDS);
+        for (CompletableFuture<String> response : responses) {
+            assertThat(response.get(5, TimeUnit.SECONDS)).isEqualTo(first);
+        }
+        assertThat(writes).hasValue(1);
+        assertThat(claims.get(key()).getResponse()).isNotNull();
+        assertThat(meterRegistry.counter("routing.idempotency.replayed", "source", "memory").count())
+                .isEqualTo(DUPLICATES - 1);
+
+        // Another instance, or this one after a restart, replays the stored response
+        assertThat(service().execute(OPERATION, BILLER, KEY, REQUEST, String.class, this::dispatch, this::write, this::recover)
+                .get(5, TimeUnit.SECONDS)).isEqualTo(first);
+        assertThat(writes).hasValue(1);
+    }
+
+    @Test
+    void sameKeyWithAnotherBodyIsRefused() throws Exception {
+        IdempotencyService service = service();
+        service.execute(OPERATION, BILLER, KEY, REQUEST, String.class, this::dispatch, this::write, this::recover)
+                .get(5, TimeUnit.SECONDS);
+        Map<String, Object> other = Map.of("amount", 200, "urgency", "INSTANT");
+
+        assertThatThrownBy(() -> service.execute(OPERATION, BILLER, KEY, other, String.class, this::dispatch, this::write, this::recover))
+                .isInstanceOf(IdempotencyConflictException.class);
+        // Checked against the stored hash when the key is no longer in memory
+        CompletableFuture<String> elsewhere = service()
+                .execute(OPERATION, BILLER, KEY, other, String.class, this::dispatch, this::write, this::recover);
+        assertThatThrownBy(() -> elsewhere.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IdempotencyConflictException.class);
+        assertThat(writes).hasValue(1);
+    }
+
+    @Test
+    void unfinishedClaimWithItsTransactionWrittenIsAnsweredFromTheRow() throws Exception {
+        IdempotencyRecord claim = claim(LocalDateTime.now());
+        Transaction transaction = transaction(claim.getTransactionCode(), Status.COMPLETED);
+
+        String response = service().execute(OPERATION, BILLER, KEY, REQUEST, String.class, this::dispatch, this::write, this::recover)
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(response).isEqualTo(recover(transaction));
+        assertThat(writes).hasValue(0);
+        assertThat(claims.get(key()).getCompletedAt()).isNotNull();
+    }
+
+    @Test
+    void recentUnfinishedClaimWithoutTransactionIsStillInProgress() throws Exception {
+        claim(LocalDateTime.now());
+
+        CompletableFuture<String> retry = service()
+                .execute(OPERATION, BILLER, KEY, REQUEST, String.class, this::dispatch, this::write, this::recover);
+
+        assertThatThrownBy(() -> retry.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IdempotencyConflictException.class);
+        assertThat(writes).hasValue(0);
+    }
+
+    @Test
+    void abandonedClaimIsReleasedAndTheRequestRunsAgain() throws Exception {
+        IdempotencyRecord abandoned = claim(LocalDateTime.now().minusSeconds(ABANDONED_AFTER_SECONDS + 1));
+        // A row the async writer kept as FAILED is not a written transaction
+        transaction(abandoned.getTransactionCode(), Status.FAILED);
+
+        String response = service().execute(OPERATION, BILLER, KEY, REQUEST, String.class, this::dispatch, this::write, this::recover)
+                .get(5, TimeUnit.SECONDS);
+
+        IdempotencyRecord reclaimed = claims.get(key());
+        assertThat(reclaimed.getId()).isNotEqualTo(abandoned.getId());
+        assertThat(reclaimed.getTransactionCode()).isNotEqualTo(abandoned.getTransactionCode());
+        assertThat(response).isEqualTo(TransactionCodeGenerator.render(reclaimed.getTransactionCode()));
+        assertThat(writes).hasValue(1);
+    }
+
+    @Test
+    void failedRequestReleasesItsClaimSoARetryRunsAgain() throws Exception {
+        IdempotencyService service = service();
+        CompletableFuture<String> failed = service.execute(OPERATION, BILLER, KEY, REQUEST, String.class, this::dispatch,
+                code -> {
+                    throw new ServiceOverloadedException("write failed");
+                }, this::recover);
+        assertThatThrownBy(() -> failed.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(ServiceOverloadedException.class);
+        assertThat(claims).isEmpty();
+
+        service.execute(OPERATION, BILLER, KEY, REQUEST, String.class, this::dispatch, this::write, this::recover)
+                .get(5, TimeUnit.SECONDS);
+        assertThat(writes).hasValue(1);
+    }
+
+    private IdempotencyService service() {
+        return new IdempotencyService(repository, transactionRepository, codes, new ObjectMapper(),
+                meterRegistry, true, 1_000, 24, ABANDONED_AFTER_SECONDS);
+    }
+
+    private <T> CompletableFuture<T> dispatch(Supplier<T> work) {
+        return CompletableFuture.supplyAsync(work, workers);
+    }
+
+    /**
+     * The work behind the key: writes a transaction with the claimed code.
+     */
+    private String write(UUID code) {
+        writes.incrementAndGet();
+        transaction(code, Status.COMPLETED);
+        return TransactionCodeGenerator.render(code);
+    }
+
+    private String recover(Transaction transaction) {
+        return TransactionCodeGenerator.render(transaction.getCode());
+    }
+
+    private Transaction transaction(UUID code, Status status) {
+        Transaction transaction = new Transaction();
+        transaction.setCode(code);
+        transaction.setStatus(status);
+        transactions.put(code, transaction);
+        return transaction;
+    }
+
+    /**
+     * An unfinished claim left by a request on another instance.
+     */
+    private IdempotencyRecord claim(LocalDateTime createdAt) throws Exception {
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setId(ids.incrementAndGet());
+        record.setOperation(OPERATION);
+        record.setBillerCode(BILLER);
+        record.setIdempotencyKey(KEY);
+        record.setRequestHash(hash());
+        record.setTransactionCode(codes.next());
+        record.setCreatedAt(createdAt);
+        claims.put(key(record), record);
+        return record;
+    }
+
+    private static String hash() throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(new ObjectMapper().writeValueAsBytes(REQUEST));
+        return HexFormat.of().formatHex(digest);
+    }
+
+    private static String key() {
+        return OPERATION + "/" + BILLER + "/" + KEY;
+    }
+
+    private static String key(IdempotencyRecord record) {
+        return record.getOperation() + "/" + record.getBillerCode() + "/" + record.getIdempotencyKey();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
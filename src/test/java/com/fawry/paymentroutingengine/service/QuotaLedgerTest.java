@@ -0,0 +1,66 @@
+package com.fawry.paymentroutingengine.service;
+
+import com.fawry.paymentroutingengine.repository.DailyQuotaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Counters of past days are dropped after a flush, but never yesterday's (a request
+ * may still reserve on it) and never one whose change has not been written yet.
+ */
+class QuotaLedgerTest {
+
+    private static final Long BILLER_ID = 1L;
+    private static final Long GATEWAY_ID = 2L;
+    private static final long DAILY_LIMIT = 100_000;
+
+    private DailyQuotaRepository quotaRepository;
+    private QuotaLedger quotaLedger;
+
+    @BeforeEach
+    void setUp() {
+        quotaRepository = mock(DailyQuotaRepository.class);
+        quotaLedger = new QuotaLedger(quotaRepository, mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    void flushedCounterOfAnEarlierDayIsDropped() {
+        LocalDate twoDaysAgo = LocalDate.now().minusDays(2);
+        reserveTwiceAroundFlush(twoDaysAgo);
+
+        verify(quotaRepository, times(2)).findByBillerIdAndGatewayIdAndQuotaDate(BILLER_ID, GATEWAY_ID, twoDaysAgo);
+    }
+
+    @Test
+    void yesterdaysCounterIsKept() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        reserveTwiceAroundFlush(yesterday);
+
+        verify(quotaRepository, times(1)).findByBillerIdAndGatewayIdAndQuotaDate(BILLER_ID, GATEWAY_ID, yesterday);
+    }
+
+    @Test
+    void counterWithUnwrittenChangesIsKept() {
+        LocalDate twoDaysAgo = LocalDate.now().minusDays(2);
+        when(quotaRepository.saveAll(anyList())).thenThrow(new IllegalStateException("database down"));
+        reserveTwiceAroundFlush(twoDaysAgo);
+
+        verify(quotaRepository, times(1)).findByBillerIdAndGatewayIdAndQuotaDate(BILLER_ID, GATEWAY_ID, twoDaysAgo);
+    }
+
+    private void reserveTwiceAroundFlush(LocalDate quotaDate) {
+        quotaLedger.tryReserve(BILLER_ID, GATEWAY_ID, quotaDate, 1_000, DAILY_LIMIT);
+        quotaLedger.flush();
+        // Loads the counter again only if the flush dropped it
+        quotaLedger.tryReserve(BILLER_ID, GATEWAY_ID, quotaDate, 1_000, DAILY_LIMIT);
+    }
+}
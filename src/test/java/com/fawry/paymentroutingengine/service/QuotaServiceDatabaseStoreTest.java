@@ -0,0 +1,104 @@
+package com.fawry.paymentroutingengine.service;
+
+import com.fawry.paymentroutingengine.entity.DailyQuota;
+import com.fawry.paymentroutingengine.repository.DailyQuotaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * With {@code routing.quota.store=database} the upsert is the reservation and the
+ * ledger only mirrors it; the local view must match the row afterwards, also when
+ * the key was not cached before the reservation.
+ */
+class QuotaServiceDatabaseStoreTest {
+
+    private static final Long BILLER_ID = 1L;
+    private static final Long GATEWAY_ID = 2L;
+    private static final BigDecimal DAILY_LIMIT = new BigDecimal("1000.00");
+
+    private final LocalDate today = LocalDate.now();
+    private DailyQuotaRepository quotaRepository;
+    private QuotaService quotaService;
+    // What daily_gateway_quotas.total_amount holds for the key
+    private BigDecimal storedTotal;
+
+    @BeforeEach
+    void setUp() {
+        quotaRepository = mock(DailyQuotaRepository.class);
+        QuotaLedger quotaLedger = new QuotaLedger(quotaRepository, mock(PlatformTransactionManager.class));
+        quotaService = new QuotaService();
+        ReflectionTestUtils.setField(quotaService, "quotaLedger", quotaLedger);
+        ReflectionTestUtils.setField(quotaService, "quotaRepository", quotaRepository);
+        ReflectionTestUtils.setField(quotaService, "quotaStore", "database");
+
+        when(quotaRepository.findByBillerIdAndGatewayIdAndQuotaDate(BILLER_ID, GATEWAY_ID, today))
+                .thenAnswer(invocation -> Optional.of(row()));
+        when(quotaRepository.reserveQuota(eq(BILLER_ID), eq(GATEWAY_ID), eq(today), any(), any()))
+                .thenAnswer(invocation -> {
+                    BigDecimal amount = invocation.getArgument(3);
+                    if (storedTotal.add(amount).compareTo(invocation.getArgument(4)) > 0) {
+                        return 0;
+                    }
+                    storedTotal = storedTotal.add(amount);
+                    return 1;
+                });
+        when(quotaRepository.releaseQuota(eq(BILLER_ID), eq(GATEWAY_ID), eq(today), any()))
+                .thenAnswer(invocation -> {
+                    storedTotal = storedTotal.subtract(invocation.getArgument(3));
+                    return 1;
+                });
+    }
+
+    @Test
+    void firstReservationOnUncachedKeyIsCountedOnce() {
+        storedTotal = new BigDecimal("200.00");
+
+        assertThat(quotaService.reserve(BILLER_ID, GATEWAY_ID, new BigDecimal("100.00"), DAILY_LIMIT)).isTrue();
+
+        assertThat(storedTotal).isEqualByComparingTo("300.00");
+        assertThat(quotaService.getRemainingQuota(BILLER_ID, GATEWAY_ID, DAILY_LIMIT)).isEqualByComparingTo("700.00");
+    }
+
+    @Test
+    void laterReservationsKeepTheViewInStepWithTheRow() {
+        storedTotal = BigDecimal.ZERO;
+
+        assertThat(quotaService.reserve(BILLER_ID, GATEWAY_ID, new BigDecimal("400.00"), DAILY_LIMIT)).isTrue();
+        assertThat(quotaService.reserve(BILLER_ID, GATEWAY_ID, new BigDecimal("500.00"), DAILY_LIMIT)).isTrue();
+        assertThat(quotaService.reserve(BILLER_ID, GATEWAY_ID, new BigDecimal("200.00"), DAILY_LIMIT)).isFalse();
+
+        assertThat(quotaService.getRemainingQuota(BILLER_ID, GATEWAY_ID, DAILY_LIMIT)).isEqualByComparingTo("100.00");
+    }
+
+    @Test
+    void releaseOnUncachedKeyIsCountedOnce() {
+        storedTotal = new BigDecimal("600.00");
+
+        quotaService.release(BILLER_ID, GATEWAY_ID, today, 250_00L);
+
+        assertThat(storedTotal).isEqualByComparingTo("350.00");
+        assertThat(quotaService.getRemainingQuota(BILLER_ID, GATEWAY_ID, DAILY_LIMIT)).isEqualByComparingTo("650.00");
+    }
+
+    private DailyQuota row() {
+        DailyQuota quota = new DailyQuota();
+        quota.setBillerId(BILLER_ID);
+        quota.setGatewayId(GATEWAY_ID);
+        quota.setQuotaDate(today);
+        quota.setTotalAmount(storedTotal);
+        quota.setDailyLimit(DAILY_LIMIT);
+        return quota;
+    }
+}
@@ -0,0 +1,64 @@
+package com.fawry.paymentroutingengine.service;
+
+import com.fawry.paymentroutingengine.constant.Urgency;
+import com.fawry.paymentroutingengine.entity.Biller;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A taken quote is gone for concurrent commits, and back after a failed one
+ * unless it expired meanwhile.
+ */
+class QuoteStoreTest {
+
+    private QuoteStore quoteStore;
+
+    @BeforeEach
+    void setUp() {
+        quoteStore = new QuoteStore();
+        ReflectionTestUtils.setField(quoteStore, "ttlSeconds", 60L);
+        ReflectionTestUtils.setField(quoteStore, "maxEntries", 10);
+    }
+
+    @Test
+    void takenQuoteCanBeTakenOnlyOnce() {
+        QuoteStore.Quote quote = issue();
+
+        assertThat(quoteStore.take(quote.getToken())).contains(quote);
+        assertThat(quoteStore.take(quote.getToken())).isEmpty();
+        assertThat(quoteStore.peek(quote.getToken())).isEmpty();
+    }
+
+    @Test
+    void restoredQuoteCanBeCommittedAgain() {
+        QuoteStore.Quote quote = issue();
+        quoteStore.take(quote.getToken());
+
+        quoteStore.restore(quote);
+
+        assertThat(quoteStore.take(quote.getToken())).contains(quote);
+    }
+
+    @Test
+    void expiredQuoteIsNotRestored() {
+        QuoteStore.Quote issued = issue();
+        quoteStore.take(issued.getToken());
+        QuoteStore.Quote expired = new QuoteStore.Quote(issued.getToken(), issued.getBiller(), null,
+                issued.getAmountMinor(), issued.getCommissionMinor(), issued.getUrgency(), Instant.now().minusSeconds(1));
+
+        quoteStore.restore(expired);
+
+        assertThat(quoteStore.peek(issued.getToken())).isEmpty();
+    }
+
+    private QuoteStore.Quote issue() {
+        Biller biller = new Biller();
+        biller.setCode("BILL_1");
+        return quoteStore.issue(biller, null, 10_000, 350, Urgency.INSTANT);
+    }
+}
@@ -0,0 +1,107 @@
+package com.fawry.paymentroutingengine.service;
+
+import com.fawry.paymentroutingengine.constant.Urgency;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A CAN_WAIT backlog that occupies every shared worker must not delay INSTANT
+ * work: the reserved workers pick it up at once.
+ */
+class UrgencyDispatcherTest {
+
+    private static final int WORKERS = 4;
+    private static final int RESERVED = 1;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private UrgencyDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (dispatcher != null) {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    void instantWorkRunsWhileCanWaitHoldsEverySharedWorker() throws Exception {
+        dispatcher = dispatcher(RESERVED);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger mostRunning = new AtomicInteger();
+        CountDownLatch saturated = new CountDownLatch(WORKERS - RESERVED);
+
+        List<CompletableFuture<Integer>> backlog = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            backlog.add(dispatcher.submit(Urgency.CAN_WAIT, () -> {
+                mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                saturated.countDown();
+                await(release);
+                running.decrementAndGet();
+                return 0;
+            }));
+        }
+        assertThat(saturated.await(5, TimeUnit.SECONDS)).isTrue();
+
+        for (int i = 0; i < 20; i++) {
+            long start = System.nanoTime();
+            dispatcher.submit(Urgency.INSTANT, () -> 1).get(1, TimeUnit.SECONDS);
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(500));
+        }
+        // The backlog is still waiting, on no more than the shared workers
+        assertThat(mostRunning.get()).isEqualTo(WORKERS - RESERVED);
+        assertThat(dispatcher.queueDepth(Urgency.CAN_WAIT)).isEqualTo(50 - (WORKERS - RESERVED));
+
+        release.countDown();
+        CompletableFuture.allOf(backlog.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void withoutReservedWorkersTheBacklogHoldsEveryWorker() throws Exception {
+        dispatcher = dispatcher(0);
+        CountDownLatch saturated = new CountDownLatch(WORKERS);
+        for (int i = 0; i < 10; i++) {
+            dispatcher.submit(Urgency.CAN_WAIT, () -> {
+                saturated.countDown();
+                await(release);
+                return 0;
+            });
+        }
+        assertThat(saturated.await(5, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<Integer> instant = dispatcher.submit(Urgency.INSTANT, () -> 1);
+        Thread.sleep(200);
+        assertThat(instant).isNotDone();
+
+        release.countDown();
+        assertThat(instant.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+    }
+
+    private static UrgencyDispatcher dispatcher(int reserved) {
+        UrgencyDispatcher dispatcher = new UrgencyDispatcher(true, WORKERS,
+                100, 4, 10_000, reserved,
+                100, 1, 10_000,
+                false, Duration.ofSeconds(60), new SimpleMeterRegistry());
+        dispatcher.start();
+        return dispatcher;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
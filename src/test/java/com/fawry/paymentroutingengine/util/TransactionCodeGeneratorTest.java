@@ -0,0 +1,121 @@
+package com.fawry.paymentroutingengine.util;
+
+import com.fawry.paymentroutingengine.exception.InvalidTransactionException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Codes drawn concurrently are unique, increase strictly in the order each thread
+ * draws them, carry the UUIDv7 version, variant and node bits, and survive the
+ * rendered TXN- form.
+ */
+class TransactionCodeGeneratorTest {
+
+    private static final int NODE_ID = 0x2A5B;
+    private static final int THREADS = 8;
+    // Well over 4096 per thread, so codes also borrow following milliseconds
+    private static final int CODES_PER_THREAD = 20_000;
+
+    private final TransactionCodeGenerator generator = new TransactionCodeGenerator(NODE_ID);
+
+    @Test
+    void concurrentCodesAreUniqueAndIncreasePerThread() throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<List<UUID>>> drawn = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                drawn.add(CompletableFuture.supplyAsync(() -> {
+                    await(start);
+                    List<UUID> codes = new ArrayList<>(CODES_PER_THREAD);
+                    for (int n = 0; n < CODES_PER_THREAD; n++) {
+                        codes.add(generator.next());
+                    }
+                    return codes;
+                }, threads));
+            }
+            start.countDown();
+
+            Set<UUID> all = new HashSet<>();
+            for (CompletableFuture<List<UUID>> future : drawn) {
+                List<UUID> codes = future.get(30, TimeUnit.SECONDS);
+                for (int n = 1; n < codes.size(); n++) {
+                    // Unsigned: the byte order the database compares uuid values in
+                    assertThat(Long.compareUnsigned(codes.get(n - 1).getMostSignificantBits(),
+                            codes.get(n).getMostSignificantBits())).as("code %d", n).isNegative();
+                }
+                all.addAll(codes);
+            }
+            assertThat(all).hasSize(THREADS * CODES_PER_THREAD);
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    void codesCarryVersionVariantNodeAndTime() {
+        long before = System.currentTimeMillis();
+        UUID code = generator.next();
+        long after = System.currentTimeMillis();
+
+        assertThat(code.version()).isEqualTo(7);
+        assertThat(code.variant()).isEqualTo(2);
+        assertThat((code.getLeastSignificantBits() >>> 48) & 0x3FFF).isEqualTo(NODE_ID);
+        assertThat(TransactionCodeGenerator.timestamp(code)).hasValueSatisfying(time ->
+                assertThat(time.toEpochMilli()).isBetween(before, after));
+        assertThat(TransactionCodeGenerator.timestamp(UUID.randomUUID())).isEmpty();
+    }
+
+    @Test
+    void nodeIdMustFitItsBits() {
+        assertThatThrownBy(() -> new TransactionCodeGenerator(1 << 14)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(new TransactionCodeGenerator(-1).next().version()).isEqualTo(7);
+    }
+
+    @Test
+    void renderedCodeParsesBack() {
+        for (int i = 0; i < 1_000; i++) {
+            UUID code = generator.next();
+            String rendered = TransactionCodeGenerator.render(code);
+
+            assertThat(rendered).startsWith(TransactionCodeGenerator.PREFIX);
+            assertThat(TransactionCodeGenerator.parse(rendered)).isEqualTo(code);
+        }
+        assertThat(TransactionCodeGenerator.render(null)).isNull();
+        Instant now = Instant.now();
+        assertThat(TransactionCodeGenerator.timestamp(TransactionCodeGenerator.parse(
+                TransactionCodeGenerator.render(generator.next())))).hasValueSatisfying(time ->
+                assertThat(time).isBetween(now.minusSeconds(1), now.plusSeconds(1)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "TXN-", "0190f6a4-5b2c-7d3e-8a5b-0123456789ab", "TXN-1-1-1-1-1",
+            "TXN-0190f6a4-5b2c-7d3e-8a5b-0123456789zz", "txn-0190f6a4-5b2c-7d3e-8a5b-0123456789ab"})
+    void malformedCodeIsRejected(String rendered) {
+        assertThatThrownBy(() -> TransactionCodeGenerator.parse(rendered)).isInstanceOf(InvalidTransactionException.class);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}